@@ -0,0 +1,158 @@
+-- =================================================================
+-- Benchmark : listening_history en table unique vs partitionnée par mois
+-- =================================================================
+-- Exécution (base jetable, aucune table applicative n'est touchée) :
+--   psql -d <base> -f benchmarks/listening_history_partitioning.sql
+--
+-- Jeu de données synthétique : 200 utilisateurs, 36 mois, ~2,2 M d'écoutes.
+-- Compare, pour les deux organisations :
+--   1. une requête "dernier mois" pour un utilisateur (comme les analytics bornés)
+--   2. la même requête sur tous les utilisateurs
+--   3. la dernière écoute d'un utilisateur (requête non bornée de la synchronisation)
+--   4. la purge du mois le plus ancien : DELETE vs DROP de partition
+-- Les durées sont relevées dans bench.results (affiché à la fin) ; les plans
+-- EXPLAIN (ANALYZE, BUFFERS), émis en NOTICE, montrent les partitions lues et les pages touchées.
+
+DROP SCHEMA IF EXISTS bench CASCADE;
+CREATE SCHEMA bench;
+
+CREATE TABLE bench.results (label TEXT, ms NUMERIC);
+
+-- --- Table unique (organisation avant V14) ---
+CREATE TABLE bench.lh_heap (
+    id        UUID NOT NULL DEFAULT gen_random_uuid() PRIMARY KEY,
+    user_id   UUID NOT NULL,
+    track_id  VARCHAR(255) NOT NULL,
+    played_at TIMESTAMPTZ NOT NULL
+);
+
+-- --- Table partitionnée (organisation V14) ---
+CREATE TABLE bench.lh_part (
+    id        UUID NOT NULL DEFAULT gen_random_uuid(),
+    user_id   UUID NOT NULL,
+    track_id  VARCHAR(255) NOT NULL,
+    played_at TIMESTAMPTZ NOT NULL,
+    PRIMARY KEY (id, played_at)
+) PARTITION BY RANGE (played_at);
+
+DO $$
+DECLARE
+    v_start DATE := date_trunc('month', now() AT TIME ZONE 'UTC' - INTERVAL '35 months')::date;
+    v_month DATE;
+BEGIN
+    FOR i IN 0..36 LOOP
+        v_month := (v_start + make_interval(months => i))::date;
+        EXECUTE format('CREATE TABLE bench.lh_part_%s PARTITION OF bench.lh_part FOR VALUES FROM (%L) TO (%L)',
+                       to_char(v_month, 'YYYY_MM'),
+                       v_month::timestamp AT TIME ZONE 'UTC',
+                       (v_month + INTERVAL '1 month')::timestamp AT TIME ZONE 'UTC');
+    END LOOP;
+END;
+$$;
+
+CREATE TEMP TABLE bench_users AS
+SELECT gen_random_uuid() AS user_id, g AS n FROM generate_series(1, 200) g;
+
+INSERT INTO bench.lh_heap (user_id, track_id, played_at)
+SELECT u.user_id,
+       'track_' || (random() * 5000)::int,
+       now() - (random() * INTERVAL '1080 days')
+FROM bench_users u, generate_series(1, 11000);
+
+INSERT INTO bench.lh_part (id, user_id, track_id, played_at)
+SELECT id, user_id, track_id, played_at FROM bench.lh_heap;
+
+CREATE INDEX ON bench.lh_heap (user_id);
+CREATE INDEX ON bench.lh_heap (played_at);
+CREATE UNIQUE INDEX ON bench.lh_heap (user_id, played_at, id);
+CREATE UNIQUE INDEX ON bench.lh_part (user_id, played_at, id);
+CREATE INDEX ON bench.lh_part (played_at);
+ANALYZE bench.lh_heap;
+ANALYZE bench.lh_part;
+
+-- Mesure : exécute la requête 20 fois et enregistre la durée moyenne
+CREATE FUNCTION bench.measure(p_label TEXT, p_sql TEXT, p_runs INT DEFAULT 20) RETURNS VOID
+LANGUAGE plpgsql AS $$
+DECLARE
+    v_t0 TIMESTAMPTZ;
+BEGIN
+    EXECUTE p_sql; -- chauffe du cache
+    v_t0 := clock_timestamp();
+    FOR i IN 1..p_runs LOOP
+        EXECUTE p_sql;
+    END LOOP;
+    INSERT INTO bench.results
+    VALUES (p_label, round(extract(epoch FROM clock_timestamp() - v_t0) * 1000 / p_runs, 2));
+END;
+$$;
+
+-- Les bornes sont passées comme des valeurs littérales, comme les paramètres liés des
+-- requêtes applicatives : l'élagage se fait alors dès la planification.
+CREATE TEMP TABLE bench_bounds AS SELECT now() - INTERVAL '30 days' AS since;
+
+-- 1. Dernier mois, un utilisateur
+SELECT bench.measure('user_last_month_heap', format($q$
+    SELECT track_id, COUNT(*) FROM bench.lh_heap
+    WHERE user_id = %L AND played_at >= %L
+    GROUP BY track_id ORDER BY 2 DESC LIMIT 10 $q$,
+    (SELECT user_id FROM bench_users WHERE n = 1), (SELECT since FROM bench_bounds)));
+SELECT bench.measure('user_last_month_partitioned', format($q$
+    SELECT track_id, COUNT(*) FROM bench.lh_part
+    WHERE user_id = %L AND played_at >= %L
+    GROUP BY track_id ORDER BY 2 DESC LIMIT 10 $q$,
+    (SELECT user_id FROM bench_users WHERE n = 1), (SELECT since FROM bench_bounds)));
+
+-- 2. Dernier mois, tous utilisateurs
+SELECT bench.measure('all_users_last_month_heap', format($q$
+    SELECT user_id, COUNT(*) FROM bench.lh_heap
+    WHERE played_at >= %L GROUP BY user_id $q$, (SELECT since FROM bench_bounds)), 5);
+SELECT bench.measure('all_users_last_month_partitioned', format($q$
+    SELECT user_id, COUNT(*) FROM bench.lh_part
+    WHERE played_at >= %L GROUP BY user_id $q$, (SELECT since FROM bench_bounds)), 5);
+
+-- 3. Dernière écoute d'un utilisateur (point de départ de la synchronisation, non borné)
+SELECT bench.measure('user_latest_play_heap', format($q$
+    SELECT played_at FROM bench.lh_heap WHERE user_id = %L ORDER BY played_at DESC LIMIT 1 $q$,
+    (SELECT user_id FROM bench_users WHERE n = 1)));
+SELECT bench.measure('user_latest_play_partitioned', format($q$
+    SELECT played_at FROM bench.lh_part WHERE user_id = %L ORDER BY played_at DESC LIMIT 1 $q$,
+    (SELECT user_id FROM bench_users WHERE n = 1)));
+SELECT bench.measure('user_latest_play_partitioned_bounded', format($q$
+    SELECT played_at FROM bench.lh_part WHERE user_id = %L AND played_at >= %L ORDER BY played_at DESC LIMIT 1 $q$,
+    (SELECT user_id FROM bench_users WHERE n = 1), (SELECT since FROM bench_bounds)));
+
+DO $$
+DECLARE
+    v_since TIMESTAMPTZ := (SELECT since FROM bench_bounds);
+    v_line  TEXT;
+BEGIN
+    FOR v_line IN EXECUTE format('EXPLAIN (ANALYZE, BUFFERS, COSTS OFF) SELECT user_id, COUNT(*) FROM bench.lh_heap WHERE played_at >= %L GROUP BY user_id', v_since) LOOP
+        RAISE NOTICE '%', v_line;
+    END LOOP;
+    FOR v_line IN EXECUTE format('EXPLAIN (ANALYZE, BUFFERS, COSTS OFF) SELECT user_id, COUNT(*) FROM bench.lh_part WHERE played_at >= %L GROUP BY user_id', v_since) LOOP
+        RAISE NOTICE '%', v_line;
+    END LOOP;
+END;
+$$;
+
+-- 4. Purge du mois le plus ancien
+DO $$
+DECLARE
+    v_month DATE := date_trunc('month', now() AT TIME ZONE 'UTC' - INTERVAL '35 months')::date;
+    v_t0    TIMESTAMPTZ;
+BEGIN
+    v_t0 := clock_timestamp();
+    DELETE FROM bench.lh_heap
+    WHERE played_at >= v_month::timestamp AT TIME ZONE 'UTC'
+      AND played_at < (v_month + INTERVAL '1 month')::timestamp AT TIME ZONE 'UTC';
+    INSERT INTO bench.results VALUES ('purge_oldest_month_delete', round(extract(epoch FROM clock_timestamp() - v_t0) * 1000, 2));
+
+    v_t0 := clock_timestamp();
+    EXECUTE format('DROP TABLE bench.lh_part_%s', to_char(v_month, 'YYYY_MM'));
+    INSERT INTO bench.results VALUES ('purge_oldest_month_drop_partition', round(extract(epoch FROM clock_timestamp() - v_t0) * 1000, 2));
+END;
+$$;
+
+SELECT label, ms FROM bench.results;
+
+DROP SCHEMA bench CASCADE;
@@ -0,0 +1,158 @@
+-- =================================================================
+-- Benchmark : clés Spotify VARCHAR + UUID aléatoire vs clés entières (V16)
+-- =================================================================
+-- Exécution (base jetable, aucune table applicative n'est touchée) :
+--   psql -d <base> -f benchmarks/surrogate_keys.sql
+--
+-- Jeu de données synthétique : 20 000 morceaux, 5 000 artistes, 200 utilisateurs,
+-- 2,2 M d'écoutes. Pour chaque organisation, relève :
+--   1. la taille de la table de faits et de ses index
+--   2. la durée d'insertion de 200 000 écoutes supplémentaires (UUID aléatoire vs séquence)
+--   3. la durée d'une jointure écoutes -> morceaux -> artistes sur un an pour un utilisateur
+
+DROP SCHEMA IF EXISTS bench_keys CASCADE;
+CREATE SCHEMA bench_keys;
+
+CREATE TABLE bench_keys.results (label TEXT, value NUMERIC, unit TEXT);
+
+-- Identifiants Spotify synthétiques (22 caractères base62, comme les vrais)
+CREATE FUNCTION bench_keys.spotify_id() RETURNS TEXT LANGUAGE sql AS $$
+    SELECT string_agg(substr('0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ',
+                             (random() * 61)::int + 1, 1), '')
+    FROM generate_series(1, 22)
+$$;
+
+-- --- Dimensions : ancienne organisation ---
+CREATE TABLE bench_keys.artists_old (id VARCHAR(255) PRIMARY KEY, name TEXT NOT NULL);
+CREATE TABLE bench_keys.tracks_old (id VARCHAR(255) PRIMARY KEY, name TEXT NOT NULL);
+CREATE TABLE bench_keys.track_artists_old (
+    track_id  VARCHAR(255) NOT NULL REFERENCES bench_keys.tracks_old(id),
+    artist_id VARCHAR(255) NOT NULL REFERENCES bench_keys.artists_old(id),
+    PRIMARY KEY (track_id, artist_id)
+);
+
+-- --- Dimensions : nouvelle organisation ---
+CREATE TABLE bench_keys.artists_new (id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, spotify_id VARCHAR(255) NOT NULL UNIQUE, name TEXT NOT NULL);
+CREATE TABLE bench_keys.tracks_new (id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, spotify_id VARCHAR(255) NOT NULL UNIQUE, name TEXT NOT NULL);
+CREATE TABLE bench_keys.track_artists_new (
+    track_id  INTEGER NOT NULL REFERENCES bench_keys.tracks_new(id),
+    artist_id INTEGER NOT NULL REFERENCES bench_keys.artists_new(id),
+    PRIMARY KEY (track_id, artist_id)
+);
+
+INSERT INTO bench_keys.artists_new (spotify_id, name)
+SELECT bench_keys.spotify_id(), 'artist ' || g FROM generate_series(1, 5000) g;
+INSERT INTO bench_keys.tracks_new (spotify_id, name)
+SELECT bench_keys.spotify_id(), 'track ' || g FROM generate_series(1, 20000) g;
+INSERT INTO bench_keys.track_artists_new
+SELECT t.id, 1 + ((t.id * 7 + k) % 5000)
+FROM bench_keys.tracks_new t, generate_series(0, 1) k;
+
+INSERT INTO bench_keys.artists_old SELECT spotify_id, name FROM bench_keys.artists_new;
+INSERT INTO bench_keys.tracks_old SELECT spotify_id, name FROM bench_keys.tracks_new;
+INSERT INTO bench_keys.track_artists_old
+SELECT t.spotify_id, a.spotify_id
+FROM bench_keys.track_artists_new ta
+JOIN bench_keys.tracks_new t ON t.id = ta.track_id
+JOIN bench_keys.artists_new a ON a.id = ta.artist_id;
+
+-- --- Tables de faits ---
+CREATE TABLE bench_keys.lh_old (
+    id        UUID NOT NULL DEFAULT gen_random_uuid() PRIMARY KEY,
+    user_id   UUID NOT NULL,
+    track_id  VARCHAR(255) NOT NULL,
+    played_at TIMESTAMPTZ NOT NULL
+);
+CREATE UNIQUE INDEX ON bench_keys.lh_old (user_id, played_at) INCLUDE (track_id);
+
+CREATE SEQUENCE bench_keys.lh_new_seq;
+CREATE TABLE bench_keys.lh_new (
+    id        BIGINT NOT NULL DEFAULT nextval('bench_keys.lh_new_seq') PRIMARY KEY,
+    user_id   UUID NOT NULL,
+    track_id  INTEGER NOT NULL,
+    played_at TIMESTAMPTZ NOT NULL
+);
+CREATE UNIQUE INDEX ON bench_keys.lh_new (user_id, played_at) INCLUDE (track_id);
+
+CREATE TEMP TABLE bench_users AS
+SELECT gen_random_uuid() AS user_id, g AS n FROM generate_series(1, 200) g;
+
+CREATE TEMP TABLE bench_plays AS
+SELECT u.user_id,
+       1 + (random() * 19999)::int AS track_ref,
+       now() - (g * INTERVAL '1 hour') - (u.n * INTERVAL '1 second') AS played_at
+FROM bench_users u, generate_series(1, 11000) g;
+
+INSERT INTO bench_keys.lh_new (user_id, track_id, played_at)
+SELECT user_id, track_ref, played_at FROM bench_plays WHERE played_at < now() - INTERVAL '1000 hours' ORDER BY played_at;
+INSERT INTO bench_keys.lh_old (user_id, track_id, played_at)
+SELECT p.user_id, t.spotify_id, p.played_at
+FROM bench_plays p JOIN bench_keys.tracks_new t ON t.id = p.track_ref
+WHERE p.played_at < now() - INTERVAL '1000 hours' ORDER BY p.played_at;
+
+-- 2. Insertion des 200 000 écoutes les plus récentes
+DO $$
+DECLARE
+    v_t0 TIMESTAMPTZ;
+BEGIN
+    v_t0 := clock_timestamp();
+    INSERT INTO bench_keys.lh_old (user_id, track_id, played_at)
+    SELECT p.user_id, t.spotify_id, p.played_at
+    FROM bench_plays p JOIN bench_keys.tracks_new t ON t.id = p.track_ref
+    WHERE p.played_at >= now() - INTERVAL '1000 hours' ORDER BY p.played_at;
+    INSERT INTO bench_keys.results VALUES ('insert_200k_varchar_uuid', round(extract(epoch FROM clock_timestamp() - v_t0) * 1000), 'ms');
+
+    v_t0 := clock_timestamp();
+    INSERT INTO bench_keys.lh_new (user_id, track_id, played_at)
+    SELECT user_id, track_ref, played_at
+    FROM bench_plays WHERE played_at >= now() - INTERVAL '1000 hours' ORDER BY played_at;
+    INSERT INTO bench_keys.results VALUES ('insert_200k_int_bigint', round(extract(epoch FROM clock_timestamp() - v_t0) * 1000), 'ms');
+END;
+$$;
+
+ANALYZE bench_keys.lh_old;
+ANALYZE bench_keys.lh_new;
+ANALYZE bench_keys.track_artists_old;
+ANALYZE bench_keys.track_artists_new;
+
+-- 1. Tailles
+INSERT INTO bench_keys.results VALUES
+    ('fact_table_varchar_uuid', pg_relation_size('bench_keys.lh_old') / 1048576, 'MB'),
+    ('fact_indexes_varchar_uuid', pg_indexes_size('bench_keys.lh_old') / 1048576, 'MB'),
+    ('fact_table_int_bigint', pg_relation_size('bench_keys.lh_new') / 1048576, 'MB'),
+    ('fact_indexes_int_bigint', pg_indexes_size('bench_keys.lh_new') / 1048576, 'MB'),
+    ('track_artists_varchar', pg_total_relation_size('bench_keys.track_artists_old') / 1024, 'kB'),
+    ('track_artists_int', pg_total_relation_size('bench_keys.track_artists_new') / 1024, 'kB');
+
+-- 3. Jointure sur un an pour un utilisateur (moyenne de 20 exécutions)
+CREATE FUNCTION bench_keys.measure(p_label TEXT, p_sql TEXT, p_runs INT DEFAULT 20) RETURNS VOID
+LANGUAGE plpgsql AS $$
+DECLARE
+    v_t0 TIMESTAMPTZ;
+BEGIN
+    EXECUTE p_sql;
+    v_t0 := clock_timestamp();
+    FOR i IN 1..p_runs LOOP
+        EXECUTE p_sql;
+    END LOOP;
+    INSERT INTO bench_keys.results
+    VALUES (p_label, round(extract(epoch FROM clock_timestamp() - v_t0) * 1000 / p_runs, 2), 'ms');
+END;
+$$;
+
+SELECT bench_keys.measure('top_artists_1y_varchar', format($q$
+    SELECT a.id, a.name, COUNT(*) FROM bench_keys.lh_old lh
+    JOIN bench_keys.track_artists_old ta ON ta.track_id = lh.track_id
+    JOIN bench_keys.artists_old a ON a.id = ta.artist_id
+    WHERE lh.user_id = %L AND lh.played_at >= now() - INTERVAL '365 days'
+    GROUP BY a.id, a.name ORDER BY 3 DESC LIMIT 10 $q$, (SELECT user_id FROM bench_users WHERE n = 1)));
+SELECT bench_keys.measure('top_artists_1y_int', format($q$
+    SELECT a.spotify_id, a.name, COUNT(*) FROM bench_keys.lh_new lh
+    JOIN bench_keys.track_artists_new ta ON ta.track_id = lh.track_id
+    JOIN bench_keys.artists_new a ON a.id = ta.artist_id
+    WHERE lh.user_id = %L AND lh.played_at >= now() - INTERVAL '365 days'
+    GROUP BY a.spotify_id, a.name ORDER BY 3 DESC LIMIT 10 $q$, (SELECT user_id FROM bench_users WHERE n = 1)));
+
+SELECT label, value, unit FROM bench_keys.results;
+
+DROP SCHEMA bench_keys CASCADE;
@@ -0,0 +1,182 @@
+-- =================================================================
+-- Benchmark : classements top-N en une passe vs en deux phases
+-- =================================================================
+-- Exécution (base jetable, aucune table applicative n'est touchée) :
+--   psql -d <base> -f benchmarks/top_n_two_phase.sql
+--
+-- Jeu de données synthétique : 20 000 morceaux, 5 000 artistes (1,3 artiste par morceau en moyenne),
+-- 200 utilisateurs à 10 000 écoutes et un gros utilisateur à 300 000 écoutes, soit 2,3 M d'écoutes.
+-- Compare, pour le gros utilisateur, sur 180 jours et sur tout l'historique :
+--   1. la requête d'origine : jointure écoutes -> morceaux -> artistes, puis COUNT(DISTINCT)
+--      et STRING_AGG(DISTINCT) sur toute la période avant le LIMIT
+--   2. deux phases sur la table de faits : comptage par track_id seul, top N, puis enrichissement
+--   3. deux phases sur les agrégats quotidiens (organisation actuelle, V13)
+-- Durées moyennes sur 10 exécutions dans bench_topn.results.
+--
+-- Résultats indicatifs (PostgreSQL 16, tables vacuumées, gros utilisateur, ms) :
+--                        une passe   2 phases faits   2 phases agrégats
+--   morceaux, 180 j          97,5            13,9              13,3
+--   artistes, 180 j          44,0            23,8              13,0
+--   morceaux, tout          334,7            71,2              67,4
+--   artistes, tout          256,1            82,2              95,8
+
+DROP SCHEMA IF EXISTS bench_topn CASCADE;
+CREATE SCHEMA bench_topn;
+
+CREATE TABLE bench_topn.results (label TEXT, ms NUMERIC);
+
+CREATE TABLE bench_topn.artists (id INTEGER PRIMARY KEY, name TEXT NOT NULL, image_url TEXT);
+CREATE TABLE bench_topn.tracks (id INTEGER PRIMARY KEY, name TEXT NOT NULL);
+CREATE TABLE bench_topn.track_artists (track_id INTEGER NOT NULL, artist_id INTEGER NOT NULL, PRIMARY KEY (track_id, artist_id));
+CREATE TABLE bench_topn.listening_history (
+    id        BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    user_id   INTEGER NOT NULL,
+    track_id  INTEGER NOT NULL,
+    played_at TIMESTAMPTZ NOT NULL
+);
+CREATE TABLE bench_topn.user_track_daily (
+    user_id INTEGER NOT NULL, day DATE NOT NULL, track_id INTEGER NOT NULL, plays INT NOT NULL,
+    PRIMARY KEY (user_id, day, track_id)
+);
+CREATE TABLE bench_topn.user_artist_daily (
+    user_id INTEGER NOT NULL, day DATE NOT NULL, artist_id INTEGER NOT NULL, plays INT NOT NULL,
+    PRIMARY KEY (user_id, day, artist_id)
+);
+
+INSERT INTO bench_topn.artists SELECT g, 'artist ' || g, 'https://i.scdn.co/image/' || md5(g::text) FROM generate_series(1, 5000) g;
+INSERT INTO bench_topn.tracks SELECT g, 'track ' || g FROM generate_series(1, 20000) g;
+INSERT INTO bench_topn.track_artists SELECT g, 1 + (g * 7) % 5000 FROM generate_series(1, 20000) g;
+INSERT INTO bench_topn.track_artists SELECT g, 1 + (g * 13 + 1) % 5000 FROM generate_series(1, 20000) g
+WHERE g % 3 = 0 ON CONFLICT DO NOTHING;
+
+-- Distribution biaisée : quelques morceaux très écoutés, une longue traîne
+INSERT INTO bench_topn.listening_history (user_id, track_id, played_at)
+SELECT u, 1 + (power(random(), 3) * 19999)::int, now() - (random() * INTERVAL '1095 days')
+FROM generate_series(1, 200) u, generate_series(1, 10000);
+INSERT INTO bench_topn.listening_history (user_id, track_id, played_at)
+SELECT 0, 1 + (power(random(), 3) * 19999)::int, now() - (random() * INTERVAL '1095 days')
+FROM generate_series(1, 300000);
+
+CREATE UNIQUE INDEX ON bench_topn.listening_history (user_id, played_at, id) INCLUDE (track_id);
+CREATE INDEX ON bench_topn.track_artists (artist_id, track_id);
+
+INSERT INTO bench_topn.user_track_daily
+SELECT user_id, (played_at AT TIME ZONE 'UTC')::date, track_id, COUNT(*)
+FROM bench_topn.listening_history GROUP BY 1, 2, 3;
+INSERT INTO bench_topn.user_artist_daily
+SELECT d.user_id, d.day, ta.artist_id, SUM(d.plays)
+FROM bench_topn.user_track_daily d JOIN bench_topn.track_artists ta ON ta.track_id = d.track_id
+GROUP BY 1, 2, 3;
+CREATE INDEX ON bench_topn.user_track_daily (user_id, day) INCLUDE (track_id, plays);
+CREATE INDEX ON bench_topn.user_artist_daily (user_id, day) INCLUDE (artist_id, plays);
+
+-- VACUUM pour que les parcours d'index seuls évitent la table, comme en production après autovacuum
+VACUUM ANALYZE bench_topn.artists;
+VACUUM ANALYZE bench_topn.tracks;
+VACUUM ANALYZE bench_topn.track_artists;
+VACUUM ANALYZE bench_topn.listening_history;
+VACUUM ANALYZE bench_topn.user_track_daily;
+VACUUM ANALYZE bench_topn.user_artist_daily;
+
+CREATE FUNCTION bench_topn.measure(p_label TEXT, p_sql TEXT, p_runs INT DEFAULT 10) RETURNS VOID
+LANGUAGE plpgsql AS $$
+DECLARE
+    v_t0 TIMESTAMPTZ;
+BEGIN
+    EXECUTE p_sql;
+    v_t0 := clock_timestamp();
+    FOR i IN 1..p_runs LOOP
+        EXECUTE p_sql;
+    END LOOP;
+    INSERT INTO bench_topn.results
+    VALUES (p_label, round(extract(epoch FROM clock_timestamp() - v_t0) * 1000 / p_runs, 2));
+END;
+$$;
+
+DO $$
+DECLARE
+    v_range RECORD;
+BEGIN
+    FOR v_range IN SELECT * FROM (VALUES ('180d', 180), ('all', 100000)) AS r(label, days) LOOP
+        -- Top morceaux
+        PERFORM bench_topn.measure('tracks_' || v_range.label || '_one_pass', format($q$
+            SELECT t.id, t.name, STRING_AGG(DISTINCT a.name, ', ' ORDER BY a.name), COUNT(DISTINCT lh.id) AS play_count
+            FROM bench_topn.listening_history lh
+            JOIN bench_topn.tracks t ON lh.track_id = t.id
+            JOIN bench_topn.track_artists ta ON t.id = ta.track_id
+            JOIN bench_topn.artists a ON ta.artist_id = a.id
+            WHERE lh.user_id = 0 AND lh.played_at >= now() - make_interval(days => %s)
+            GROUP BY t.id, t.name ORDER BY play_count DESC LIMIT 10 $q$, v_range.days));
+
+        PERFORM bench_topn.measure('tracks_' || v_range.label || '_two_phase_fact', format($q$
+            WITH play_counts AS (
+                SELECT track_id, COUNT(*) AS play_count FROM bench_topn.listening_history
+                WHERE user_id = 0 AND played_at >= now() - make_interval(days => %s)
+                GROUP BY track_id
+            ), top_tracks AS (
+                SELECT track_id, play_count FROM play_counts ORDER BY play_count DESC LIMIT 10
+            )
+            SELECT t.id, t.name,
+                   (SELECT STRING_AGG(a.name, ', ' ORDER BY a.name) FROM bench_topn.track_artists ta
+                    JOIN bench_topn.artists a ON a.id = ta.artist_id WHERE ta.track_id = t.id),
+                   tt.play_count
+            FROM top_tracks tt JOIN bench_topn.tracks t ON t.id = tt.track_id
+            ORDER BY tt.play_count DESC $q$, v_range.days));
+
+        PERFORM bench_topn.measure('tracks_' || v_range.label || '_two_phase_rollup', format($q$
+            WITH play_counts AS (
+                SELECT track_id, SUM(plays) AS play_count FROM bench_topn.user_track_daily
+                WHERE user_id = 0 AND day >= current_date - %s
+                GROUP BY track_id
+            ), top_tracks AS (
+                SELECT track_id, play_count FROM play_counts ORDER BY play_count DESC LIMIT 10
+            )
+            SELECT t.id, t.name,
+                   (SELECT STRING_AGG(a.name, ', ' ORDER BY a.name) FROM bench_topn.track_artists ta
+                    JOIN bench_topn.artists a ON a.id = ta.artist_id WHERE ta.track_id = t.id),
+                   tt.play_count
+            FROM top_tracks tt JOIN bench_topn.tracks t ON t.id = tt.track_id
+            ORDER BY tt.play_count DESC $q$, v_range.days));
+
+        -- Top artistes
+        PERFORM bench_topn.measure('artists_' || v_range.label || '_one_pass', format($q$
+            SELECT a.id, a.name, COUNT(lh.id) AS play_count, a.image_url
+            FROM bench_topn.listening_history lh
+            JOIN bench_topn.tracks t ON lh.track_id = t.id
+            JOIN bench_topn.track_artists ta ON t.id = ta.track_id
+            JOIN bench_topn.artists a ON ta.artist_id = a.id
+            WHERE lh.user_id = 0 AND lh.played_at >= now() - make_interval(days => %s)
+            GROUP BY a.id, a.name, a.image_url ORDER BY play_count DESC LIMIT 10 $q$, v_range.days));
+
+        PERFORM bench_topn.measure('artists_' || v_range.label || '_two_phase_fact', format($q$
+            WITH track_counts AS (
+                SELECT track_id, COUNT(*) AS plays FROM bench_topn.listening_history
+                WHERE user_id = 0 AND played_at >= now() - make_interval(days => %s)
+                GROUP BY track_id
+            ), top_artists AS (
+                SELECT ta.artist_id, SUM(tc.plays) AS play_count
+                FROM track_counts tc JOIN bench_topn.track_artists ta ON ta.track_id = tc.track_id
+                GROUP BY ta.artist_id ORDER BY play_count DESC LIMIT 10
+            )
+            SELECT a.id, a.name, tp.play_count, a.image_url
+            FROM top_artists tp JOIN bench_topn.artists a ON a.id = tp.artist_id
+            ORDER BY tp.play_count DESC $q$, v_range.days));
+
+        PERFORM bench_topn.measure('artists_' || v_range.label || '_two_phase_rollup', format($q$
+            WITH play_counts AS (
+                SELECT artist_id, SUM(plays) AS play_count FROM bench_topn.user_artist_daily
+                WHERE user_id = 0 AND day >= current_date - %s
+                GROUP BY artist_id
+            ), top_artists AS (
+                SELECT artist_id, play_count FROM play_counts ORDER BY play_count DESC LIMIT 10
+            )
+            SELECT a.id, a.name, tp.play_count, a.image_url
+            FROM top_artists tp JOIN bench_topn.artists a ON a.id = tp.artist_id
+            ORDER BY tp.play_count DESC $q$, v_range.days));
+    END LOOP;
+END;
+$$;
+
+SELECT label, ms FROM bench_topn.results;
+
+DROP SCHEMA bench_topn CASCADE;
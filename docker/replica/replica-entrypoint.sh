@@ -0,0 +1,16 @@
+#!/bin/bash
+# Au premier démarrage, copie le primaire (pg_basebackup -R écrit la configuration de standby),
+# puis démarre PostgreSQL en lecture seule.
+set -e
+
+if [ ! -s "$PGDATA/PG_VERSION" ]; then
+    mkdir -p "$PGDATA"
+    chown postgres:postgres "$PGDATA"
+    chmod 700 "$PGDATA"
+    until gosu postgres pg_basebackup -h db-primary -U replicator -D "$PGDATA" -R -X stream; do
+        echo "Primaire indisponible, nouvel essai..."
+        sleep 2
+    done
+fi
+
+exec docker-entrypoint.sh postgres -c hot_standby=on
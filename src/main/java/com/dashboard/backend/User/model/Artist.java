@@ -3,6 +3,8 @@ package com.dashboard.backend.User.model;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.Table;
@@ -19,8 +21,12 @@ import java.util.Set;
 @Data
 public class Artist {
     @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
-    private String id; // L'ID Spotify de l'artiste
+    private Integer id; // Clé de substitution, référencée par les tables de jointure et les agrégats
+
+    @Column(name = "spotify_id", nullable = false, unique = true)
+    private String spotifyId; // L'ID Spotify de l'artiste
 
     @Column(nullable = false)
     private String name;
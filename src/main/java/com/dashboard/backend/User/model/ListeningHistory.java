@@ -5,7 +5,6 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import java.time.Instant;
-import java.util.UUID;
 
 /**
  * Représente un seul événement d'écoute dans l'historique d'un utilisateur.
@@ -13,23 +12,26 @@ import java.util.UUID;
  *
  * Les index sur user_id et played_at sont cruciaux pour la performance des requêtes
  * d'analyse qui filtreront fréquemment sur ces colonnes.
+ *
+ * La table est partitionnée par mois sur played_at (voir V14) : toute requête sur un volume
+ * important doit borner played_at pour que seules les partitions utiles soient lues.
  */
 @Entity
 @Table(name = "listening_history", indexes = {
-        @Index(name = "idx_listeninghistory_user_id", columnList = "user_id"),
-        @Index(name = "idx_listeninghistory_played_at", columnList = "played_at")
+        @Index(name = "idx_unique_listening_event", columnList = "user_id, played_at", unique = true)
 })
 @Data
 public class ListeningHistory {
 
     /**
      * Un identifiant unique pour chaque enregistrement d'écoute.
-     * Utiliser un UUID est une bonne pratique pour les clés primaires qui n'ont pas de
-     * signification métier.
+     * Issu d'une séquence (par blocs de 50), il croît avec le temps : les insertions
+     * se font en fin d'index au lieu de se disperser comme avec un UUID aléatoire.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
-    private UUID id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "listening_history_id_seq")
+    @SequenceGenerator(name = "listening_history_id_seq", sequenceName = "listening_history_id_seq", allocationSize = 50)
+    private Long id;
 
     /**
      * L'utilisateur qui a effectué l'écoute.
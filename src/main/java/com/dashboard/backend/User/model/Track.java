@@ -1,11 +1,11 @@
 package com.dashboard.backend.User.model;
 
 import jakarta.persistence.CascadeType;
-import jakarta.persistence.CollectionTable;
 import jakarta.persistence.Column;
-import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.JoinTable;
@@ -16,7 +16,9 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 @Entity
@@ -24,8 +26,12 @@ import java.util.Set;
 @Data
 public class Track {
     @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
-    private String id; // L'ID Spotify du morceau
+    private Integer id; // Clé de substitution, référencée par l'historique et les agrégats
+
+    @Column(name = "spotify_id", nullable = false, unique = true)
+    private String spotifyId; // L'ID Spotify du morceau
 
     @Column(nullable = false)
     private String name;
@@ -45,13 +51,9 @@ public class Track {
     @EqualsAndHashCode.Exclude
     private Set<Artist> artists = new HashSet<>();
 
-    @ElementCollection(fetch = FetchType.LAZY)
-    @CollectionTable(
-            name = "track_genres",
-            joinColumns = @JoinColumn(name = "track_id")
-    )
-    @Column(name = "genre")
-    private Set<String> genres = new HashSet<>();
+    // Union des genres des artistes, maintenue en base par TrackGenreRepository (jamais écrite par JPA)
+    @Column(name = "genres", columnDefinition = "text[]", insertable = false, updatable = false)
+    private List<String> genres = new ArrayList<>();
 
     @Column(name = "duration_ms")
     private int durationMs;
@@ -3,5 +3,9 @@ package com.dashboard.backend.User.repository;
 import com.dashboard.backend.User.model.Artist;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface ArtistRepository extends JpaRepository<Artist, String> {
+import java.util.Optional;
+
+public interface ArtistRepository extends JpaRepository<Artist, Integer> {
+
+    Optional<Artist> findBySpotifyId(String spotifyId);
 }
@@ -0,0 +1,92 @@
+package com.dashboard.backend.User.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Insère les artistes, albums et morceaux découverts pendant une synchronisation.
+ *
+ * Les utilisateurs sont synchronisés en parallèle et rencontrent souvent les mêmes morceaux :
+ * une ligne déjà présente est ignorée ({@code ON CONFLICT DO NOTHING}) au lieu de violer la contrainte
+ * d'unicité, ce qui annulerait toute la transaction de synchronisation. Si une autre synchronisation
+ * vient d'insérer la même ligne sans l'avoir validée, l'insertion attend la fin de sa transaction.
+ * L'appelant relit ensuite l'entité via JPA, qu'elle vienne de cet appel ou d'une autre synchronisation.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CatalogRepository {
+
+    private static final String INSERT_ARTIST = """
+        INSERT INTO artists (spotify_id, name, image_url)
+        VALUES (?, ?, ?)
+        ON CONFLICT (spotify_id) DO NOTHING
+    """;
+
+    private static final String INSERT_ALBUM = """
+        INSERT INTO albums (id, name)
+        VALUES (?, ?)
+        ON CONFLICT (id) DO NOTHING
+    """;
+
+    private static final String INSERT_ALBUM_ARTISTS = """
+        INSERT INTO album_artists (album_id, artist_id)
+        SELECT ?, unnest(?::int[])
+        ON CONFLICT DO NOTHING
+    """;
+
+    private static final String INSERT_TRACK = """
+        INSERT INTO tracks (spotify_id, name, album_id, duration_ms)
+        VALUES (?, ?, ?, ?)
+        ON CONFLICT (spotify_id) DO NOTHING
+        RETURNING id
+    """;
+
+    private static final String INSERT_TRACK_ARTISTS = """
+        INSERT INTO track_artists (track_id, artist_id)
+        SELECT ?, unnest(?::int[])
+        ON CONFLICT DO NOTHING
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return vrai si l'artiste a été créé par cet appel
+     */
+    public boolean insertArtistIfAbsent(String spotifyId, String name, String imageUrl) {
+        return jdbcTemplate.update(INSERT_ARTIST, spotifyId, name, imageUrl) > 0;
+    }
+
+    /**
+     * Crée l'album et ses liens vers les artistes ; un album déjà présent garde ses liens.
+     *
+     * @return vrai si l'album a été créé par cet appel
+     */
+    public boolean insertAlbumIfAbsent(String id, String name, Collection<Integer> artistIds) {
+        if (jdbcTemplate.update(INSERT_ALBUM, id, name) == 0) {
+            return false;
+        }
+        jdbcTemplate.update(INSERT_ALBUM_ARTISTS, id, artistIds.toArray(Integer[]::new));
+        return true;
+    }
+
+    /**
+     * Crée le morceau et ses liens vers les artistes ; un morceau déjà présent garde ses liens.
+     * Ses genres sont calculés par {@link com.dashboard.backend.analytics.repository.TrackGenreRepository}.
+     *
+     * @return vrai si le morceau a été créé par cet appel
+     */
+    public boolean insertTrackIfAbsent(String spotifyId, String name, String albumId, int durationMs,
+                                       Collection<Integer> artistIds) {
+        List<Integer> inserted = jdbcTemplate.query(INSERT_TRACK, (rs, rowNum) -> rs.getInt("id"),
+                spotifyId, name, albumId, durationMs);
+        if (inserted.isEmpty()) {
+            return false;
+        }
+        jdbcTemplate.update(INSERT_TRACK_ARTISTS, inserted.getFirst(), artistIds.toArray(Integer[]::new));
+        return true;
+    }
+}
@@ -8,13 +8,13 @@ import org.springframework.stereotype.Repository;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 
 @Repository
-public interface ListeningHistoryRepository extends JpaRepository<ListeningHistory, UUID> {
+public interface ListeningHistoryRepository extends JpaRepository<ListeningHistory, Long> {
 
     boolean existsByUserAndPlayedAt(User user, Instant playedAt);
     Optional<ListeningHistory> findTopByUserOrderByPlayedAtDesc(User user);
+    Optional<ListeningHistory> findTopByUserAndPlayedAtAfterOrderByPlayedAtDesc(User user, Instant after);
     List<ListeningHistory> findByUserOrderByPlayedAtDesc(User user);
 
     long countByUser(User user);
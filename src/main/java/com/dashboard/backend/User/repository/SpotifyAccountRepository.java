@@ -2,7 +2,11 @@ package com.dashboard.backend.User.repository;
 
 import com.dashboard.backend.User.model.SpotifyAccount;
 import com.dashboard.backend.User.model.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
@@ -24,4 +28,12 @@ public interface SpotifyAccountRepository extends JpaRepository<SpotifyAccount,
     void deleteByUser(User user);
     List<SpotifyAccount> findByTokenExpiryBefore(Instant expiryThreshold);
 
+    /**
+     * Verrouille la ligne du compte (SELECT ... FOR UPDATE) pour coordonner
+     * le rafraîchissement du token entre plusieurs instances de l'application.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT sa FROM SpotifyAccount sa WHERE sa.id = :id")
+    Optional<SpotifyAccount> findByIdForUpdate(@Param("id") UUID id);
+
 }
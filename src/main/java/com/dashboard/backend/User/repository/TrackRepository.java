@@ -3,5 +3,9 @@ package com.dashboard.backend.User.repository;
 import com.dashboard.backend.User.model.Track;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface TrackRepository extends JpaRepository<Track, String> {
+import java.util.Optional;
+
+public interface TrackRepository extends JpaRepository<Track, Integer> {
+
+    Optional<Track> findBySpotifyId(String spotifyId);
 }
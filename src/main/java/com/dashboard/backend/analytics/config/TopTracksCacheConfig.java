@@ -0,0 +1,53 @@
+package com.dashboard.backend.analytics.config;
+
+import com.dashboard.backend.analytics.model.AnalyticsRange;
+import com.dashboard.backend.config.cache.BoundedCacheManager;
+import com.dashboard.backend.config.cache.CacheSpecProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Gestionnaire des caches de l'application, et caches des classements issus de l'historique interne
+ * (les caches Spotify sont décrits par {@link com.dashboard.backend.thirdparty.spotify.SpotifyCacheConfig}).
+ *
+ * Chaque cache est borné et expire selon {@code cache.specs[<nom>]} ; une entrée avec
+ * {@code refresh-after-write} est rafraîchie en arrière-plan avant son expiration.
+ * Le classement interne du jour est mis en cache à la taille des classements pré-calculés,
+ * sous une clé qui ignore la limite demandée.
+ */
+@Configuration
+@EnableConfigurationProperties(CacheSpecProperties.class)
+public class TopTracksCacheConfig {
+
+    public static final String ANALYTICS_TOP_TRACKS = "analyticsTopTracks";
+    // Réponses JSON sérialisées des endpoints d'analytics, indexées par ETag
+    public static final String ANALYTICS_RESPONSES = "analyticsResponses";
+
+    @Bean(destroyMethod = "close", defaultCandidate = false)
+    public ExecutorService cacheRefreshExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("cache-refresh-", 0).factory());
+    }
+
+    @Bean
+    public CacheManager cacheManager(CacheSpecProperties cacheSpecProperties, MeterRegistry meterRegistry,
+                                     @Qualifier("cacheRefreshExecutor") ExecutorService cacheRefreshExecutor) {
+        return new BoundedCacheManager(cacheSpecProperties, meterRegistry, cacheRefreshExecutor, System::nanoTime);
+    }
+
+    /**
+     * Clé d'un classement interne : les alias d'une même période partagent l'entrée,
+     * et le jour la fait changer à minuit UTC avec les périodes glissantes.
+     */
+    public static String analyticsTopKey(UUID userId, AnalyticsRange range, LocalDate day) {
+        return userId + ":" + range.name() + ":" + day;
+    }
+}
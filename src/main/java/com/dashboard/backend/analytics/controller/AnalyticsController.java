@@ -1,9 +1,11 @@
 package com.dashboard.backend.analytics.controller;
 
 import com.dashboard.backend.User.model.User;
-import com.dashboard.backend.analytics.dto.TopArtistDto;
-import com.dashboard.backend.analytics.dto.TopTrackDto;
+import com.dashboard.backend.analytics.dto.DashboardDto;
+import com.dashboard.backend.analytics.model.DashboardWidget;
+import com.dashboard.backend.analytics.service.AnalyticsConditionalRequests;
 import com.dashboard.backend.analytics.service.AnalyticsService;
+import com.dashboard.backend.analytics.service.DashboardService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -11,56 +13,168 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
+/**
+ * Les classements portent un ETag et un Last-Modified liés à la dernière synchronisation
+ * (voir {@link AnalyticsConditionalRequests}) : une requête conditionnelle encore valide reçoit
+ * un 304 avant tout calcul. Le tableau de bord n'en a pas, il inclut le profil Spotify en direct.
+ */
 @RestController
 @RequestMapping("/api/analytics")
 @RequiredArgsConstructor
 public class AnalyticsController {
 
     private final AnalyticsService analyticsService;
+    private final DashboardService dashboardService;
+    private final AnalyticsConditionalRequests conditionalRequests;
 
     @GetMapping("/top-artists")
-    public ResponseEntity<List<TopArtistDto>> getTopArtists(
+    public ResponseEntity<byte[]> getTopArtists(
             @AuthenticationPrincipal User user,
             @RequestParam(defaultValue = "medium_term") String timeRange,
             @RequestParam(defaultValue = "10") int limit,
-            @RequestParam(defaultValue = "cache") String source // NOUVEAU: Le paramètre qui guide le backend
+            @RequestParam(defaultValue = "cache") String source, // NOUVEAU: Le paramètre qui guide le backend
+            ServletWebRequest request
     ) {
-        if (!isValidTimeRange(timeRange)) {
+        if (!isValidTimeRange(timeRange) || !isValidLimit(limit)) {
             return ResponseEntity.badRequest().build();
         }
 
-        List<TopArtistDto> topArtists;
-
         // Le backend choisit la stratégie en fonction de l'indice du frontend
         if ("history".equalsIgnoreCase(source)) {
             // Demande d'analyse approfondie
-            topArtists = analyticsService.calculateTopArtistsFromHistory(user, timeRange, limit);
-        } else {
-            // Comportement par défaut : rapide, via le cache
-            topArtists = analyticsService.getCachedTopArtistsForUser(user, timeRange, limit);
+            return conditionalRequests.respond(user, request,
+                    () -> analyticsService.calculateTopArtistsFromHistory(user, timeRange, limit));
         }
-
-        return ResponseEntity.ok(topArtists);
+        // Comportement par défaut : rapide, via le cache (Spotify s'il n'existe pas encore)
+        return conditionalRequests.respondWithoutWarming(user, request,
+                () -> analyticsService.getCachedTopArtistsUpdatedAt(user, timeRange),
+                () -> analyticsService.getCachedTopArtistsForUser(user, timeRange, limit));
     }
 
     @GetMapping("/top-tracks")
-    public ResponseEntity<List<TopTrackDto>> getTopTracks(
+    public ResponseEntity<byte[]> getTopTracks(
+            @AuthenticationPrincipal User user,
+            @RequestParam(defaultValue = "medium_term") String timeRange,
+            @RequestParam(defaultValue = "10") int limit,
+            ServletWebRequest request
+    ) {
+        if (!isValidTimeRange(timeRange) || !isValidLimit(limit)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return conditionalRequests.respond(user, request,
+                () -> analyticsService.getTopTracksForUser(user, timeRange, limit));
+    }
+
+    @GetMapping("/top-genres")
+    public ResponseEntity<byte[]> getTopGenres(
+            @AuthenticationPrincipal User user,
+            @RequestParam(defaultValue = "medium_term") String timeRange,
+            @RequestParam(defaultValue = "10") int limit,
+            ServletWebRequest request
+    ) {
+        if (!isValidTimeRange(timeRange) || !isValidLimit(limit)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return conditionalRequests.respond(user, request,
+                () -> analyticsService.getTopGenresForUser(user, timeRange, limit));
+    }
+
+    /**
+     * Top artistes et top morceaux des trois périodes en une seule requête, pour un affichage côte à côte.
+     */
+    @GetMapping("/top-overview")
+    public ResponseEntity<byte[]> getTopOverview(
+            @AuthenticationPrincipal User user,
+            @RequestParam(defaultValue = "10") int limit,
+            ServletWebRequest request
+    ) {
+        if (!isValidLimit(limit)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return conditionalRequests.respond(user, request, () -> analyticsService.getTopOverview(user, limit));
+    }
+
+    /**
+     * Écoutes par jour de la semaine et heure (matrices 7 x 24) dans le fuseau de l'utilisateur.
+     * Ex: {@code /api/analytics/heatmap?timeRange=medium_term&timeZone=Europe/Paris}
+     *
+     * Calculée à partir d'agrégats par heure UTC : seuls les fuseaux décalés d'un nombre entier d'heures
+     * sont acceptés (400 pour Asia/Kolkata, Australia/Adelaide ou Asia/Kathmandu, dont les heures locales
+     * chevauchent deux heures UTC). La période est découpée en jours UTC : ses bornes ne coïncident pas
+     * avec minuit dans le fuseau demandé.
+     */
+    @GetMapping("/heatmap")
+    public ResponseEntity<byte[]> getHeatmap(
             @AuthenticationPrincipal User user,
             @RequestParam(defaultValue = "medium_term") String timeRange,
+            @RequestParam(defaultValue = "UTC") String timeZone,
+            ServletWebRequest request
+    ) {
+        // Fuseaux nommés uniquement (ex: Europe/Paris), interprétés de la même façon par PostgreSQL
+        if (!isValidTimeRange(timeRange) || !ZoneId.getAvailableZoneIds().contains(timeZone)
+                || !hasWholeHourOffsets(ZoneId.of(timeZone))) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return conditionalRequests.respond(user, request,
+                () -> analyticsService.getListeningHeatmap(user, timeRange, ZoneId.of(timeZone)));
+    }
+
+    /**
+     * Plusieurs widgets du tableau de bord en une seule requête, calculés en parallèle.
+     * Ex: {@code /api/analytics/dashboard?widgets=top-artists,top-tracks,spotify-profile,spotify-status}
+     */
+    @GetMapping("/dashboard")
+    public ResponseEntity<DashboardDto> getDashboard(
+            @AuthenticationPrincipal User user,
+            @RequestParam(defaultValue = "top-artists,top-tracks,spotify-profile,spotify-status") List<String> widgets,
+            @RequestParam(defaultValue = "medium_term") String timeRange,
             @RequestParam(defaultValue = "10") int limit
     ) {
-        if (!isValidTimeRange(timeRange)) {
+        if (!isValidTimeRange(timeRange) || !isValidLimit(limit)) {
             return ResponseEntity.badRequest().build();
         }
 
-        List<TopTrackDto> topTracks = analyticsService.getTopTracksForUser(user, timeRange, limit);
-        return ResponseEntity.ok(topTracks);
+        Set<DashboardWidget> selected = new LinkedHashSet<>();
+        for (String key : widgets) {
+            Optional<DashboardWidget> widget = DashboardWidget.fromKey(key.trim());
+            if (widget.isEmpty()) {
+                return ResponseEntity.badRequest().build();
+            }
+            selected.add(widget.get());
+        }
+
+        return ResponseEntity.ok(dashboardService.getDashboard(user, selected, timeRange, limit));
     }
 
     private boolean isValidTimeRange(String timeRange) {
         return List.of("short_term", "medium_term", "all_time").contains(timeRange);
     }
+
+    private boolean isValidLimit(int limit) {
+        return limit >= 1;
+    }
+
+    // Décalage actuel et décalage après le prochain changement d'heure (ex: Australia/Lord_Howe, +30 min l'été)
+    private boolean hasWholeHourOffsets(ZoneId zone) {
+        ZoneRules rules = zone.getRules();
+        Instant now = Instant.now();
+        ZoneOffsetTransition next = rules.nextTransition(now);
+        return rules.getOffset(now).getTotalSeconds() % 3600 == 0
+                && (next == null || next.getOffsetAfter().getTotalSeconds() % 3600 == 0);
+    }
 }
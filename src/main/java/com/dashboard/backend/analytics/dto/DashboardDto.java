@@ -0,0 +1,20 @@
+package com.dashboard.backend.analytics.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Réponse composite du tableau de bord : un résultat par widget demandé.
+ * Un widget en échec, hors délai ou sans compte Spotify lié figure dans {@code errors}
+ * avec la raison ({@code timeout}, {@code spotify_not_linked}, {@code error}),
+ * sans empêcher les autres d'être renvoyés.
+ */
+@Builder
+@Data
+public class DashboardDto {
+
+    private Map<String, Object> widgets;
+    private Map<String, String> errors;
+}
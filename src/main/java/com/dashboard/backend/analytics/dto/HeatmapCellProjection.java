@@ -0,0 +1,8 @@
+package com.dashboard.backend.analytics.dto;
+
+public interface HeatmapCellProjection {
+    Integer getDayOfWeek(); // 1 = lundi ... 7 = dimanche (ISO)
+    Integer getHour();
+    Long getPlayCount();
+    Long getMsPlayed();
+}
@@ -0,0 +1,18 @@
+package com.dashboard.backend.analytics.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Écoutes par jour de la semaine et par heure, dans le fuseau horaire demandé.
+ * Matrices 7 x 24 : ligne 0 = lundi ... 6 = dimanche, colonne = heure locale.
+ */
+@Builder
+@Data
+public class ListeningHeatmapDto {
+
+    private String timeRange;
+    private String timeZone;
+    private long[][] playCounts;
+    private long[][] minutesPlayed;
+}
@@ -0,0 +1,16 @@
+package com.dashboard.backend.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TopGenreDto {
+
+    private String genre;
+    private Long playCount;
+}
@@ -0,0 +1,25 @@
+package com.dashboard.backend.analytics.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Top artistes et top morceaux des trois périodes, pour un affichage côte à côte.
+ */
+@Builder
+@Data
+public class TopOverviewDto {
+
+    private RangeTop shortTerm;
+    private RangeTop mediumTerm;
+    private RangeTop allTime;
+
+    @Builder
+    @Data
+    public static class RangeTop {
+        private List<TopArtistDto> topArtists;
+        private List<TopTrackDto> topTracks;
+    }
+}
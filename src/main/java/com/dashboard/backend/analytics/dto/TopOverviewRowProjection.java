@@ -0,0 +1,19 @@
+package com.dashboard.backend.analytics.dto;
+
+/**
+ * Ligne de {@code findTopOverview} : un artiste ou un morceau avec ses écoutes et son rang sur chaque période.
+ * Les écoutes d'une période sont nulles si l'élément n'y a pas été écouté.
+ */
+public interface TopOverviewRowProjection {
+    String getKind(); // ARTIST ou TRACK
+    String getItemId();
+    String getName();
+    String getImageUrl(); // Artistes uniquement
+    String getArtistNames(); // Morceaux uniquement, chaîne concaténée d'artistes
+    Long getShortTermPlays();
+    Long getShortTermRank();
+    Long getMediumTermPlays();
+    Long getMediumTermRank();
+    Long getAllTimePlays();
+    Long getAllTimeRank();
+}
@@ -0,0 +1,40 @@
+package com.dashboard.backend.analytics.model;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Périodes des classements calculés depuis l'historique interne.
+ *
+ * Le paramètre {@code timeRange} de l'API reprend les valeurs de Spotify
+ * ({@code short_term}, {@code medium_term}) ; les anciennes valeurs internes
+ * ({@code last_month}, {@code last_6_months}) restent acceptées.
+ */
+public enum AnalyticsRange {
+
+    LAST_30_DAYS(30),
+    LAST_180_DAYS(180),
+    ALL_TIME(-1);
+
+    private final int days;
+
+    AnalyticsRange(int days) {
+        this.days = days;
+    }
+
+    /**
+     * Premier jour (UTC) inclus dans la période qui se termine le jour {@code endDay}.
+     */
+    public LocalDate startDay(LocalDate endDay) {
+        return days < 0 ? LocalDate.EPOCH : endDay.minusDays(days);
+    }
+
+    public static Optional<AnalyticsRange> fromTimeRange(String timeRange) {
+        return switch (timeRange) {
+            case "short_term", "last_month" -> Optional.of(LAST_30_DAYS);
+            case "medium_term", "last_6_months" -> Optional.of(LAST_180_DAYS);
+            case "long_term", "all_time" -> Optional.of(ALL_TIME);
+            default -> Optional.empty();
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package com.dashboard.backend.analytics.model;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Widgets disponibles via {@code GET /api/analytics/dashboard?widgets=...}.
+ * Chaque widget reprend la réponse de l'endpoint qu'il remplace.
+ */
+public enum DashboardWidget {
+
+    TOP_ARTISTS("top-artists"),
+    TOP_TRACKS("top-tracks"),
+    SPOTIFY_PROFILE("spotify-profile"),
+    SPOTIFY_STATUS("spotify-status");
+
+    private final String key;
+
+    DashboardWidget(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Nom du widget dans le paramètre {@code widgets} et dans la réponse.
+     */
+    public String key() {
+        return key;
+    }
+
+    public static Optional<DashboardWidget> fromKey(String key) {
+        return Arrays.stream(values())
+                .filter(widget -> widget.key.equals(key))
+                .findFirst();
+    }
+}
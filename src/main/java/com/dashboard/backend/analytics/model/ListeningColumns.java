@@ -0,0 +1,354 @@
+package com.dashboard.backend.analytics.model;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Historique d'écoute d'un utilisateur stocké en colonnes de types primitifs.
+ *
+ * Les écoutes sont triées par date : {@code playedAt} (secondes epoch) et {@code trackOrdinals}.
+ * Morceaux, artistes et genres sont encodés par dictionnaire : un ordinal dense par valeur distincte
+ * de l'utilisateur, ce qui permet de compter dans de simples tableaux {@code int[]}.
+ * Les liens morceau -> artistes et morceau -> genres sont stockés en CSR (tableau de débuts + valeurs).
+ *
+ * Une instance est un instantané immuable : les calculs ne créent aucun objet par écoute.
+ * Les intervalles sont semi-ouverts ({@code from} inclus, {@code to} exclu) et comparés à la seconde près.
+ */
+public final class ListeningColumns {
+
+    private final long[] playedAt;
+    private final int[] trackOrdinals;
+    private final int size;
+
+    private final int[] trackIds;
+    private final int[] trackArtistStart;
+    private final int[] trackArtistOrdinals;
+    private final int[] trackGenreStart;
+    private final int[] trackGenreOrdinals;
+    private final int trackCount;
+
+    private final int[] artistIds;
+    private final int artistCount;
+
+    private final String[] genres;
+    private final int genreCount;
+
+    private ListeningColumns(Builder builder) {
+        this.playedAt = builder.playedAt;
+        this.trackOrdinals = builder.trackOrdinals;
+        this.size = builder.size;
+        this.trackIds = builder.trackIds;
+        this.trackArtistStart = builder.trackArtistStart;
+        this.trackArtistOrdinals = builder.trackArtistOrdinals;
+        this.trackGenreStart = builder.trackGenreStart;
+        this.trackGenreOrdinals = builder.trackGenreOrdinals;
+        this.trackCount = builder.trackCount;
+        this.artistIds = builder.artistIds;
+        this.artistCount = builder.artistCount;
+        this.genres = builder.genres;
+        this.genreCount = builder.genreCount;
+    }
+
+    /** Un élément classé : identifiant en base (morceau ou artiste) et nombre d'écoutes. */
+    public record Ranked(int id, int plays) {}
+
+    public record RankedGenre(String genre, int plays) {}
+
+    public int size() {
+        return size;
+    }
+
+    public int countBetween(Instant from, Instant to) {
+        return upperIndex(to) - lowerIndex(from);
+    }
+
+    /**
+     * Nombre d'écoutes par heure de la journée (0 à 23) dans le fuseau {@code zone}.
+     * Le décalage horaire n'est recalculé qu'aux changements d'heure.
+     */
+    public int[] hourlyHistogram(Instant from, Instant to, ZoneId zone) {
+        int[] hours = new int[24];
+        int start = lowerIndex(from);
+        int end = upperIndex(to);
+        if (start >= end) {
+            return hours;
+        }
+
+        ZoneRules rules = zone.getRules();
+        long offsetValidUntil = Long.MIN_VALUE;
+        int offsetSeconds = 0;
+        for (int i = start; i < end; i++) {
+            long epochSecond = playedAt[i];
+            if (epochSecond >= offsetValidUntil) {
+                Instant instant = Instant.ofEpochSecond(epochSecond);
+                offsetSeconds = rules.getOffset(instant).getTotalSeconds();
+                ZoneOffsetTransition next = rules.nextTransition(instant);
+                offsetValidUntil = next == null ? Long.MAX_VALUE : next.toEpochSecond();
+            }
+            hours[(int) (Math.floorMod(epochSecond + offsetSeconds, 86_400L) / 3_600)]++;
+        }
+        return hours;
+    }
+
+    public List<Ranked> topTracks(Instant from, Instant to, int limit) {
+        int[] counts = new int[trackCount];
+        for (int i = lowerIndex(from), end = upperIndex(to); i < end; i++) {
+            counts[trackOrdinals[i]]++;
+        }
+        return ranked(counts, trackIds, limit);
+    }
+
+    public List<Ranked> topArtists(Instant from, Instant to, int limit) {
+        int[] counts = countThroughTracks(from, to, trackArtistStart, trackArtistOrdinals, artistCount);
+        return ranked(counts, artistIds, limit);
+    }
+
+    public List<RankedGenre> topGenres(Instant from, Instant to, int limit) {
+        int[] counts = countThroughTracks(from, to, trackGenreStart, trackGenreOrdinals, genreCount);
+        int[] top = topOrdinals(counts, limit);
+        List<RankedGenre> result = new ArrayList<>(top.length);
+        for (int ordinal : top) {
+            result.add(new RankedGenre(genres[ordinal], counts[ordinal]));
+        }
+        return result;
+    }
+
+    /**
+     * Compte les écoutes par artiste ou par genre : on compte d'abord par morceau,
+     * puis on reporte chaque morceau écouté sur ses valeurs liées.
+     */
+    private int[] countThroughTracks(Instant from, Instant to, int[] linkStart, int[] linkOrdinals, int valueCount) {
+        int[] perTrack = new int[trackCount];
+        for (int i = lowerIndex(from), end = upperIndex(to); i < end; i++) {
+            perTrack[trackOrdinals[i]]++;
+        }
+        int[] counts = new int[valueCount];
+        for (int track = 0; track < trackCount; track++) {
+            int plays = perTrack[track];
+            if (plays == 0) {
+                continue;
+            }
+            for (int link = linkStart[track]; link < linkStart[track + 1]; link++) {
+                counts[linkOrdinals[link]] += plays;
+            }
+        }
+        return counts;
+    }
+
+    private static List<Ranked> ranked(int[] counts, int[] ids, int limit) {
+        int[] top = topOrdinals(counts, limit);
+        List<Ranked> result = new ArrayList<>(top.length);
+        for (int ordinal : top) {
+            result.add(new Ranked(ids[ordinal], counts[ordinal]));
+        }
+        return result;
+    }
+
+    /**
+     * Ordinaux des {@code limit} plus grands compteurs non nuls, par compteur décroissant
+     * puis ordinal croissant. Sélection par insertion : {@code limit} reste petit (classements).
+     */
+    private static int[] topOrdinals(int[] counts, int limit) {
+        int[] top = new int[Math.max(0, Math.min(limit, counts.length))];
+        if (top.length == 0) {
+            return top;
+        }
+        int filled = 0;
+        for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+            int count = counts[ordinal];
+            if (count == 0 || (filled == top.length && count <= counts[top[filled - 1]])) {
+                continue;
+            }
+            int position = filled < top.length ? filled++ : filled - 1;
+            while (position > 0 && counts[top[position - 1]] < count) {
+                top[position] = top[position - 1];
+                position--;
+            }
+            top[position] = ordinal;
+        }
+        return filled == top.length ? top : Arrays.copyOf(top, filled);
+    }
+
+    /** Premier index dont la date est >= {@code from}. */
+    private int lowerIndex(Instant from) {
+        return search(from.getEpochSecond());
+    }
+
+    /** Premier index dont la date est >= {@code to} (borne exclue). */
+    private int upperIndex(Instant to) {
+        return search(to.getEpochSecond());
+    }
+
+    private int search(long epochSecond) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (playedAt[mid] < epochSecond) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Colonnes en cours de construction, alimentées dans l'ordre chronologique.
+     *
+     * {@link #build()} publie un instantané qui partage les tableaux : les ajouts suivants n'écrivent
+     * qu'au-delà des tailles publiées, ou dans des tableaux réalloués. Le builder lui-même n'est pas
+     * thread-safe et doit être protégé par l'appelant.
+     */
+    public static final class Builder {
+
+        private long[] playedAt = new long[64];
+        private int[] trackOrdinals = new int[64];
+        private int size;
+
+        private int[] trackIds = new int[16];
+        private int[] trackArtistStart = new int[17];
+        private int[] trackArtistOrdinals = new int[16];
+        private int[] trackGenreStart = new int[17];
+        private int[] trackGenreOrdinals = new int[16];
+        private int trackCount;
+
+        private int[] artistIds = new int[16];
+        private int artistCount;
+
+        private String[] genres = new String[16];
+        private int genreCount;
+
+        private final Map<Integer, Integer> trackOrdinalById = new HashMap<>();
+        private final Map<Integer, Integer> artistOrdinalById = new HashMap<>();
+        private final Map<String, Integer> genreOrdinalByName = new HashMap<>();
+
+        private long lastPlayedMicros = Long.MIN_VALUE;
+
+        public boolean hasTrack(int trackId) {
+            return trackOrdinalById.containsKey(trackId);
+        }
+
+        /**
+         * Enregistre un morceau avec ses artistes et ses genres. Sans effet s'il est déjà connu.
+         */
+        public void addTrack(int trackId, int[] trackArtistIds, String[] trackGenres) {
+            if (hasTrack(trackId)) {
+                return;
+            }
+            int ordinal = trackCount;
+            trackIds = ensureCapacity(trackIds, ordinal + 1);
+            trackIds[ordinal] = trackId;
+
+            trackArtistStart = ensureCapacity(trackArtistStart, ordinal + 2);
+            int artistEnd = trackArtistStart[ordinal];
+            trackArtistOrdinals = ensureCapacity(trackArtistOrdinals, artistEnd + trackArtistIds.length);
+            for (int artistId : trackArtistIds) {
+                trackArtistOrdinals[artistEnd++] = artistOrdinal(artistId);
+            }
+            trackArtistStart[ordinal + 1] = artistEnd;
+
+            trackGenreStart = ensureCapacity(trackGenreStart, ordinal + 2);
+            int genreEnd = trackGenreStart[ordinal];
+            trackGenreOrdinals = ensureCapacity(trackGenreOrdinals, genreEnd + trackGenres.length);
+            for (String genre : trackGenres) {
+                trackGenreOrdinals[genreEnd++] = genreOrdinal(genre);
+            }
+            trackGenreStart[ordinal + 1] = genreEnd;
+
+            trackOrdinalById.put(trackId, ordinal);
+            trackCount++;
+        }
+
+        /**
+         * Ajoute une écoute d'un morceau déjà enregistré. Les écoutes doivent arriver par date croissante.
+         */
+        public void addPlay(Instant at, int trackId) {
+            addPlay(Math.addExact(Math.multiplyExact(at.getEpochSecond(), 1_000_000L), at.getNano() / 1_000), trackId);
+        }
+
+        /**
+         * Variante sans {@link Instant}, à la microseconde (précision de PostgreSQL).
+         */
+        public void addPlay(long epochMicros, int trackId) {
+            Integer ordinal = trackOrdinalById.get(trackId);
+            if (ordinal == null) {
+                throw new IllegalArgumentException("Morceau non enregistré : " + trackId);
+            }
+            if (epochMicros < lastPlayedMicros) {
+                throw new IllegalArgumentException("Écoute antérieure à la dernière ajoutée : " + epochMicros + " µs");
+            }
+            playedAt = ensureCapacity(playedAt, size + 1);
+            trackOrdinals = ensureCapacity(trackOrdinals, size + 1);
+            playedAt[size] = Math.floorDiv(epochMicros, 1_000_000L);
+            trackOrdinals[size] = ordinal;
+            size++;
+            lastPlayedMicros = epochMicros;
+        }
+
+        /** Date exacte (à la microseconde) de la dernière écoute ajoutée, ou {@code null}. */
+        public Instant lastPlayedAt() {
+            if (lastPlayedMicros == Long.MIN_VALUE) {
+                return null;
+            }
+            return Instant.EPOCH.plus(lastPlayedMicros, ChronoUnit.MICROS);
+        }
+
+        /**
+         * Estimation de l'empreinte mémoire, tableaux et dictionnaires compris.
+         */
+        public long estimatedBytes() {
+            long arrays = 8L * playedAt.length + 4L * trackOrdinals.length
+                    + 4L * (trackIds.length + trackArtistStart.length + trackArtistOrdinals.length
+                    + trackGenreStart.length + trackGenreOrdinals.length + artistIds.length)
+                    + 8L * genres.length;
+            long genreStrings = 0;
+            for (int i = 0; i < genreCount; i++) {
+                genreStrings += 40 + genres[i].length();
+            }
+            // Entrée de HashMap avec clé et valeur boxées
+            long dictionaries = 64L * (trackOrdinalById.size() + artistOrdinalById.size() + genreOrdinalByName.size());
+            return arrays + genreStrings + dictionaries;
+        }
+
+        public ListeningColumns build() {
+            return new ListeningColumns(this);
+        }
+
+        private int artistOrdinal(int artistId) {
+            return artistOrdinalById.computeIfAbsent(artistId, id -> {
+                artistIds = ensureCapacity(artistIds, artistCount + 1);
+                artistIds[artistCount] = id;
+                return artistCount++;
+            });
+        }
+
+        private int genreOrdinal(String genre) {
+            return genreOrdinalByName.computeIfAbsent(genre, name -> {
+                genres = ensureCapacity(genres, genreCount + 1);
+                genres[genreCount] = name;
+                return genreCount++;
+            });
+        }
+
+        private static long[] ensureCapacity(long[] array, int required) {
+            return required <= array.length ? array : Arrays.copyOf(array, Math.max(required, array.length * 2));
+        }
+
+        private static int[] ensureCapacity(int[] array, int required) {
+            return required <= array.length ? array : Arrays.copyOf(array, Math.max(required, array.length * 2));
+        }
+
+        private static String[] ensureCapacity(String[] array, int required) {
+            return required <= array.length ? array : Arrays.copyOf(array, Math.max(required, array.length * 2));
+        }
+    }
+}
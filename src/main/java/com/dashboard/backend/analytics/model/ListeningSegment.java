@@ -0,0 +1,28 @@
+package com.dashboard.backend.analytics.model;
+
+/**
+ * Écoutes d'un utilisateur sur un mois, telles qu'écrites dans un segment sur disque :
+ * dates (microsecondes epoch, croissantes), morceau de chaque écoute, et pour chaque morceau
+ * distinct ses artistes et ses genres.
+ */
+public record ListeningSegment(
+        long[] playedAtMicros,
+        int[] trackIds,
+        int[] distinctTrackIds,
+        int[][] trackArtistIds,
+        String[][] trackGenres
+) {
+
+    public int size() {
+        return playedAtMicros.length;
+    }
+
+    public void appendTo(ListeningColumns.Builder builder) {
+        for (int i = 0; i < distinctTrackIds.length; i++) {
+            builder.addTrack(distinctTrackIds[i], trackArtistIds[i], trackGenres[i]);
+        }
+        for (int i = 0; i < playedAtMicros.length; i++) {
+            builder.addPlay(playedAtMicros[i], trackIds[i]);
+        }
+    }
+}
@@ -1,62 +1,278 @@
 package com.dashboard.backend.analytics.repository;
 
 import com.dashboard.backend.User.model.ListeningHistory;
+import com.dashboard.backend.analytics.dto.HeatmapCellProjection;
 import com.dashboard.backend.analytics.dto.TopArtistDto;
+import com.dashboard.backend.analytics.dto.TopGenreDto;
+import com.dashboard.backend.analytics.dto.TopOverviewRowProjection;
 import com.dashboard.backend.analytics.dto.TopTrackProjection;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
 @org.springframework.stereotype.Repository
-public interface AnalyticsRepository extends JpaRepository<ListeningHistory, UUID> {
+public interface AnalyticsRepository extends JpaRepository<ListeningHistory, Long> {
 
+    /**
+     * Top artistes sur une période, lus dans les agrégats quotidiens (jours UTC, bornes incluses).
+     * Deux phases : comptage par artist_id sur les seuls agrégats, puis enrichissement
+     * (nom, image) des {@code limit} artistes retenus.
+     */
     @Query(value = """
+        WITH play_counts AS (
+            SELECT artist_id, SUM(plays) AS play_count
+            FROM user_artist_daily
+            WHERE user_id = :userId
+              AND day BETWEEN :startDay AND :endDay
+            GROUP BY artist_id
+        ), top_artists AS (
+            SELECT artist_id, play_count
+            FROM play_counts
+            ORDER BY play_count DESC
+            LIMIT :limit
+        )
         SELECT
-            a.id AS artistId,
+            a.spotify_id AS artistId,
             a.name AS artistName,
-            COUNT(lh.id) AS playCount,
+            ta.play_count AS playCount,
             a.image_url AS artistImageUrl
-        FROM listening_history lh
-        JOIN tracks t ON lh.track_id = t.id
-        JOIN track_artists ta ON t.id = ta.track_id
-        JOIN artists a ON ta.artist_id = a.id
-        WHERE lh.user_id = :userId
-          AND lh.played_at BETWEEN :startDate AND :endDate
-        GROUP BY a.id, a.name, a.image_url
-        ORDER BY playCount DESC
-        LIMIT :limit
+        FROM top_artists ta
+        JOIN artists a ON a.id = ta.artist_id
+        ORDER BY ta.play_count DESC
     """, nativeQuery = true)
     List<TopArtistDto> findTopArtistsByPlayCount(
             @Param("userId") UUID userId,
-            @Param("startDate") Instant startDate,
-            @Param("endDate") Instant endDate,
+            @Param("startDay") LocalDate startDay,
+            @Param("endDay") LocalDate endDay,
             @Param("limit") int limit
     );
 
+    /**
+     * Top morceaux sur une période, lus dans les agrégats quotidiens (jours UTC, bornes incluses).
+     * Deux phases : comptage par track_id sur les seuls agrégats, puis résolution du nom
+     * et des artistes pour les {@code limit} morceaux retenus uniquement.
+     */
     @Query(value = """
+        WITH play_counts AS (
+            SELECT track_id, SUM(plays) AS play_count
+            FROM user_track_daily
+            WHERE user_id = :userId
+              AND day BETWEEN :startDay AND :endDay
+            GROUP BY track_id
+        ), top_tracks AS (
+            SELECT track_id, play_count
+            FROM play_counts
+            ORDER BY play_count DESC
+            LIMIT :limit
+        )
         SELECT
-            t.id AS trackId,
+            t.spotify_id AS trackId,
             t.name AS trackName,
-            STRING_AGG(DISTINCT a.name, ', ' ORDER BY a.name) AS artistNames,
-            COUNT(DISTINCT lh.id) AS playCount
-        FROM listening_history lh
-        JOIN tracks t ON lh.track_id = t.id
-        JOIN track_artists ta ON t.id = ta.track_id
-        JOIN artists a ON ta.artist_id = a.id
-        WHERE lh.user_id = :userId
-          AND lh.played_at BETWEEN :startDate AND :endDate
-        GROUP BY t.id, t.name
+            (SELECT STRING_AGG(a.name, ', ' ORDER BY a.name)
+             FROM track_artists ta
+             JOIN artists a ON a.id = ta.artist_id
+             WHERE ta.track_id = t.id) AS artistNames,
+            tt.play_count AS playCount
+        FROM top_tracks tt
+        JOIN tracks t ON t.id = tt.track_id
+        ORDER BY tt.play_count DESC
+    """, nativeQuery = true)
+    List<TopTrackProjection> findTopTracksByPlayCount(
+            @Param("userId") UUID userId,
+            @Param("startDay") LocalDate startDay,
+            @Param("endDay") LocalDate endDay,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Répartition des écoutes par genre sur une période (jours UTC, bornes incluses) : écoutes comptées
+     * par morceau dans les agrégats quotidiens, puis réparties sur les genres de chaque morceau
+     * ({@code tracks.genres}). Une écoute compte pour chacun des genres de son morceau.
+     */
+    @Query(value = """
+        WITH play_counts AS (
+            SELECT track_id, SUM(plays) AS play_count
+            FROM user_track_daily
+            WHERE user_id = :userId
+              AND day BETWEEN :startDay AND :endDay
+            GROUP BY track_id
+        )
+        SELECT
+            g.genre AS genre,
+            CAST(SUM(pc.play_count) AS BIGINT) AS playCount
+        FROM play_counts pc
+        JOIN tracks t ON t.id = pc.track_id
+        CROSS JOIN LATERAL unnest(t.genres) AS g(genre)
+        GROUP BY g.genre
         ORDER BY playCount DESC
         LIMIT :limit
     """, nativeQuery = true)
-    List<TopTrackProjection> findTopTracksByPlayCount(
+    List<TopGenreDto> findTopGenresByPlayCount(
+            @Param("userId") UUID userId,
+            @Param("startDay") LocalDate startDay,
+            @Param("endDay") LocalDate endDay,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Top artistes pré-calculés d'une période ({@code user_top_artists}), valables le jour {@code computedOn}.
+     * Vide si le classement n'a pas encore été calculé ce jour-là.
+     */
+    @Query(value = """
+        SELECT
+            a.spotify_id AS artistId,
+            a.name AS artistName,
+            s.play_count AS playCount,
+            a.image_url AS artistImageUrl
+        FROM user_top_artists s
+        JOIN artists a ON a.id = s.artist_id
+        WHERE s.user_id = :userId
+          AND s.range_key = :rangeKey
+          AND s.rank <= :limit
+          AND s.computed_on = :computedOn
+        ORDER BY s.rank
+    """, nativeQuery = true)
+    List<TopArtistDto> findTopArtistsFromSummary(
+            @Param("userId") UUID userId,
+            @Param("rangeKey") String rangeKey,
+            @Param("computedOn") LocalDate computedOn,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Top morceaux pré-calculés d'une période ({@code user_top_tracks}), valables le jour {@code computedOn}.
+     * Vide si le classement n'a pas encore été calculé ce jour-là.
+     */
+    @Query(value = """
+        SELECT
+            t.spotify_id AS trackId,
+            t.name AS trackName,
+            (SELECT STRING_AGG(a.name, ', ' ORDER BY a.name)
+             FROM track_artists ta
+             JOIN artists a ON a.id = ta.artist_id
+             WHERE ta.track_id = t.id) AS artistNames,
+            s.play_count AS playCount
+        FROM user_top_tracks s
+        JOIN tracks t ON t.id = s.track_id
+        WHERE s.user_id = :userId
+          AND s.range_key = :rangeKey
+          AND s.rank <= :limit
+          AND s.computed_on = :computedOn
+        ORDER BY s.rank
+    """, nativeQuery = true)
+    List<TopTrackProjection> findTopTracksFromSummary(
             @Param("userId") UUID userId,
-            @Param("startDate") Instant startDate,
-            @Param("endDate") Instant endDate,
+            @Param("rangeKey") String rangeKey,
+            @Param("computedOn") LocalDate computedOn,
             @Param("limit") int limit
     );
+
+    /**
+     * Top artistes et top morceaux des trois périodes en une seule requête : chaque table d'agrégats
+     * n'est parcourue qu'une fois, les écoutes de chaque période sont comptées avec {@code FILTER}
+     * et classées par {@code ROW_NUMBER()}. Seuls les éléments classés dans les {@code limit}
+     * premiers d'au moins une période sont enrichis (noms, image, artistes).
+     */
+    @Query(value = """
+        WITH artist_counts AS (
+            SELECT
+                artist_id,
+                SUM(plays) FILTER (WHERE day >= :shortTermStart) AS short_term_plays,
+                SUM(plays) FILTER (WHERE day >= :mediumTermStart) AS medium_term_plays,
+                SUM(plays) AS all_time_plays,
+                ROW_NUMBER() OVER (ORDER BY SUM(plays) FILTER (WHERE day >= :shortTermStart) DESC NULLS LAST) AS short_term_rank,
+                ROW_NUMBER() OVER (ORDER BY SUM(plays) FILTER (WHERE day >= :mediumTermStart) DESC NULLS LAST) AS medium_term_rank,
+                ROW_NUMBER() OVER (ORDER BY SUM(plays) DESC) AS all_time_rank
+            FROM user_artist_daily
+            WHERE user_id = :userId
+              AND day <= :endDay
+            GROUP BY artist_id
+        ), track_counts AS (
+            SELECT
+                track_id,
+                SUM(plays) FILTER (WHERE day >= :shortTermStart) AS short_term_plays,
+                SUM(plays) FILTER (WHERE day >= :mediumTermStart) AS medium_term_plays,
+                SUM(plays) AS all_time_plays,
+                ROW_NUMBER() OVER (ORDER BY SUM(plays) FILTER (WHERE day >= :shortTermStart) DESC NULLS LAST) AS short_term_rank,
+                ROW_NUMBER() OVER (ORDER BY SUM(plays) FILTER (WHERE day >= :mediumTermStart) DESC NULLS LAST) AS medium_term_rank,
+                ROW_NUMBER() OVER (ORDER BY SUM(plays) DESC) AS all_time_rank
+            FROM user_track_daily
+            WHERE user_id = :userId
+              AND day <= :endDay
+            GROUP BY track_id
+        )
+        SELECT
+            'ARTIST' AS kind,
+            a.spotify_id AS itemId,
+            a.name AS name,
+            a.image_url AS imageUrl,
+            CAST(NULL AS TEXT) AS artistNames,
+            c.short_term_plays AS shortTermPlays,
+            c.short_term_rank AS shortTermRank,
+            c.medium_term_plays AS mediumTermPlays,
+            c.medium_term_rank AS mediumTermRank,
+            c.all_time_plays AS allTimePlays,
+            c.all_time_rank AS allTimeRank
+        FROM artist_counts c
+        JOIN artists a ON a.id = c.artist_id
+        WHERE c.short_term_rank <= :limit OR c.medium_term_rank <= :limit OR c.all_time_rank <= :limit
+        UNION ALL
+        SELECT
+            'TRACK',
+            t.spotify_id,
+            t.name,
+            NULL,
+            (SELECT STRING_AGG(a.name, ', ' ORDER BY a.name)
+             FROM track_artists ta
+             JOIN artists a ON a.id = ta.artist_id
+             WHERE ta.track_id = t.id),
+            c.short_term_plays,
+            c.short_term_rank,
+            c.medium_term_plays,
+            c.medium_term_rank,
+            c.all_time_plays,
+            c.all_time_rank
+        FROM track_counts c
+        JOIN tracks t ON t.id = c.track_id
+        WHERE c.short_term_rank <= :limit OR c.medium_term_rank <= :limit OR c.all_time_rank <= :limit
+    """, nativeQuery = true)
+    List<TopOverviewRowProjection> findTopOverview(
+            @Param("userId") UUID userId,
+            @Param("shortTermStart") LocalDate shortTermStart,
+            @Param("mediumTermStart") LocalDate mediumTermStart,
+            @Param("endDay") LocalDate endDay,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Écoutes et durée par jour de la semaine et heure locale sur une période (jours UTC, bornes incluses),
+     * à partir des agrégats horaires. Chaque heure UTC est rattachée au jour et à l'heure locale
+     * de son début dans le fuseau {@code timeZone} (changements d'heure compris).
+     */
+    @Query(value = """
+        SELECT
+            EXTRACT(ISODOW FROM h.local_start)::int AS dayOfWeek,
+            EXTRACT(HOUR FROM h.local_start)::int AS hour,
+            SUM(h.plays) AS playCount,
+            SUM(h.ms_played) AS msPlayed
+        FROM (
+            SELECT ((day + make_interval(hours => hour)) AT TIME ZONE 'UTC') AT TIME ZONE :timeZone AS local_start,
+                   plays,
+                   ms_played
+            FROM user_hour_daily
+            WHERE user_id = :userId
+              AND day BETWEEN :startDay AND :endDay
+        ) h
+        GROUP BY 1, 2
+    """, nativeQuery = true)
+    List<HeatmapCellProjection> findListeningHeatmap(
+            @Param("userId") UUID userId,
+            @Param("startDay") LocalDate startDay,
+            @Param("endDay") LocalDate endDay,
+            @Param("timeZone") String timeZone
+    );
 }
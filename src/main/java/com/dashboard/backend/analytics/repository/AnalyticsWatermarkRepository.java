@@ -0,0 +1,98 @@
+package com.dashboard.backend.analytics.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Dernière modification des données dont dépendent les analytics d'un utilisateur (voir V21, V23) :
+ * écoutes synchronisées, classements recalculés ensuite, et instantanés de top artistes.
+ *
+ * Les horodatages sont pris à l'écriture ({@code clock_timestamp()}) et non au début de la transaction :
+ * une longue synchronisation validée après un recalcul fait quand même avancer le watermark.
+ * La même table garde la dernière visite de l'utilisateur (V24), qui n'entre pas dans le watermark.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AnalyticsWatermarkRepository {
+
+    private static final String TOUCH_HISTORY = """
+        INSERT INTO user_analytics_watermarks (user_id, history_synced_at)
+        VALUES (?, clock_timestamp())
+        ON CONFLICT (user_id) DO UPDATE SET history_synced_at = EXCLUDED.history_synced_at
+    """;
+
+    private static final String TOUCH_SUMMARIES = """
+        INSERT INTO user_analytics_watermarks (user_id, summaries_refreshed_at)
+        VALUES (?, clock_timestamp())
+        ON CONFLICT (user_id) DO UPDATE SET summaries_refreshed_at = EXCLUDED.summaries_refreshed_at
+    """;
+
+    private static final String TOUCH_LAST_SEEN = """
+        INSERT INTO user_analytics_watermarks (user_id, last_seen_at)
+        VALUES (?, now())
+        ON CONFLICT (user_id) DO UPDATE SET last_seen_at = EXCLUDED.last_seen_at
+    """;
+
+    private static final String FIND_SEEN_SINCE = """
+        SELECT user_id FROM user_analytics_watermarks
+        WHERE user_id = ANY(?) AND last_seen_at >= ?
+    """;
+
+    private static final String FIND_WATERMARK = """
+        SELECT GREATEST(
+            (SELECT GREATEST(history_synced_at, summaries_refreshed_at)
+             FROM user_analytics_watermarks WHERE user_id = ?),
+            (SELECT MAX(updated_at) FROM cached_top_artists_current WHERE user_id = ?)
+        )
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * À appeler à la fin de la transaction de synchronisation qui insère de nouvelles écoutes :
+     * les réponses changent d'ETag au moment où écoutes et agrégats deviennent visibles.
+     */
+    public void touchHistory(UUID userId) {
+        jdbcTemplate.update(TOUCH_HISTORY, userId);
+    }
+
+    /**
+     * À appeler dans la transaction qui recalcule les classements ({@link TopSummaryRepository#refreshForUser}) :
+     * une réponse calculée sous le nouvel ETag voit toujours les classements à jour.
+     */
+    public void touchSummaries(UUID userId) {
+        jdbcTemplate.update(TOUCH_SUMMARIES, userId);
+    }
+
+    /**
+     * Enregistre une visite des analytics (voir V24) ; sans effet sur le watermark.
+     */
+    public void touchLastSeen(UUID userId) {
+        jdbcTemplate.update(TOUCH_LAST_SEEN, userId);
+    }
+
+    /**
+     * @return parmi {@code userIds}, les utilisateurs venus depuis {@code since}
+     */
+    public Set<UUID> findSeenSince(Collection<UUID> userIds, Instant since) {
+        if (userIds.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(FIND_SEEN_SINCE, UUID.class,
+                userIds.toArray(UUID[]::new), Timestamp.from(since)));
+    }
+
+    public Optional<Instant> findWatermark(UUID userId) {
+        Timestamp watermark = jdbcTemplate.queryForObject(FIND_WATERMARK, Timestamp.class, userId, userId);
+        return Optional.ofNullable(watermark).map(Timestamp::toInstant);
+    }
+}
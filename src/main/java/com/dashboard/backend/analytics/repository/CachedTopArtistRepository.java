@@ -1,35 +1,115 @@
 package com.dashboard.backend.analytics.repository;
 
 import com.dashboard.backend.analytics.model.CachedTopArtist;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+/**
+ * Instantanés des top artistes Spotify, par générations (voir V20).
+ *
+ * Une génération est écrite en une seule requête puis rendue courante en basculant le pointeur
+ * {@code cached_top_artists_current}, dans la même transaction. La lecture joint le pointeur et
+ * les lignes en une requête : elle voit toujours une génération complète. Les générations qui ne
+ * sont plus pointées sont supprimées par lots ({@link #deleteRetiredGenerations()}).
+ */
 @Repository
-public interface CachedTopArtistRepository extends JpaRepository<CachedTopArtist, UUID> {
+@RequiredArgsConstructor
+public class CachedTopArtistRepository {
+
+    private static final String FIND_CURRENT = """
+        SELECT c.updated_at, a.artist_id_spotify, a.artist_name, a.artist_image_url, a.artist_rank
+        FROM cached_top_artists_current c
+        JOIN cached_top_artists a ON a.generation = c.generation
+        WHERE c.user_id = ? AND c.time_range = ?
+        ORDER BY a.artist_rank
+    """;
+
+    private static final String FIND_UPDATED_AT = """
+        SELECT updated_at FROM cached_top_artists_current WHERE user_id = ? AND time_range = ?
+    """;
+
+    private static final String INSERT_GENERATION = """
+        INSERT INTO cached_top_artists (user_id, time_range, generation, artist_id_spotify, artist_name,
+                                        artist_image_url, artist_rank, last_updated_at)
+        SELECT ?, ?, ?, u.artist_id_spotify, u.artist_name, u.artist_image_url, u.artist_rank, ?
+        FROM unnest(?::text[], ?::text[], ?::text[], ?::int[])
+            AS u(artist_id_spotify, artist_name, artist_image_url, artist_rank)
+    """;
+
+    private static final String SWAP_CURRENT = """
+        INSERT INTO cached_top_artists_current (user_id, time_range, generation, updated_at)
+        VALUES (?, ?, ?, ?)
+        ON CONFLICT (user_id, time_range)
+        DO UPDATE SET generation = EXCLUDED.generation, updated_at = EXCLUDED.updated_at
+    """;
+
+    private static final String DELETE_RETIRED = """
+        DELETE FROM cached_top_artists a
+        WHERE NOT EXISTS (
+            SELECT 1 FROM cached_top_artists_current c WHERE c.generation = a.generation
+        )
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record Snapshot(List<CachedTopArtist> artists, Instant updatedAt) {}
+
+    /**
+     * Génération courante de l'instantané, triée par rang.
+     */
+    public Optional<Snapshot> findCurrent(UUID userId, String timeRange) {
+        List<CachedTopArtist> artists = new ArrayList<>();
+        Instant[] updatedAt = new Instant[1];
+        jdbcTemplate.query(FIND_CURRENT, rs -> {
+            updatedAt[0] = rs.getTimestamp("updated_at").toInstant();
+            artists.add(new CachedTopArtist(
+                    rs.getString("artist_id_spotify"),
+                    rs.getString("artist_name"),
+                    rs.getString("artist_image_url"),
+                    rs.getInt("artist_rank")));
+        }, userId, timeRange);
+        return artists.isEmpty() ? Optional.empty() : Optional.of(new Snapshot(artists, updatedAt[0]));
+    }
 
     /**
-     * Méthode clé pour vérifier la fraîcheur du cache.
-     * Elle trouve la date de la dernière mise à jour pour un utilisateur et une période donnés.
+     * Date de la génération courante, lue par clé primaire sans charger les artistes.
      */
-    @Query("SELECT MAX(c.lastUpdatedAt) FROM CachedTopArtist c WHERE c.user.id = :userId AND c.timeRange = :timeRange")
-    Optional<Instant> findLastUpdateForUserAndTimeRange(@Param("userId") UUID userId, @Param("timeRange") String timeRange);
+    public Optional<Instant> findUpdatedAt(UUID userId, String timeRange) {
+        return jdbcTemplate.query(FIND_UPDATED_AT, (rs, rowNum) -> rs.getTimestamp("updated_at").toInstant(),
+                userId, timeRange).stream().findFirst();
+    }
 
     /**
-     * Récupère les artistes du cache, triés par leur classement.
+     * Écrit les artistes sous une nouvelle génération et la rend courante.
+     * L'ancienne génération reste en place jusqu'au prochain {@link #deleteRetiredGenerations()}.
      */
-    List<CachedTopArtist> findByUser_IdAndTimeRangeOrderByRankAsc(UUID userId, String timeRange);
+    @Transactional
+    public void publishGeneration(UUID userId, String timeRange, List<CachedTopArtist> artists, Instant updatedAt) {
+        Long generation = jdbcTemplate.queryForObject("SELECT nextval('cached_top_artists_generation_seq')", Long.class);
+        Timestamp at = Timestamp.from(updatedAt);
+        jdbcTemplate.update(INSERT_GENERATION, userId, timeRange, generation, at,
+                artists.stream().map(CachedTopArtist::artistIdSpotify).toArray(String[]::new),
+                artists.stream().map(CachedTopArtist::artistName).toArray(String[]::new),
+                artists.stream().map(CachedTopArtist::artistImageUrl).toArray(String[]::new),
+                artists.stream().map(CachedTopArtist::rank).toArray(Integer[]::new));
+        jdbcTemplate.update(SWAP_CURRENT, userId, timeRange, generation, at);
+    }
 
     /**
-     * Vide le cache pour un utilisateur et une période avant d'y insérer de nouvelles données.
+     * Supprime en une requête toutes les lignes des générations qui ne sont plus courantes.
+     *
+     * @return le nombre de lignes supprimées
      */
-    @Modifying
-    void deleteByUser_IdAndTimeRange(UUID userId, String timeRange);
+    public int deleteRetiredGenerations() {
+        return jdbcTemplate.update(DELETE_RETIRED);
+    }
 }
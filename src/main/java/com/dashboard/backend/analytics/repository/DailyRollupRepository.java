@@ -0,0 +1,151 @@
+package com.dashboard.backend.analytics.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Maintient les agrégats quotidiens {@code user_track_daily}, {@code user_artist_daily} et {@code user_hour_daily}.
+ *
+ * Les écoutes sont ajoutées dans la transaction qui insère les lignes de {@code listening_history},
+ * si bien que les agrégats ne divergent jamais de l'historique brut.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DailyRollupRepository {
+
+    // Requêtes visibles du package : leur plan est vérifié par AnalyticsQueryPlanTest
+    static final String UPSERT_TRACK_DAILY = """
+        INSERT INTO user_track_daily (user_id, day, track_id, plays, ms_played)
+        VALUES (?, ?, ?, 1, ?)
+        ON CONFLICT (user_id, day, track_id)
+        DO UPDATE SET plays = user_track_daily.plays + 1,
+                      ms_played = user_track_daily.ms_played + EXCLUDED.ms_played
+    """;
+
+    static final String UPSERT_ARTIST_DAILY = """
+        INSERT INTO user_artist_daily (user_id, day, artist_id, plays, ms_played)
+        VALUES (?, ?, ?, 1, ?)
+        ON CONFLICT (user_id, day, artist_id)
+        DO UPDATE SET plays = user_artist_daily.plays + 1,
+                      ms_played = user_artist_daily.ms_played + EXCLUDED.ms_played
+    """;
+
+    static final String UPSERT_HOUR_DAILY = """
+        INSERT INTO user_hour_daily (user_id, day, hour, plays, ms_played)
+        VALUES (?, ?, ?, 1, ?)
+        ON CONFLICT (user_id, day, hour)
+        DO UPDATE SET plays = user_hour_daily.plays + 1,
+                      ms_played = user_hour_daily.ms_played + EXCLUDED.ms_played
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Une écoute à ajouter aux agrégats.
+     */
+    public record Play(UUID userId, Instant playedAt, int trackId, int durationMs, Collection<Integer> artistIds) {
+
+        LocalDate day() {
+            return LocalDate.ofInstant(playedAt, ZoneOffset.UTC);
+        }
+
+        int hour() {
+            return playedAt.atOffset(ZoneOffset.UTC).getHour();
+        }
+    }
+
+    /**
+     * Ajoute les écoutes aux agrégats (par lots). Les morceaux et artistes référencés
+     * doivent déjà être écrits en base dans la transaction courante.
+     */
+    public void recordPlays(List<Play> plays) {
+        if (plays.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> trackRows = new ArrayList<>(plays.size());
+        List<Object[]> artistRows = new ArrayList<>();
+        List<Object[]> hourRows = new ArrayList<>(plays.size());
+        for (Play play : plays) {
+            Date day = Date.valueOf(play.day());
+            trackRows.add(new Object[]{play.userId(), day, play.trackId(), (long) play.durationMs()});
+            hourRows.add(new Object[]{play.userId(), day, (short) play.hour(), (long) play.durationMs()});
+            for (Integer artistId : play.artistIds()) {
+                artistRows.add(new Object[]{play.userId(), day, artistId, (long) play.durationMs()});
+            }
+        }
+
+        jdbcTemplate.batchUpdate(UPSERT_TRACK_DAILY, trackRows);
+        jdbcTemplate.batchUpdate(UPSERT_ARTIST_DAILY, artistRows);
+        jdbcTemplate.batchUpdate(UPSERT_HOUR_DAILY, hourRows);
+    }
+
+    /**
+     * Recalcule les agrégats à partir de {@code listening_history}. Les jours déjà compactés
+     * par la rétention (écoutes brutes supprimées) sont conservés tels quels.
+     */
+    public RebuildResult rebuildAll() {
+        Date from = Date.valueOf(findCompactedBefore().orElse(LocalDate.EPOCH));
+        jdbcTemplate.update("DELETE FROM user_track_daily WHERE day >= ?", from);
+        jdbcTemplate.update("DELETE FROM user_artist_daily WHERE day >= ?", from);
+        jdbcTemplate.update("DELETE FROM user_hour_daily WHERE day >= ?", from);
+
+        int trackRows = jdbcTemplate.update("""
+            INSERT INTO user_track_daily (user_id, day, track_id, plays, ms_played)
+            SELECT lh.user_id,
+                   (lh.played_at AT TIME ZONE 'UTC')::date,
+                   lh.track_id,
+                   COUNT(*),
+                   SUM(t.duration_ms)
+            FROM listening_history lh
+            JOIN tracks t ON t.id = lh.track_id
+            WHERE lh.played_at >= CAST(? AS date) AT TIME ZONE 'UTC'
+            GROUP BY lh.user_id, (lh.played_at AT TIME ZONE 'UTC')::date, lh.track_id
+        """, from);
+
+        int artistRows = jdbcTemplate.update("""
+            INSERT INTO user_artist_daily (user_id, day, artist_id, plays, ms_played)
+            SELECT utd.user_id, utd.day, ta.artist_id, SUM(utd.plays), SUM(utd.ms_played)
+            FROM user_track_daily utd
+            JOIN track_artists ta ON ta.track_id = utd.track_id
+            WHERE utd.day >= ?
+            GROUP BY utd.user_id, utd.day, ta.artist_id
+        """, from);
+
+        int hourRows = jdbcTemplate.update("""
+            INSERT INTO user_hour_daily (user_id, day, hour, plays, ms_played)
+            SELECT lh.user_id,
+                   (lh.played_at AT TIME ZONE 'UTC')::date,
+                   EXTRACT(HOUR FROM lh.played_at AT TIME ZONE 'UTC')::smallint,
+                   COUNT(*),
+                   SUM(t.duration_ms)
+            FROM listening_history lh
+            JOIN tracks t ON t.id = lh.track_id
+            WHERE lh.played_at >= CAST(? AS date) AT TIME ZONE 'UTC'
+            GROUP BY 1, 2, 3
+        """, from);
+
+        return new RebuildResult(trackRows, artistRows, hourRows);
+    }
+
+    /**
+     * Premier jour dont les écoutes brutes sont encore conservées, si une rétention a déjà eu lieu.
+     */
+    public Optional<LocalDate> findCompactedBefore() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(
+                "SELECT MAX(compacted_before) FROM listening_history_compactions", LocalDate.class));
+    }
+
+    public record RebuildResult(int trackRows, int artistRows, int hourRows) {}
+}
@@ -0,0 +1,138 @@
+package com.dashboard.backend.analytics.repository;
+
+import com.dashboard.backend.analytics.model.ListeningColumns;
+import com.dashboard.backend.analytics.model.ListeningSegment;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Alimente un {@link ListeningColumns.Builder} directement depuis JDBC, sans passer par les entités.
+ *
+ * Les écoutes sont lues par un parcours d'index seul sur (user_id, played_at) INCLUDE (track_id) ;
+ * les artistes et genres ne sont chargés que pour les morceaux pas encore connus du builder.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ListeningColumnsRepository {
+
+    private static final String PLAYS_AFTER = """
+        SELECT played_at, track_id
+        FROM listening_history
+        WHERE user_id = ? AND played_at > ?
+        ORDER BY played_at
+    """;
+
+    private static final String TRACK_FACTS = """
+        SELECT t.id,
+               ARRAY(SELECT ta.artist_id FROM track_artists ta WHERE ta.track_id = t.id) AS artist_ids,
+               COALESCE(t.genres, '{}') AS genres
+        FROM tracks t
+        WHERE t.id = ANY(?)
+    """;
+
+    private static final String PLAYS_BETWEEN = """
+        SELECT played_at, track_id
+        FROM listening_history
+        WHERE user_id = ? AND played_at >= ? AND played_at < ?
+        ORDER BY played_at
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<Instant> findFirstPlayedAt(UUID userId) {
+        Timestamp first = jdbcTemplate.queryForObject(
+                "SELECT MIN(played_at) FROM listening_history WHERE user_id = ?", Timestamp.class, userId);
+        return Optional.ofNullable(first).map(Timestamp::toInstant);
+    }
+
+    /**
+     * Écoutes d'un utilisateur sur un mois (UTC), avec les artistes et genres de chaque morceau,
+     * pour écrire un segment sur disque.
+     */
+    public ListeningSegment exportMonth(UUID userId, YearMonth month) {
+        Instant from = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant to = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+
+        List<Long> playedAt = new ArrayList<>();
+        List<Integer> trackIds = new ArrayList<>();
+        jdbcTemplate.query(PLAYS_BETWEEN, rs -> {
+            Instant at = rs.getTimestamp(1).toInstant();
+            playedAt.add(ChronoUnit.MICROS.between(Instant.EPOCH, at));
+            trackIds.add(rs.getInt(2));
+        }, userId, Timestamp.from(from), Timestamp.from(to));
+
+        Map<Integer, TrackFacts> facts = new LinkedHashMap<>();
+        if (!trackIds.isEmpty()) {
+            queryTrackFacts(new LinkedHashSet<>(trackIds), f -> facts.put(f.trackId(), f));
+        }
+
+        return new ListeningSegment(
+                playedAt.stream().mapToLong(Long::longValue).toArray(),
+                trackIds.stream().mapToInt(Integer::intValue).toArray(),
+                facts.keySet().stream().mapToInt(Integer::intValue).toArray(),
+                facts.values().stream().map(TrackFacts::artistIds).toArray(int[][]::new),
+                facts.values().stream().map(TrackFacts::genres).toArray(String[][]::new));
+    }
+
+    /**
+     * Ajoute au builder les écoutes postérieures à sa dernière écoute.
+     *
+     * @return le nombre d'écoutes ajoutées
+     */
+    public int appendPlays(UUID userId, ListeningColumns.Builder builder) {
+        Instant after = builder.lastPlayedAt() != null ? builder.lastPlayedAt() : Instant.EPOCH;
+
+        List<Instant> playedAt = new ArrayList<>();
+        List<Integer> trackIds = new ArrayList<>();
+        Set<Integer> unknownTracks = new LinkedHashSet<>();
+        jdbcTemplate.query(PLAYS_AFTER, rs -> {
+            int trackId = rs.getInt(2);
+            playedAt.add(rs.getTimestamp(1).toInstant());
+            trackIds.add(trackId);
+            if (!builder.hasTrack(trackId)) {
+                unknownTracks.add(trackId);
+            }
+        }, userId, Timestamp.from(after));
+
+        if (!unknownTracks.isEmpty()) {
+            loadTracks(unknownTracks, builder);
+        }
+        for (int i = 0; i < playedAt.size(); i++) {
+            builder.addPlay(playedAt.get(i), trackIds.get(i));
+        }
+        return playedAt.size();
+    }
+
+    private void loadTracks(Set<Integer> trackIds, ListeningColumns.Builder builder) {
+        queryTrackFacts(trackIds, facts -> builder.addTrack(facts.trackId(), facts.artistIds(), facts.genres()));
+    }
+
+    private void queryTrackFacts(Set<Integer> trackIds, Consumer<TrackFacts> consumer) {
+        jdbcTemplate.query(TRACK_FACTS, rs -> {
+            Integer[] artists = (Integer[]) rs.getArray(2).getArray();
+            int[] artistIds = new int[artists.length];
+            for (int i = 0; i < artists.length; i++) {
+                artistIds[i] = artists[i];
+            }
+            consumer.accept(new TrackFacts(rs.getInt(1), artistIds, (String[]) rs.getArray(3).getArray()));
+        }, (Object) trackIds.toArray(Integer[]::new));
+    }
+
+    private record TrackFacts(int trackId, int[] artistIds, String[] genres) {}
+}
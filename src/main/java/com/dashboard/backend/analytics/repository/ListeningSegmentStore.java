@@ -0,0 +1,335 @@
+package com.dashboard.backend.analytics.repository;
+
+import com.dashboard.backend.analytics.model.ListeningColumns;
+import com.dashboard.backend.analytics.model.ListeningSegment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Segments immuables sur disque : un fichier par utilisateur et par mois révolu, au format colonnes.
+ *
+ * PostgreSQL reste la source de vérité : un segment n'est qu'une copie d'un mois qui ne reçoit plus
+ * d'écoutes, écrite au premier chargement à froid et relue ensuite par {@link FileChannel#map}
+ * (parcours séquentiel, sans requête ni entité). Un segment absent ou illisible est simplement
+ * reconstruit depuis la base ; un segment dont le mois reçoit malgré tout des écoutes est supprimé
+ * (voir {@link #deleteMonthsFrom}).
+ *
+ * Format (little-endian) : un en-tête de 8 entiers, puis les morceaux distincts (identifiants,
+ * débuts et identifiants d'artistes, débuts et ordinaux de genres, dictionnaire des genres en UTF-8),
+ * puis, alignées sur 8 octets, les colonnes des écoutes (microsecondes epoch, identifiant du morceau).
+ */
+@Repository
+public class ListeningSegmentStore {
+
+    private static final int MAGIC = 0x4C485331; // "LHS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8 * Integer.BYTES;
+
+    // Un mois n'est scellé qu'une fois terminé depuis ce délai : la synchronisation ne récupère
+    // que les dernières écoutes, qui ne remontent jamais aussi loin.
+    private static final Duration SEALING_GRACE = Duration.ofDays(1);
+
+    private final boolean enabled;
+    private final Path directory;
+
+    public ListeningSegmentStore(@Value("${analytics.segments.enabled:false}") boolean enabled,
+                                 @Value("${analytics.segments.directory:${java.io.tmpdir}/listening-segments}") Path directory) {
+        this.enabled = enabled;
+        this.directory = directory;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Premier mois encore susceptible de recevoir des écoutes ; les mois précédents sont scellés.
+     */
+    public YearMonth firstUnsealedMonth(Instant now) {
+        return YearMonth.from(now.minus(SEALING_GRACE).atOffset(ZoneOffset.UTC));
+    }
+
+    /**
+     * Ajoute au builder les écoutes du segment d'un mois.
+     *
+     * @return faux si le segment n'existe pas
+     * @throws IOException si l'en-tête est invalide ou la taille du fichier incohérente ;
+     *                     rien n'a alors été ajouté au builder
+     */
+    public boolean appendTo(UUID userId, YearMonth month, ListeningColumns.Builder builder) throws IOException {
+        Path path = segmentPath(userId, month);
+        if (!Files.exists(path)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            Layout layout = Layout.read(mapped, channel.size(), path);
+
+            IntBuffer ints = mapped.slice(HEADER_BYTES, layout.playsOffset() - HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            int[] trackIds = read(ints, layout.trackCount());
+            int[] artistStart = read(ints, layout.trackCount() + 1);
+            int[] artistIds = read(ints, layout.artistLinkCount());
+            int[] genreStart = read(ints, layout.trackCount() + 1);
+            int[] genreOrdinals = read(ints, layout.genreLinkCount());
+            int[] genreOffsets = read(ints, layout.genreCount() + 1);
+            byte[] genreBytes = new byte[layout.genreBytes()];
+            mapped.get(HEADER_BYTES + ints.position() * Integer.BYTES, genreBytes);
+
+            String[] genres = new String[layout.genreCount()];
+            for (int g = 0; g < genres.length; g++) {
+                genres[g] = new String(genreBytes, genreOffsets[g], genreOffsets[g + 1] - genreOffsets[g], StandardCharsets.UTF_8);
+            }
+            for (int t = 0; t < trackIds.length; t++) {
+                int[] trackArtists = new int[artistStart[t + 1] - artistStart[t]];
+                System.arraycopy(artistIds, artistStart[t], trackArtists, 0, trackArtists.length);
+                String[] trackGenres = new String[genreStart[t + 1] - genreStart[t]];
+                for (int g = 0; g < trackGenres.length; g++) {
+                    trackGenres[g] = genres[genreOrdinals[genreStart[t] + g]];
+                }
+                builder.addTrack(trackIds[t], trackArtists, trackGenres);
+            }
+
+            // Colonnes des écoutes : lecture séquentielle directement depuis le fichier projeté
+            LongBuffer playedAt = mapped.slice(layout.playsOffset(), layout.playCount() * Long.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            IntBuffer playTracks = mapped.slice(layout.playsOffset() + layout.playCount() * Long.BYTES, layout.playCount() * Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            for (int i = 0; i < layout.playCount(); i++) {
+                builder.addPlay(playedAt.get(i), playTracks.get(i));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Écrit le segment d'un mois. Le fichier est écrit à côté puis renommé : un lecteur ne voit
+     * jamais de segment partiel.
+     */
+    public void write(UUID userId, YearMonth month, ListeningSegment segment) throws IOException {
+        Map<String, Integer> genreOrdinals = new LinkedHashMap<>();
+        int artistLinks = 0;
+        int genreLinks = 0;
+        for (int t = 0; t < segment.distinctTrackIds().length; t++) {
+            artistLinks += segment.trackArtistIds()[t].length;
+            genreLinks += segment.trackGenres()[t].length;
+            for (String genre : segment.trackGenres()[t]) {
+                genreOrdinals.putIfAbsent(genre, genreOrdinals.size());
+            }
+        }
+        byte[][] encodedGenres = genreOrdinals.keySet().stream()
+                .map(genre -> genre.getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+        int genreBytes = Stream.of(encodedGenres).mapToInt(bytes -> bytes.length).sum();
+
+        int trackCount = segment.distinctTrackIds().length;
+        Layout layout = new Layout(segment.size(), trackCount, artistLinks, genreLinks, encodedGenres.length, genreBytes);
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(layout.fileSize())).order(ByteOrder.LITTLE_ENDIAN);
+        layout.write(buffer);
+
+        buffer.asIntBuffer().put(segment.distinctTrackIds());
+        buffer.position(buffer.position() + trackCount * Integer.BYTES);
+        int start = 0;
+        buffer.putInt(start);
+        for (int[] artists : segment.trackArtistIds()) {
+            start += artists.length;
+            buffer.putInt(start);
+        }
+        for (int[] artists : segment.trackArtistIds()) {
+            for (int artistId : artists) {
+                buffer.putInt(artistId);
+            }
+        }
+        start = 0;
+        buffer.putInt(start);
+        for (String[] genres : segment.trackGenres()) {
+            start += genres.length;
+            buffer.putInt(start);
+        }
+        for (String[] genres : segment.trackGenres()) {
+            for (String genre : genres) {
+                buffer.putInt(genreOrdinals.get(genre));
+            }
+        }
+        int offset = 0;
+        buffer.putInt(offset);
+        for (byte[] bytes : encodedGenres) {
+            offset += bytes.length;
+            buffer.putInt(offset);
+        }
+        for (byte[] bytes : encodedGenres) {
+            buffer.put(bytes);
+        }
+
+        buffer.position(layout.playsOffset());
+        for (long micros : segment.playedAtMicros()) {
+            buffer.putLong(micros);
+        }
+        for (int trackId : segment.trackIds()) {
+            buffer.putInt(trackId);
+        }
+        buffer.flip();
+
+        Path path = segmentPath(userId, month);
+        Files.createDirectories(path.getParent());
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void delete(UUID userId, YearMonth month) throws IOException {
+        Files.deleteIfExists(segmentPath(userId, month));
+    }
+
+    /**
+     * Supprime tous les segments d'un utilisateur (ex: après une suppression d'écoutes en base).
+     */
+    public void deleteUser(UUID userId) throws IOException {
+        Path userDirectory = directory.resolve(userId.toString());
+        if (!Files.exists(userDirectory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(userDirectory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Supprime les segments d'un utilisateur à partir du mois {@code month} inclus
+     * (ex: la synchronisation a inséré des écoutes dans un mois déjà scellé).
+     *
+     * @return le nombre de segments supprimés
+     */
+    public int deleteMonthsFrom(UUID userId, YearMonth month) throws IOException {
+        Path userDirectory = directory.resolve(userId.toString());
+        if (!Files.isDirectory(userDirectory)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (Stream<Path> paths = Files.list(userDirectory)) {
+            for (Path path : paths.toList()) {
+                YearMonth segmentMonth = monthOf(path);
+                if (segmentMonth != null && !segmentMonth.isBefore(month)) {
+                    Files.deleteIfExists(path);
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Supprime, pour tous les utilisateurs, les segments des mois antérieurs à {@code month}
+     * (ex: après la suppression des partitions expirées).
+     *
+     * @return le nombre de segments supprimés
+     */
+    public int deleteMonthsBefore(YearMonth month) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (Stream<Path> paths = Files.walk(directory, 2)) {
+            for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                YearMonth segmentMonth = monthOf(path);
+                if (segmentMonth != null && segmentMonth.isBefore(month)) {
+                    Files.deleteIfExists(path);
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private Path segmentPath(UUID userId, YearMonth month) {
+        return directory.resolve(userId.toString()).resolve(month + ".lhs");
+    }
+
+    /**
+     * @return le mois d'un fichier de segment, ou {@code null} pour un fichier étranger au format des segments
+     */
+    private static YearMonth monthOf(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.endsWith(".lhs")) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(name.substring(0, name.length() - ".lhs".length()));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static int[] read(IntBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.get(values);
+        return values;
+    }
+
+    private record Layout(int playCount, int trackCount, int artistLinkCount, int genreLinkCount,
+                          int genreCount, int genreBytes) {
+
+        int playsOffset() {
+            // identifiants + 2 tableaux de débuts (trackCount + 1) + liens + décalages du dictionnaire
+            long ints = 3L * trackCount + 2 + artistLinkCount + genreLinkCount + genreCount + 1;
+            long end = HEADER_BYTES + ints * Integer.BYTES + genreBytes;
+            return Math.toIntExact((end + Long.BYTES - 1) / Long.BYTES * Long.BYTES);
+        }
+
+        long fileSize() {
+            return playsOffset() + (long) playCount * (Long.BYTES + Integer.BYTES);
+        }
+
+        void write(ByteBuffer buffer) {
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(playCount).putInt(trackCount)
+                    .putInt(artistLinkCount).putInt(genreLinkCount).putInt(genreCount).putInt(genreBytes);
+        }
+
+        static Layout read(ByteBuffer buffer, long fileSize, Path path) throws IOException {
+            if (fileSize < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Segment invalide : " + path);
+            }
+            Layout layout = new Layout(buffer.getInt(8), buffer.getInt(12), buffer.getInt(16),
+                    buffer.getInt(20), buffer.getInt(24), buffer.getInt(28));
+            if (layout.playCount() < 0 || layout.trackCount() < 0 || layout.artistLinkCount() < 0
+                    || layout.genreLinkCount() < 0 || layout.genreCount() < 0 || layout.genreBytes() < 0
+                    || layout.fileSize() != fileSize) {
+                throw new IOException("Segment tronqué ou incohérent : " + path);
+            }
+            return layout;
+        }
+    }
+}
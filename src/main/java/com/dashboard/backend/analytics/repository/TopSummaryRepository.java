@@ -0,0 +1,91 @@
+package com.dashboard.backend.analytics.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Maintient les classements pré-calculés {@code user_top_artists} et {@code user_top_tracks},
+ * lus par {@link AnalyticsRepository}.
+ *
+ * Les lignes d'un utilisateur sont remplacées dans une seule transaction : une lecture concurrente
+ * voit l'ancien classement complet ou le nouveau, jamais un état intermédiaire.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TopSummaryRepository {
+
+    /** Nombre d'éléments conservés par classement. */
+    public static final int SUMMARY_SIZE = 50;
+
+    private static final String RANGES = """
+        WITH ranges (range_key, start_day) AS (
+            VALUES ('LAST_30_DAYS', ?::date - 30),
+                   ('LAST_180_DAYS', ?::date - 180),
+                   ('ALL_TIME', DATE '1970-01-01')
+        )
+    """;
+
+    // Requêtes visibles du package : leur plan est vérifié par AnalyticsQueryPlanTest
+    static final String REFRESH_ARTISTS = RANGES + """
+        , totals AS (
+            SELECT r.range_key, d.artist_id, SUM(d.plays) AS play_count,
+                   ROW_NUMBER() OVER (PARTITION BY r.range_key ORDER BY SUM(d.plays) DESC, d.artist_id) AS rank
+            FROM user_artist_daily d
+            JOIN ranges r ON d.day >= r.start_day
+            WHERE d.user_id = ?
+            GROUP BY r.range_key, d.artist_id
+        )
+        INSERT INTO user_top_artists (user_id, range_key, rank, artist_id, play_count, computed_on)
+        SELECT ?, range_key, rank, artist_id, play_count, ?
+        FROM totals
+        WHERE rank <= ?
+    """;
+
+    static final String REFRESH_TRACKS = RANGES + """
+        , totals AS (
+            SELECT r.range_key, d.track_id, SUM(d.plays) AS play_count,
+                   ROW_NUMBER() OVER (PARTITION BY r.range_key ORDER BY SUM(d.plays) DESC, d.track_id) AS rank
+            FROM user_track_daily d
+            JOIN ranges r ON d.day >= r.start_day
+            WHERE d.user_id = ?
+            GROUP BY r.range_key, d.track_id
+        )
+        INSERT INTO user_top_tracks (user_id, range_key, rank, track_id, play_count, computed_on)
+        SELECT ?, range_key, rank, track_id, play_count, ?
+        FROM totals
+        WHERE rank <= ?
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AnalyticsWatermarkRepository analyticsWatermarkRepository;
+
+    /**
+     * Recalcule les classements d'un utilisateur pour toutes les périodes, au jour {@code today} (UTC).
+     */
+    @Transactional
+    public void refreshForUser(UUID userId, LocalDate today) {
+        Date day = Date.valueOf(today);
+        jdbcTemplate.update("DELETE FROM user_top_artists WHERE user_id = ?", userId);
+        jdbcTemplate.update("DELETE FROM user_top_tracks WHERE user_id = ?", userId);
+        jdbcTemplate.update(REFRESH_ARTISTS, day, day, userId, userId, day, SUMMARY_SIZE);
+        jdbcTemplate.update(REFRESH_TRACKS, day, day, userId, userId, day, SUMMARY_SIZE);
+        // Les réponses d'analytics changent d'ETag en même temps que les classements
+        analyticsWatermarkRepository.touchSummaries(userId);
+    }
+
+    /**
+     * @return les utilisateurs dont les classements ont été calculés avant {@code today}
+     */
+    public List<UUID> findUsersWithSummaryBefore(LocalDate today) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT user_id FROM user_top_artists WHERE computed_on < ?",
+                UUID.class, Date.valueOf(today));
+    }
+}
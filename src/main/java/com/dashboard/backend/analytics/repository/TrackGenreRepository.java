@@ -0,0 +1,57 @@
+package com.dashboard.backend.analytics.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+/**
+ * Maintient {@code tracks.genres}, union triée des genres des artistes du morceau (voir V19).
+ *
+ * Appelé dans la transaction de synchronisation, une fois les morceaux, artistes et liens écrits :
+ * une seule requête recalcule tous les morceaux concernés.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TrackGenreRepository {
+
+    private static final String REFRESH_GENRES = """
+        UPDATE tracks t
+        SET genres = g.genres
+        FROM (
+            SELECT c.id,
+                   ARRAY(
+                       SELECT DISTINCT genre
+                       FROM track_artists ta
+                       JOIN artists a ON a.id = ta.artist_id
+                       CROSS JOIN LATERAL unnest(a.genres) AS genre
+                       WHERE ta.track_id = c.id
+                       ORDER BY genre
+                   ) AS genres
+            FROM (
+                SELECT unnest(?::int[]) AS id
+                UNION
+                SELECT track_id FROM track_artists WHERE artist_id = ANY(?::int[])
+            ) c
+        ) g
+        WHERE t.id = g.id
+          AND t.genres IS DISTINCT FROM g.genres
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Recalcule les genres des morceaux donnés et de tous les morceaux des artistes donnés
+     * (ex: artistes dont les genres viennent d'être récupérés).
+     *
+     * @return le nombre de morceaux dont les genres ont changé
+     */
+    public int refreshGenres(Collection<Integer> trackIds, Collection<Integer> artistIds) {
+        if (trackIds.isEmpty() && artistIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(REFRESH_GENRES,
+                trackIds.toArray(Integer[]::new), artistIds.toArray(Integer[]::new));
+    }
+}
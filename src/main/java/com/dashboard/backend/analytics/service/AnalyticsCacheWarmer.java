@@ -0,0 +1,248 @@
+package com.dashboard.backend.analytics.service;
+
+import com.dashboard.backend.analytics.repository.AnalyticsWatermarkRepository;
+import com.dashboard.backend.service.event.TopSummaryRefreshedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Préchauffe les réponses d'analytics des utilisateurs actifs après le recalcul de leurs classements.
+ *
+ * Un utilisateur est actif s'il a consulté ses analytics depuis moins de {@code active-days} jours,
+ * d'après sa dernière visite enregistrée en base ({@link AnalyticsWatermarkRepository#touchLastSeen}),
+ * commune à toutes les instances. Chaque instance rejoue les requêtes qu'elle a elle-même servies,
+ * puisque les réponses sont mises en cache localement ; seules des réponses calculées depuis la base
+ * sont enregistrées (voir {@link AnalyticsConditionalRequests}), jamais une requête qui appelle Spotify.
+ *
+ * Les utilisateurs à préchauffer sont traités par cycles, sur un seul thread, dans un budget explicite :
+ * au plus {@code max-warms-per-cycle} réponses et {@code cycle-time-budget} par cycle,
+ * {@code max-warms-per-user} réponses par utilisateur (les plus récentes). Un utilisateur
+ * hors budget reste en attente du cycle suivant.
+ */
+@Component
+@Slf4j
+public class AnalyticsCacheWarmer {
+
+    // Précision de la dernière visite enregistrée en base : une écriture par heure au plus
+    private static final Duration LAST_SEEN_RESOLUTION = Duration.ofHours(1);
+
+    private final AnalyticsWatermarkRepository analyticsWatermarkRepository;
+    private final boolean enabled;
+    private final Duration activeWindow;
+    private final int maxWarmsPerUser;
+    private final int maxWarmsPerCycle;
+    private final Duration cycleTimeBudget;
+    private final Map<UUID, RecentRequests> recentRequests;
+    private final Set<UUID> pending = new LinkedHashSet<>();
+    private final AtomicBoolean cycleRunning = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("analytics-warmer-", 0).factory());
+
+    public AnalyticsCacheWarmer(AnalyticsWatermarkRepository analyticsWatermarkRepository,
+                                @Value("${analytics.warmer.enabled:true}") boolean enabled,
+                                @Value("${analytics.warmer.active-days:7}") int activeDays,
+                                @Value("${analytics.warmer.max-warms-per-user:8}") int maxWarmsPerUser,
+                                @Value("${analytics.warmer.max-warms-per-cycle:200}") int maxWarmsPerCycle,
+                                @Value("${analytics.warmer.cycle-time-budget:10s}") Duration cycleTimeBudget,
+                                @Value("${analytics.warmer.max-tracked-users:10000}") int maxTrackedUsers) {
+        this.analyticsWatermarkRepository = analyticsWatermarkRepository;
+        this.enabled = enabled;
+        this.activeWindow = Duration.ofDays(activeDays);
+        this.maxWarmsPerUser = maxWarmsPerUser;
+        this.maxWarmsPerCycle = maxWarmsPerCycle;
+        this.cycleTimeBudget = cycleTimeBudget;
+        this.recentRequests = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, RecentRequests> eldest) {
+                return size() > maxTrackedUsers;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Enregistre une visite des analytics, sans requête à préchauffer
+     * (ex: tableau de bord, classement servi depuis Spotify).
+     */
+    public void recordVisit(UUID userId) {
+        if (enabled) {
+            persistVisit(userId, requestsOf(userId));
+        }
+    }
+
+    /**
+     * Enregistre une visite et une requête calculée uniquement depuis la base, avec de quoi la recalculer.
+     * Une requête déjà connue (même clé) remplace la précédente.
+     */
+    public void recordAccess(UUID userId, String requestKey, Runnable warm) {
+        if (!enabled) {
+            return;
+        }
+        RecentRequests requests = requestsOf(userId);
+        requests.record(requestKey, warm);
+        persistVisit(userId, requests);
+    }
+
+    @EventListener
+    public void onTopSummaryRefreshed(TopSummaryRefreshedEvent event) {
+        RecentRequests requests = recentRequests.get(event.userId());
+        if (requests == null || requests.isEmpty()) {
+            return;
+        }
+        synchronized (pending) {
+            pending.add(event.userId());
+        }
+    }
+
+    /**
+     * Lance un cycle de préchauffage s'il y a des utilisateurs en attente et qu'aucun cycle ne tourne.
+     */
+    @Scheduled(fixedDelayString = "${analytics.warmer.cycle-interval:30s}")
+    public void scheduleCycle() {
+        boolean hasPending;
+        synchronized (pending) {
+            hasPending = !pending.isEmpty();
+        }
+        if (hasPending && cycleRunning.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    runCycle();
+                } catch (Exception e) {
+                    log.error("❌ Échec du cycle de préchauffage des analytics: {}", e.getMessage());
+                } finally {
+                    cycleRunning.set(false);
+                }
+            });
+        }
+    }
+
+    private void runCycle() {
+        long deadline = System.nanoTime() + cycleTimeBudget.toNanos();
+        List<UUID> candidates;
+        synchronized (pending) {
+            candidates = List.copyOf(pending);
+        }
+        Set<UUID> active = analyticsWatermarkRepository.findSeenSince(candidates, Instant.now().minus(activeWindow));
+
+        int warmed = 0;
+        int failed = 0;
+        int users = 0;
+        for (UUID userId : candidates) {
+            if (warmed + failed >= maxWarmsPerCycle || System.nanoTime() >= deadline) {
+                break;
+            }
+            synchronized (pending) {
+                pending.remove(userId);
+            }
+            RecentRequests requests = recentRequests.get(userId);
+            if (!active.contains(userId) || requests == null) {
+                continue;
+            }
+            users++;
+            int budget = Math.min(maxWarmsPerUser, maxWarmsPerCycle - warmed - failed);
+            for (Runnable warm : requests.mostRecent(budget)) {
+                if (System.nanoTime() >= deadline) {
+                    break;
+                }
+                try {
+                    warm.run();
+                    warmed++;
+                } catch (Exception e) {
+                    failed++;
+                    log.debug("Préchauffage d'une réponse échoué pour {}: {}", userId, e.getMessage());
+                }
+            }
+        }
+
+        int remaining;
+        synchronized (pending) {
+            remaining = pending.size();
+        }
+        log.debug("🔥 {} réponse(s) préchauffée(s) pour {} utilisateur(s), {} échec(s), {} utilisateur(s) en attente.",
+                warmed, users, failed, remaining);
+    }
+
+    private RecentRequests requestsOf(UUID userId) {
+        return recentRequests.computeIfAbsent(userId, id -> new RecentRequests(maxWarmsPerUser));
+    }
+
+    private void persistVisit(UUID userId, RecentRequests requests) {
+        if (!requests.visitToPersist(Instant.now())) {
+            return;
+        }
+        try {
+            analyticsWatermarkRepository.touchLastSeen(userId);
+        } catch (DataAccessException e) {
+            // La visite sera enregistrée à la prochaine requête ; la réponse n'en dépend pas
+            requests.forgetPersistedVisit();
+            log.warn("Dernière visite de {} non enregistrée : {}", userId, e.getMessage());
+        }
+    }
+
+    private static final class RecentRequests {
+
+        private final Map<String, Runnable> warmers;
+        private Instant visitPersistedAt;
+
+        private RecentRequests(int maxRequests) {
+            this.warmers = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Runnable> eldest) {
+                    return size() > maxRequests;
+                }
+            };
+        }
+
+        synchronized void record(String requestKey, Runnable warm) {
+            warmers.put(requestKey, warm);
+        }
+
+        synchronized boolean isEmpty() {
+            return warmers.isEmpty();
+        }
+
+        /**
+         * @return les {@code limit} requêtes les plus récemment servies, la plus récente d'abord
+         */
+        synchronized List<Runnable> mostRecent(int limit) {
+            return List.copyOf(warmers.values()).reversed().stream().limit(limit).toList();
+        }
+
+        /**
+         * @return vrai si la visite doit être écrite en base, la dernière écriture datant de plus d'une heure
+         */
+        synchronized boolean visitToPersist(Instant now) {
+            if (visitPersistedAt != null && visitPersistedAt.isAfter(now.minus(LAST_SEEN_RESOLUTION))) {
+                return false;
+            }
+            visitPersistedAt = now;
+            return true;
+        }
+
+        synchronized void forgetPersistedVisit() {
+            visitPersistedAt = null;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.dashboard.backend.analytics.service;
+
+import com.dashboard.backend.User.model.User;
+import com.dashboard.backend.analytics.config.TopTracksCacheConfig;
+import com.dashboard.backend.analytics.repository.AnalyticsWatermarkRepository;
+import com.dashboard.backend.config.datasource.ReplicaRoutingContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * ETag, Last-Modified et cache des réponses d'analytics, dérivés de la dernière synchronisation de l'utilisateur.
+ *
+ * Une réponse ne dépend que des données de l'utilisateur (voir {@link AnalyticsWatermarkRepository}),
+ * du jour UTC (les périodes glissantes avancent à minuit) et des paramètres de la requête.
+ * Un {@code If-None-Match} ou {@code If-Modified-Since} encore valide est donc servi en 304
+ * après une seule lecture par clé primaire, sans calculer la réponse.
+ * Les autres requêtes reçoivent le JSON déjà sérialisé (octets UTF-8) indexé par cet ETag,
+ * copié tel quel dans le flux de sortie ; il n'est calculé et sérialisé qu'au premier appel.
+ * Ce calcul lit sur le primaire, comme le watermark : un réplica en retard ne peut pas
+ * mettre en cache d'anciennes données sous le nouvel ETag.
+ */
+@Component
+@RequiredArgsConstructor
+public class AnalyticsConditionalRequests {
+
+    private final AnalyticsWatermarkRepository analyticsWatermarkRepository;
+    private final CacheManager cacheManager;
+    private final ObjectMapper objectMapper;
+    private final AnalyticsCacheWarmer analyticsCacheWarmer;
+
+    /**
+     * Réponse JSON d'un endpoint d'analytics. Pose ETag, Last-Modified et Cache-Control ; si le client
+     * a déjà la bonne version, le statut 304 est posé et {@code null} est renvoyé (à renvoyer tel quel
+     * par le contrôleur). Sinon le corps est servi depuis le cache d'octets, ou calculé par {@code body},
+     * sérialisé une fois et mis en cache.
+     * {@code body} ne doit lire que la base : la requête est rejouée par {@link AnalyticsCacheWarmer}.
+     */
+    public ResponseEntity<byte[]> respond(User user, ServletWebRequest request, Supplier<?> body) {
+        return respond(user, request, Optional::empty, body, true);
+    }
+
+    /**
+     * Comme {@link #respond}, pour un corps qui peut appeler Spotify : la requête n'est pas préchauffée.
+     * Le corps dépend aussi de données que le watermark ne couvre pas (ex: instantané des top artistes
+     * Spotify) : {@code modifiedAt} donne leur date, lue avant tout 304 ou lecture du cache d'octets,
+     * et entre dans l'ETag et le Last-Modified.
+     */
+    public ResponseEntity<byte[]> respondWithoutWarming(User user, ServletWebRequest request,
+                                                        Supplier<Optional<Instant>> modifiedAt, Supplier<?> body) {
+        return respond(user, request, modifiedAt, body, false);
+    }
+
+    private ResponseEntity<byte[]> respond(User user, ServletWebRequest request, Supplier<Optional<Instant>> modifiedAt,
+                                           Supplier<?> body, boolean warmable) {
+        Instant watermark = analyticsWatermarkRepository.findWatermark(user.getId()).orElse(Instant.EPOCH);
+        Optional<Instant> dataModifiedAt = ReplicaRoutingContext.onPrimary(modifiedAt);
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        Instant startOfDay = today.atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant modified = watermark.isAfter(startOfDay) ? watermark : startOfDay;
+        if (dataModifiedAt.isPresent() && dataModifiedAt.get().isAfter(modified)) {
+            modified = dataModifiedAt.get();
+        }
+        Instant lastModified = modified.truncatedTo(ChronoUnit.SECONDS);
+        String requestKey = requestKey(request);
+        String etag = etag(user.getId(), watermark, dataModifiedAt, today, requestKey);
+
+        if (warmable) {
+            analyticsCacheWarmer.recordAccess(user.getId(), requestKey, () -> warm(user.getId(), requestKey, body));
+        } else {
+            analyticsCacheWarmer.recordVisit(user.getId());
+        }
+
+        request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        if (request.checkNotModified(etag, lastModified.toEpochMilli())) {
+            return null;
+        }
+
+        byte[] json;
+        try {
+            json = cachedJson(etag, body);
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(json);
+    }
+
+    /**
+     * Calcule et met en cache la réponse à jour d'une requête déjà servie (voir {@link AnalyticsCacheWarmer}).
+     */
+    private void warm(UUID userId, String requestKey, Supplier<?> body) {
+        Instant watermark = analyticsWatermarkRepository.findWatermark(userId).orElse(Instant.EPOCH);
+        cachedJson(etag(userId, watermark, Optional.empty(), LocalDate.now(ZoneOffset.UTC), requestKey), body);
+    }
+
+    // L'ETag contient déjà l'utilisateur, sa dernière synchronisation et les paramètres :
+    // une entrée n'est plus jamais servie dès que les données de l'utilisateur changent.
+    private byte[] cachedJson(String etag, Supplier<?> body) {
+        return cacheManager.getCache(TopTracksCacheConfig.ANALYTICS_RESPONSES)
+                .get(etag, () -> objectMapper.writeValueAsBytes(ReplicaRoutingContext.onPrimary(body)));
+    }
+
+    private static String requestKey(ServletWebRequest request) {
+        StringBuilder key = new StringBuilder(request.getRequest().getRequestURI());
+        // Paramètres triés : l'ordre dans l'URL ne change pas l'ETag
+        Map<String, String[]> parameters = new TreeMap<>(request.getParameterMap());
+        parameters.forEach((name, values) -> key.append('|').append(name).append('=').append(String.join(",", values)));
+        return key.toString();
+    }
+
+    private static String etag(UUID userId, Instant watermark, Optional<Instant> dataModifiedAt,
+                               LocalDate today, String requestKey) {
+        return sha256(userId + "|" + watermark + dataModifiedAt.map(at -> "|" + at).orElse("")
+                + "|" + today + "|" + requestKey);
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
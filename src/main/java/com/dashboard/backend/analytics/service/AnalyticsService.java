@@ -1,127 +1,246 @@
 package com.dashboard.backend.analytics.service;
 
 import com.dashboard.backend.User.model.User;
+import com.dashboard.backend.analytics.config.TopTracksCacheConfig;
+import com.dashboard.backend.config.datasource.ReadReplica;
+import com.dashboard.backend.analytics.dto.HeatmapCellProjection;
+import com.dashboard.backend.analytics.dto.ListeningHeatmapDto;
 import com.dashboard.backend.analytics.dto.TopArtistDto;
+import com.dashboard.backend.analytics.dto.TopGenreDto;
+import com.dashboard.backend.analytics.dto.TopOverviewDto;
+import com.dashboard.backend.analytics.dto.TopOverviewRowProjection;
 import com.dashboard.backend.analytics.dto.TopTrackDto;
 import com.dashboard.backend.analytics.dto.TopTrackProjection;
+import com.dashboard.backend.analytics.model.AnalyticsRange;
 import com.dashboard.backend.analytics.model.CachedTopArtist;
 import com.dashboard.backend.analytics.repository.CachedTopArtistRepository;
 import com.dashboard.backend.analytics.repository.AnalyticsRepository;
-import com.dashboard.backend.thirdparty.spotify.SpotifyDataService;
+import com.dashboard.backend.analytics.repository.TopSummaryRepository;
 import com.dashboard.backend.thirdparty.spotify.dto.SpotifyArtistDto;
-import com.dashboard.backend.thirdparty.spotify.dto.SpotifyTopArtistsDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@ReadReplica
 public class AnalyticsService {
 
     private final CachedTopArtistRepository cachedTopArtistRepository;
     private final AnalyticsRepository analyticsRepository;
-    private final SpotifyDataService spotifyDataService;
+    private final CachedTopArtistsRefresher cachedTopArtistsRefresher;
+    private final CacheManager cacheManager;
 
     private static final Duration CACHE_DURATION = Duration.ofHours(24);
 
     /**
      * Méthode principale pour l'affichage UI, optimisée pour la vitesse via le cache.
+     * Un instantané périmé est servi immédiatement et rafraîchi en arrière-plan ;
+     * Spotify n'est appelé dans la requête que si aucun instantané n'existe.
      */
-    @Transactional
     public List<TopArtistDto> getCachedTopArtistsForUser(User user, String timeRange, int limit) {
-        Optional<Instant> lastUpdate = cachedTopArtistRepository.findLastUpdateForUserAndTimeRange(user.getId(), timeRange);
+        Optional<CachedTopArtistRepository.Snapshot> snapshot = cachedTopArtistRepository.findCurrent(user.getId(), timeRange);
 
-        if (lastUpdate.isPresent() && Duration.between(lastUpdate.get(), Instant.now()).compareTo(CACHE_DURATION) < 0) {
-            log.info("✅ Cache HIT pour les top artistes de l'utilisateur : {}", user.getEmail());
-            return cachedTopArtistRepository.findByUser_IdAndTimeRangeOrderByRankAsc(user.getId(), timeRange)
-                    .stream()
+        if (snapshot.isPresent()) {
+            if (isFresh(snapshot.get().updatedAt())) {
+                log.info("✅ Cache HIT pour les top artistes de l'utilisateur : {}", user.getEmail());
+            } else {
+                log.info("⏳ Cache périmé pour les top artistes de l'utilisateur : {}, rafraîchissement planifié", user.getEmail());
+                cachedTopArtistsRefresher.refreshInBackground(user, timeRange);
+            }
+            return snapshot.get().artists().stream()
                     .limit(limit)
                     .map(this::mapCachedToDto)
                     .toList();
         }
 
         log.info("❌ Cache MISS pour les top artistes de l'utilisateur : {}", user.getEmail());
-        SpotifyTopArtistsDto spotifyResponse = spotifyDataService.getTopArtists(user, timeRange, 50)
+        List<SpotifyArtistDto> artists = cachedTopArtistsRefresher.refresh(user, timeRange)
                 .orElseThrow(() -> new RuntimeException("Impossible de récupérer les top artistes depuis Spotify."));
 
-        saveTopArtistsToCache(user, timeRange, spotifyResponse.items());
-
-        return spotifyResponse.items().stream()
+        return artists.stream()
                 .limit(limit)
                 .map(this::mapSpotifyItemToDto)
                 .toList();
     }
 
+    /**
+     * Date de l'instantané des top artistes, à inclure dans l'ETag de {@link #getCachedTopArtistsForUser} :
+     * une réponse servie en 304 ou depuis le cache d'octets ne passe pas par cette méthode, le rafraîchissement
+     * d'un instantané périmé est donc planifié ici. Une fois publié, le nouvel instantané change l'ETag.
+     */
+    public Optional<Instant> getCachedTopArtistsUpdatedAt(User user, String timeRange) {
+        Optional<Instant> updatedAt = cachedTopArtistRepository.findUpdatedAt(user.getId(), timeRange);
+        if (updatedAt.isPresent() && !isFresh(updatedAt.get())) {
+            cachedTopArtistsRefresher.refreshInBackground(user, timeRange);
+        }
+        return updatedAt;
+    }
+
+    private static boolean isFresh(Instant updatedAt) {
+        return Duration.between(updatedAt, Instant.now()).compareTo(CACHE_DURATION) < 0;
+    }
+
+    /**
+     * Top morceaux depuis l'historique interne : classement pré-calculé du jour s'il existe,
+     * sinon calcul à partir des agrégats quotidiens.
+     * Le classement complet du jour est gardé en cache et tronqué à la limite demandée ;
+     * {@link TopSummaryRefresher} l'évince après chaque recalcul.
+     */
     public List<TopTrackDto> getTopTracksForUser(User user, String timeRange, int limit) {
         log.info("Récupération des top tracks pour l'utilisateur : {}", user.getEmail());
-        Instant endDate = Instant.now();
-        Instant startDate = switch (timeRange) {
-            case "last_month" -> endDate.minus(30, ChronoUnit.DAYS);
-            case "last_6_months" -> endDate.minus(180, ChronoUnit.DAYS);
-            default -> Instant.EPOCH;
-        };
-
-        return analyticsRepository.findTopTracksByPlayCount(user.getId(), startDate, endDate, limit)
-                .stream()
+        if (limit < 1) {
+            return List.of();
+        }
+        AnalyticsRange range = rangeFor(timeRange);
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        if (limit > TopSummaryRepository.SUMMARY_SIZE) {
+            return rankTopTracks(user.getId(), range, today, limit);
+        }
+        List<TopTrackDto> ranked = cacheManager.getCache(TopTracksCacheConfig.ANALYTICS_TOP_TRACKS)
+                .get(TopTracksCacheConfig.analyticsTopKey(user.getId(), range, today),
+                        () -> rankTopTracks(user.getId(), range, today, TopSummaryRepository.SUMMARY_SIZE));
+        return ranked.size() <= limit ? ranked : ranked.subList(0, limit);
+    }
+
+    private List<TopTrackDto> rankTopTracks(UUID userId, AnalyticsRange range, LocalDate today, int limit) {
+        List<TopTrackProjection> ranked = limit <= TopSummaryRepository.SUMMARY_SIZE
+                ? analyticsRepository.findTopTracksFromSummary(userId, range.name(), today, limit)
+                : List.of();
+        if (ranked.isEmpty()) {
+            ranked = analyticsRepository.findTopTracksByPlayCount(userId, range.startDay(today), today, limit);
+        }
+
+        return ranked.stream()
                 .map(this::convertToTopTrackDto)
                 .toList();
     }
 
     /**
      * Calcule les top artistes en se basant sur l'historique interne.
-     * C'est ici que votre logique existante est préservée et valorisée.
+     * Lit le classement pré-calculé du jour s'il existe, sinon les agrégats quotidiens.
      */
     public List<TopArtistDto> calculateTopArtistsFromHistory(User user, String timeRange, int limit) {
         log.info("Calcul des top artistes depuis l'historique pour {}", user.getEmail());
-        Instant endDate = Instant.now();
-        Instant startDate = switch (timeRange) {
-            case "last_month" -> endDate.minus(30, ChronoUnit.DAYS);
-            case "last_6_months" -> endDate.minus(180, ChronoUnit.DAYS);
-            default -> Instant.EPOCH;
-        };
-        return analyticsRepository.findTopArtistsByPlayCount(user.getId(), startDate, endDate, limit);
-    }
+        AnalyticsRange range = rangeFor(timeRange);
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
 
-    private void saveTopArtistsToCache(User user, String timeRange, List<SpotifyArtistDto> artists) {
-        log.info("Mise à jour du cache des top artistes pour {}", user.getEmail());
-        cachedTopArtistRepository.deleteByUser_IdAndTimeRange(user.getId(), timeRange);
-
-        AtomicInteger rank = new AtomicInteger(1);
-        Instant now = Instant.now();
-
-        List<CachedTopArtist> cacheEntries = artists.stream().map(item -> {
-            CachedTopArtist entry = new CachedTopArtist();
-            entry.setUser(user);
-            entry.setTimeRange(timeRange);
-            entry.setArtistIdSpotify(item.id());
-            entry.setArtistName(item.name());
-            if (item.images() != null && !item.images().isEmpty()) {
-                entry.setArtistImageUrl(item.images().getFirst().url());
+        if (limit <= TopSummaryRepository.SUMMARY_SIZE) {
+            List<TopArtistDto> ranked = analyticsRepository.findTopArtistsFromSummary(user.getId(), range.name(), today, limit);
+            if (!ranked.isEmpty()) {
+                return ranked;
             }
-            entry.setRank(rank.getAndIncrement());
-            entry.setLastUpdatedAt(now);
-            return entry;
-        }).collect(Collectors.toList());
+        }
+        return analyticsRepository.findTopArtistsByPlayCount(user.getId(), range.startDay(today), today, limit);
+    }
+
+    /**
+     * Genres les plus écoutés sur une période, calculés à partir des agrégats quotidiens.
+     */
+    public List<TopGenreDto> getTopGenresForUser(User user, String timeRange, int limit) {
+        log.info("Calcul des top genres pour {}", user.getEmail());
+        AnalyticsRange range = rangeFor(timeRange);
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        return analyticsRepository.findTopGenresByPlayCount(user.getId(), range.startDay(today), today, limit);
+    }
+
+    /**
+     * Top artistes et top morceaux des trois périodes (30 jours, 180 jours, tout l'historique)
+     * calculés en une seule requête, au lieu d'un appel par période et par type.
+     */
+    public TopOverviewDto getTopOverview(User user, int limit) {
+        log.info("Calcul de la vue d'ensemble des classements pour {}", user.getEmail());
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        List<TopOverviewRowProjection> rows = analyticsRepository.findTopOverview(user.getId(),
+                AnalyticsRange.LAST_30_DAYS.startDay(today), AnalyticsRange.LAST_180_DAYS.startDay(today), today, limit);
+
+        return TopOverviewDto.builder()
+                .shortTerm(rangeTop(rows, limit, TopOverviewRowProjection::getShortTermRank, TopOverviewRowProjection::getShortTermPlays))
+                .mediumTerm(rangeTop(rows, limit, TopOverviewRowProjection::getMediumTermRank, TopOverviewRowProjection::getMediumTermPlays))
+                .allTime(rangeTop(rows, limit, TopOverviewRowProjection::getAllTimeRank, TopOverviewRowProjection::getAllTimePlays))
+                .build();
+    }
+
+    private TopOverviewDto.RangeTop rangeTop(List<TopOverviewRowProjection> rows, int limit,
+                                             Function<TopOverviewRowProjection, Long> rank,
+                                             Function<TopOverviewRowProjection, Long> plays) {
+        List<TopOverviewRowProjection> ranked = rows.stream()
+                .filter(row -> plays.apply(row) != null && rank.apply(row) <= limit)
+                .sorted(Comparator.comparing(rank))
+                .toList();
+
+        return TopOverviewDto.RangeTop.builder()
+                .topArtists(ranked.stream()
+                        .filter(row -> "ARTIST".equals(row.getKind()))
+                        .map(row -> TopArtistDto.builder()
+                                .artistId(row.getItemId())
+                                .artistName(row.getName())
+                                .playCount(plays.apply(row))
+                                .artistImageUrl(row.getImageUrl())
+                                .build())
+                        .toList())
+                .topTracks(ranked.stream()
+                        .filter(row -> "TRACK".equals(row.getKind()))
+                        .map(row -> TopTrackDto.builder()
+                                .trackId(row.getItemId())
+                                .trackName(row.getName())
+                                .artistNames(splitArtistNames(row.getArtistNames()))
+                                .playCount(plays.apply(row))
+                                .build())
+                        .toList())
+                .build();
+    }
 
-        cachedTopArtistRepository.saveAll(cacheEntries);
+    /**
+     * Carte des écoutes par jour de la semaine et heure locale sur une période,
+     * calculée à partir des agrégats horaires.
+     */
+    public ListeningHeatmapDto getListeningHeatmap(User user, String timeRange, ZoneId zone) {
+        log.info("Calcul de la carte des écoutes pour {} ({})", user.getEmail(), zone);
+        AnalyticsRange range = rangeFor(timeRange);
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        long[][] playCounts = new long[7][24];
+        long[][] minutesPlayed = new long[7][24];
+        for (HeatmapCellProjection cell : analyticsRepository.findListeningHeatmap(
+                user.getId(), range.startDay(today), today, zone.getId())) {
+            int day = cell.getDayOfWeek() - 1;
+            playCounts[day][cell.getHour()] = cell.getPlayCount();
+            minutesPlayed[day][cell.getHour()] = Duration.ofMillis(cell.getMsPlayed()).toMinutes();
+        }
+
+        return ListeningHeatmapDto.builder()
+                .timeRange(timeRange)
+                .timeZone(zone.getId())
+                .playCounts(playCounts)
+                .minutesPlayed(minutesPlayed)
+                .build();
+    }
+
+    private AnalyticsRange rangeFor(String timeRange) {
+        return AnalyticsRange.fromTimeRange(timeRange).orElse(AnalyticsRange.ALL_TIME);
     }
 
     private TopArtistDto mapCachedToDto(CachedTopArtist cachedArtist) {
         return TopArtistDto.builder()
-                .artistId(cachedArtist.getArtistIdSpotify())
-                .artistName(cachedArtist.getArtistName())
+                .artistId(cachedArtist.artistIdSpotify())
+                .artistName(cachedArtist.artistName())
                 .playCount(0L)
-                .artistImageUrl(cachedArtist.getArtistImageUrl())
+                .artistImageUrl(cachedArtist.artistImageUrl())
                 .build();
     }
 
@@ -144,7 +263,7 @@ public class AnalyticsService {
      * en transformant la chaîne d'artistes concaténée en liste
      */
     private TopTrackDto convertToTopTrackDto(TopTrackProjection projection) {
-        List<String> artistNames = List.of(projection.getArtistNames().split(", "));
+        List<String> artistNames = splitArtistNames(projection.getArtistNames());
 
         return TopTrackDto.builder()
                 .trackId(projection.getTrackId())
@@ -153,4 +272,11 @@ public class AnalyticsService {
                 .playCount(projection.getPlayCount())
                 .build();
     }
+
+    /**
+     * Un morceau sans ligne dans {@code track_artists} a une liste d'artistes NULL (STRING_AGG sans ligne).
+     */
+    private static List<String> splitArtistNames(String artistNames) {
+        return artistNames == null || artistNames.isEmpty() ? List.of() : List.of(artistNames.split(", "));
+    }
 }
@@ -0,0 +1,115 @@
+package com.dashboard.backend.analytics.service;
+
+import com.dashboard.backend.User.model.User;
+import com.dashboard.backend.analytics.model.CachedTopArtist;
+import com.dashboard.backend.analytics.repository.CachedTopArtistRepository;
+import com.dashboard.backend.thirdparty.spotify.SpotifyCacheConfig;
+import com.dashboard.backend.thirdparty.spotify.SpotifyDataService;
+import com.dashboard.backend.thirdparty.spotify.dto.SpotifyArtistDto;
+import com.dashboard.backend.thirdparty.spotify.dto.SpotifyTopArtistsDto;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Met à jour l'instantané {@code cached_top_artists} d'un utilisateur depuis Spotify.
+ *
+ * Un instantané périmé continue d'être servi pendant que son rafraîchissement tourne en arrière-plan,
+ * sur un pool borné ; un couple utilisateur / période déjà en attente n'est pas planifié une seconde fois.
+ * Chaque rafraîchissement publie une nouvelle génération ; les générations remplacées sont
+ * supprimées ensemble, une fois par heure.
+ */
+@Component
+@Slf4j
+public class CachedTopArtistsRefresher {
+
+    private final SpotifyDataService spotifyDataService;
+    private final CachedTopArtistRepository cachedTopArtistRepository;
+    private final ExecutorService executor;
+    private final Set<Key> pending = ConcurrentHashMap.newKeySet();
+
+    public CachedTopArtistsRefresher(SpotifyDataService spotifyDataService,
+                                     CachedTopArtistRepository cachedTopArtistRepository,
+                                     @Value("${analytics.top-artists.refresh-parallelism:4}") int parallelism) {
+        this.spotifyDataService = spotifyDataService;
+        this.cachedTopArtistRepository = cachedTopArtistRepository;
+        this.executor = Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().name("top-artists-refresh-", 0).factory());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Récupère les top artistes depuis Spotify et remplace l'instantané, dans le thread appelant.
+     */
+    public Optional<List<SpotifyArtistDto>> refresh(User user, String timeRange) {
+        Optional<List<SpotifyArtistDto>> artists = spotifyDataService
+                .getTopArtists(user, timeRange, SpotifyCacheConfig.FULL_PAGE_SIZE)
+                .map(SpotifyTopArtistsDto::items);
+        artists.ifPresent(items -> publishSnapshot(user, timeRange, items));
+        return artists;
+    }
+
+    /**
+     * Planifie le rafraîchissement de l'instantané, sauf s'il est déjà en attente.
+     */
+    public void refreshInBackground(User user, String timeRange) {
+        Key key = new Key(user.getId(), timeRange);
+        if (!pending.add(key)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                if (refresh(user, timeRange).isEmpty()) {
+                    log.warn("Top artistes indisponibles chez Spotify pour {} ({}), instantané conservé.",
+                            user.getEmail(), timeRange);
+                }
+            } catch (Exception e) {
+                log.error("❌ Échec du rafraîchissement des top artistes pour {} ({}): {}",
+                        user.getEmail(), timeRange, e.getMessage());
+            } finally {
+                pending.remove(key);
+            }
+        });
+    }
+
+    /**
+     * Supprime par lots les générations d'instantanés remplacées depuis le dernier passage.
+     */
+    @Scheduled(cron = "0 20 * * * *", zone = "UTC")
+    public void deleteRetiredGenerations() {
+        int deleted = cachedTopArtistRepository.deleteRetiredGenerations();
+        if (deleted > 0) {
+            log.info("🧹 {} ligne(s) d'instantanés de top artistes remplacés supprimée(s).", deleted);
+        }
+    }
+
+    private void publishSnapshot(User user, String timeRange, List<SpotifyArtistDto> artists) {
+        log.info("Mise à jour du cache des top artistes pour {}", user.getEmail());
+        AtomicInteger rank = new AtomicInteger(1);
+        List<CachedTopArtist> snapshot = artists.stream()
+                .map(item -> new CachedTopArtist(
+                        item.id(),
+                        item.name(),
+                        item.images() != null && !item.images().isEmpty() ? item.images().getFirst().url() : null,
+                        rank.getAndIncrement()))
+                .toList();
+        cachedTopArtistRepository.publishGeneration(user.getId(), timeRange, snapshot, Instant.now());
+    }
+
+    private record Key(UUID userId, String timeRange) {}
+}
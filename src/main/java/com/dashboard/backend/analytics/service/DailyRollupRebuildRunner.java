@@ -0,0 +1,32 @@
+package com.dashboard.backend.analytics.service;
+
+import com.dashboard.backend.analytics.repository.DailyRollupRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Reconstruit les agrégats quotidiens au démarrage, à activer ponctuellement
+ * (ex: {@code --analytics.rollups.rebuild=true}) après une correction de données.
+ */
+@Component
+@ConditionalOnProperty(name = "analytics.rollups.rebuild", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class DailyRollupRebuildRunner implements ApplicationRunner {
+
+    private final DailyRollupRepository dailyRollupRepository;
+
+    @Override
+    @Transactional
+    public void run(ApplicationArguments args) {
+        log.info("▶️ Reconstruction des agrégats quotidiens d'écoute...");
+        DailyRollupRepository.RebuildResult result = dailyRollupRepository.rebuildAll();
+        log.info("✅ Agrégats reconstruits : {} lignes morceaux, {} lignes artistes, {} lignes horaires.",
+                result.trackRows(), result.artistRows(), result.hourRows());
+    }
+}
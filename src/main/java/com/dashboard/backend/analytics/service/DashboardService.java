@@ -0,0 +1,132 @@
+package com.dashboard.backend.analytics.service;
+
+import com.dashboard.backend.User.model.SpotifyAccount;
+import com.dashboard.backend.User.model.User;
+import com.dashboard.backend.analytics.dto.DashboardDto;
+import com.dashboard.backend.analytics.model.DashboardWidget;
+import com.dashboard.backend.service.SpotifyAccountService;
+import com.dashboard.backend.thirdparty.spotify.SpotifyDataService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Assemble le tableau de bord en une requête : les widgets demandés sont calculés en parallèle,
+ * sur des threads virtuels, pour le même utilisateur et à partir d'une seule lecture du compte Spotify.
+ *
+ * Tous les widgets partagent le même délai, compté depuis le début de la requête ; un widget hors délai
+ * est annulé et signalé dans les erreurs, les autres sont renvoyés normalement.
+ */
+@Service
+@Slf4j
+public class DashboardService {
+
+    private final AnalyticsService analyticsService;
+    private final SpotifyDataService spotifyDataService;
+    private final SpotifyAccountService spotifyAccountService;
+    private final AnalyticsCacheWarmer analyticsCacheWarmer;
+    private final Duration widgetTimeout;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("dashboard-widget-", 0).factory());
+
+    public DashboardService(AnalyticsService analyticsService,
+                            SpotifyDataService spotifyDataService,
+                            SpotifyAccountService spotifyAccountService,
+                            AnalyticsCacheWarmer analyticsCacheWarmer,
+                            @Value("${analytics.dashboard.widget-timeout:3s}") Duration widgetTimeout) {
+        this.analyticsService = analyticsService;
+        this.spotifyDataService = spotifyDataService;
+        this.spotifyAccountService = spotifyAccountService;
+        this.analyticsCacheWarmer = analyticsCacheWarmer;
+        this.widgetTimeout = widgetTimeout;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public DashboardDto getDashboard(User user, Collection<DashboardWidget> widgets, String timeRange, int limit) {
+        // Pas de préchauffage : plusieurs widgets appellent Spotify
+        analyticsCacheWarmer.recordVisit(user.getId());
+        long deadline = System.nanoTime() + widgetTimeout.toNanos();
+        Optional<SpotifyAccount> spotifyAccount = spotifyAccountService.getSpotifyAccount(user);
+        boolean spotifyLinked = spotifyAccount.map(SpotifyAccount::isLinked).orElse(false);
+
+        Map<DashboardWidget, Future<Object>> pending = new EnumMap<>(DashboardWidget.class);
+        for (DashboardWidget widget : widgets) {
+            if (widget == DashboardWidget.SPOTIFY_PROFILE && !spotifyLinked) {
+                continue;
+            }
+            pending.put(widget, executor.submit(task(widget, user, spotifyAccount, spotifyLinked, timeRange, limit)));
+        }
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (DashboardWidget widget : widgets) {
+            Future<Object> future = pending.get(widget);
+            if (future == null) {
+                errors.put(widget.key(), "spotify_not_linked");
+                continue;
+            }
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                results.put(widget.key(), future.get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                log.warn("⏱️ Widget {} hors délai ({}) pour {}", widget.key(), widgetTimeout, user.getEmail());
+                errors.put(widget.key(), "timeout");
+            } catch (ExecutionException e) {
+                log.error("❌ Échec du widget {} pour {}: {}", widget.key(), user.getEmail(), e.getCause().getMessage());
+                errors.put(widget.key(), "error");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.values().forEach(f -> f.cancel(true));
+                errors.put(widget.key(), "error");
+                break;
+            }
+        }
+
+        return DashboardDto.builder()
+                .widgets(results)
+                .errors(errors)
+                .build();
+    }
+
+    private Callable<Object> task(DashboardWidget widget, User user, Optional<SpotifyAccount> spotifyAccount,
+                                  boolean spotifyLinked, String timeRange, int limit) {
+        return switch (widget) {
+            // Sans compte lié, le classement vient de l'historique interne
+            case TOP_ARTISTS -> spotifyLinked
+                    ? () -> analyticsService.getCachedTopArtistsForUser(user, timeRange, limit)
+                    : () -> analyticsService.calculateTopArtistsFromHistory(user, timeRange, limit);
+            case TOP_TRACKS -> () -> analyticsService.getTopTracksForUser(user, timeRange, limit);
+            case SPOTIFY_PROFILE -> () -> spotifyDataService.getCurrentProfile(user).orElse(null);
+            case SPOTIFY_STATUS -> () -> spotifyStatus(spotifyAccount, spotifyLinked);
+        };
+    }
+
+    private Map<String, Object> spotifyStatus(Optional<SpotifyAccount> spotifyAccount, boolean spotifyLinked) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("hasSpotifyLinked", spotifyLinked);
+        status.put("spotifyEmail", spotifyLinked ? spotifyAccount.get().getSpotifyEmail() : null);
+        status.put("displayName", spotifyLinked ? spotifyAccount.get().getDisplayName() : null);
+        return status;
+    }
+}
@@ -0,0 +1,299 @@
+package com.dashboard.backend.analytics.service;
+
+import com.dashboard.backend.analytics.model.ListeningColumns;
+import com.dashboard.backend.analytics.model.ListeningSegment;
+import com.dashboard.backend.analytics.repository.ListeningColumnsRepository;
+import com.dashboard.backend.analytics.repository.ListeningSegmentStore;
+import com.dashboard.backend.service.event.ListeningHistorySyncedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Cache en mémoire de l'historique d'écoute des utilisateurs actifs, au format colonnes ({@link ListeningColumns}).
+ *
+ * L'historique d'un utilisateur est chargé au premier accès, puis complété à chaque synchronisation
+ * qui insère des écoutes (seules les nouvelles lignes sont relues). Si le stockage par segments est
+ * activé, les mois révolus du chargement initial sont lus depuis les fichiers projetés en mémoire
+ * ({@link ListeningSegmentStore}) et seul le mois en cours est lu en base. Les utilisateurs les moins
+ * récemment consultés sont évincés dès que l'empreinte estimée dépasse {@code max-bytes}.
+ *
+ * Un chargement fait dans une transaction voit ses écritures non validées : si elle est annulée,
+ * l'utilisateur est évincé pour ne pas garder d'écoutes fantômes. Pour la même raison, les segments
+ * lus en base pendant une transaction ne sont écrits sur disque qu'après sa validation. Une
+ * synchronisation qui insère des écoutes dans un mois scellé supprime les segments de l'utilisateur
+ * à partir de ce mois, avant et après sa validation.
+ */
+@Component
+@Slf4j
+public class ListeningHistoryColumnarCache {
+
+    private final ListeningColumnsRepository listeningColumnsRepository;
+    private final ListeningSegmentStore listeningSegmentStore;
+    private final long maxBytes;
+    private final Counter hits;
+    private final Counter misses;
+
+    private final Map<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    // Incrémenté à chaque suppression de segments : un chargement n'écrit ses segments que si aucune
+    // suppression n'a eu lieu depuis sa lecture en base (sinon il pourrait réécrire un mois périmé)
+    private final Object segmentLock = new Object();
+    private long segmentGeneration;
+
+    public ListeningHistoryColumnarCache(ListeningColumnsRepository listeningColumnsRepository,
+                                         ListeningSegmentStore listeningSegmentStore,
+                                         @Value("${analytics.columnar-cache.max-bytes:67108864}") long maxBytes,
+                                         MeterRegistry meterRegistry) {
+        this.listeningColumnsRepository = listeningColumnsRepository;
+        this.listeningSegmentStore = listeningSegmentStore;
+        this.maxBytes = maxBytes;
+        this.hits = meterRegistry.counter("analytics.columnar_cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("analytics.columnar_cache.requests", "result", "miss");
+        meterRegistry.gauge("analytics.columnar_cache.bytes", this, ListeningHistoryColumnarCache::getTotalBytes);
+        meterRegistry.gauge("analytics.columnar_cache.users", this, ListeningHistoryColumnarCache::getUserCount);
+    }
+
+    /**
+     * @return l'historique de l'utilisateur, chargé depuis la base s'il n'est pas en cache
+     */
+    public ListeningColumns get(UUID userId) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.computeIfAbsent(userId, id -> new Entry());
+        }
+        ListeningColumns snapshot = entry.snapshot;
+        if (snapshot != null) {
+            hits.increment();
+            return snapshot;
+        }
+        misses.increment();
+        return load(userId, entry);
+    }
+
+    /**
+     * Complète l'historique d'un utilisateur en cache avec les écoutes que la synchronisation vient d'insérer.
+     * Appelé dans la transaction de synchronisation, pour que la suite de cette transaction (génération RAG)
+     * voie déjà les nouvelles écoutes.
+     * Les colonnes ne se complètent que par la fin : si la synchronisation a inséré une écoute antérieure
+     * à la dernière écoute en cache, l'utilisateur est évincé et sera rechargé au prochain accès.
+     */
+    @EventListener
+    public void onListeningHistorySynced(ListeningHistorySyncedEvent event) {
+        invalidateSegments(event.userId(), event.earliestPlayedAt());
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(event.userId());
+        }
+        if (entry == null || entry.snapshot == null) {
+            return;
+        }
+        if (insertsBeforeCachedPlays(entry, event.earliestPlayedAt())) {
+            log.debug("Écoutes antérieures au cache insérées pour {}, historique en colonnes évincé", event.userId());
+            evict(event.userId());
+            return;
+        }
+        load(event.userId(), entry);
+    }
+
+    public synchronized void evict(UUID userId) {
+        Entry entry = entries.remove(userId);
+        if (entry != null) {
+            totalBytes -= entry.bytes;
+        }
+    }
+
+    /**
+     * Vide le cache (ex: après suppression d'écoutes anciennes par la rétention).
+     */
+    public synchronized void evictAll() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getUserCount() {
+        return entries.size();
+    }
+
+    private ListeningColumns load(UUID userId, Entry entry) {
+        ListeningColumns snapshot;
+        long bytes;
+        synchronized (entry) {
+            if (entry.builder.lastPlayedAt() == null && listeningSegmentStore.isEnabled()) {
+                appendSealedMonths(userId, entry.builder);
+            }
+            int added = listeningColumnsRepository.appendPlays(userId, entry.builder);
+            if (entry.snapshot == null || added > 0) {
+                entry.snapshot = entry.builder.build();
+            }
+            snapshot = entry.snapshot;
+            bytes = entry.builder.estimatedBytes();
+            log.debug("Historique en colonnes de {} : {} écoutes ajoutées, {} au total", userId, added, snapshot.size());
+        }
+        account(userId, entry, bytes);
+        evictOnRollback(userId);
+        return snapshot;
+    }
+
+    /**
+     * Chargement à froid des mois révolus depuis les segments, écrits depuis la base s'ils manquent.
+     */
+    private void appendSealedMonths(UUID userId, ListeningColumns.Builder builder) {
+        Instant firstPlayedAt = listeningColumnsRepository.findFirstPlayedAt(userId).orElse(null);
+        if (firstPlayedAt == null) {
+            return;
+        }
+        long generation = segmentGeneration();
+        Map<YearMonth, ListeningSegment> exported = new LinkedHashMap<>();
+        YearMonth firstUnsealed = listeningSegmentStore.firstUnsealedMonth(Instant.now());
+        for (YearMonth month = YearMonth.from(firstPlayedAt.atOffset(ZoneOffset.UTC));
+             month.isBefore(firstUnsealed); month = month.plusMonths(1)) {
+            try {
+                if (listeningSegmentStore.appendTo(userId, month, builder)) {
+                    continue;
+                }
+            } catch (IOException e) {
+                log.warn("Segment {} de {} illisible, reconstruction depuis la base : {}", month, userId, e.getMessage());
+            }
+            ListeningSegment segment = listeningColumnsRepository.exportMonth(userId, month);
+            segment.appendTo(builder);
+            exported.put(month, segment);
+        }
+        if (exported.isEmpty()) {
+            return;
+        }
+
+        // Lus dans une transaction, les mois peuvent contenir des écoutes non validées
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    writeSegments(userId, generation, exported);
+                }
+            });
+        } else {
+            writeSegments(userId, generation, exported);
+        }
+    }
+
+    private void writeSegments(UUID userId, long generation, Map<YearMonth, ListeningSegment> segments) {
+        synchronized (segmentLock) {
+            if (segmentGeneration != generation) {
+                log.debug("Segments de {} supprimés pendant leur lecture, écriture abandonnée", userId);
+                return;
+            }
+            segments.forEach((month, segment) -> {
+                try {
+                    listeningSegmentStore.write(userId, month, segment);
+                } catch (IOException e) {
+                    log.warn("Écriture du segment {} de {} impossible : {}", month, userId, e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Supprime les segments de l'utilisateur à partir du mois de {@code earliestPlayedAt}, s'il est scellé.
+     * La suppression est refaite à la fin de la transaction en cours : un chargement concurrent a pu
+     * réécrire ces mois depuis l'état de la base antérieur à la validation.
+     */
+    private void invalidateSegments(UUID userId, Instant earliestPlayedAt) {
+        YearMonth from = YearMonth.from(earliestPlayedAt.atOffset(ZoneOffset.UTC));
+        if (!listeningSegmentStore.isEnabled() || !from.isBefore(listeningSegmentStore.firstUnsealedMonth(Instant.now()))) {
+            return;
+        }
+        deleteSegments(userId, from);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    deleteSegments(userId, from);
+                }
+            });
+        }
+    }
+
+    private void deleteSegments(UUID userId, YearMonth from) {
+        synchronized (segmentLock) {
+            segmentGeneration++;
+            try {
+                int deleted = listeningSegmentStore.deleteMonthsFrom(userId, from);
+                log.debug("{} segment(s) de {} supprimé(s) à partir de {}", deleted, userId, from);
+            } catch (IOException e) {
+                log.warn("Suppression des segments de {} à partir de {} impossible : {}", userId, from, e.getMessage());
+            }
+        }
+    }
+
+    private long segmentGeneration() {
+        synchronized (segmentLock) {
+            return segmentGeneration;
+        }
+    }
+
+    private static boolean insertsBeforeCachedPlays(Entry entry, Instant earliestPlayedAt) {
+        synchronized (entry) {
+            Instant cachedUntil = entry.builder.lastPlayedAt();
+            return cachedUntil != null && !earliestPlayedAt.isAfter(cachedUntil);
+        }
+    }
+
+    private synchronized void account(UUID userId, Entry entry, long bytes) {
+        if (entries.get(userId) != entry) {
+            // Évincé pendant le chargement : le résultat est rendu à l'appelant mais pas conservé
+            return;
+        }
+        totalBytes += bytes - entry.bytes;
+        entry.bytes = bytes;
+
+        Iterator<Entry> eldestFirst = entries.values().iterator();
+        while (totalBytes > maxBytes && eldestFirst.hasNext()) {
+            Entry eldest = eldestFirst.next();
+            totalBytes -= eldest.bytes;
+            eldestFirst.remove();
+        }
+    }
+
+    private void evictOnRollback(UUID userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                // Les segments lus pendant la transaction ne sont écrits qu'après validation :
+                // une annulation ne laisse rien sur disque, seul le cache en mémoire est à évincer
+                if (status != STATUS_COMMITTED) {
+                    evict(userId);
+                }
+            }
+        });
+    }
+
+    private static final class Entry {
+        private final ListeningColumns.Builder builder = new ListeningColumns.Builder();
+        private volatile ListeningColumns snapshot;
+        private long bytes;
+    }
+}
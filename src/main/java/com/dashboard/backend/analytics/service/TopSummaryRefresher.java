@@ -0,0 +1,103 @@
+package com.dashboard.backend.analytics.service;
+
+import com.dashboard.backend.analytics.config.TopTracksCacheConfig;
+import com.dashboard.backend.analytics.model.AnalyticsRange;
+import com.dashboard.backend.analytics.repository.TopSummaryRepository;
+import com.dashboard.backend.service.event.ListeningHistorySyncedEvent;
+import com.dashboard.backend.service.event.TopSummaryRefreshedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Recalcule les classements pré-calculés des utilisateurs dont la synchronisation a inséré des écoutes.
+ *
+ * Le recalcul part une fois la transaction de synchronisation validée, sur un pool borné :
+ * plusieurs utilisateurs sont traités en parallèle sans retarder la synchronisation elle-même.
+ * Un utilisateur déjà en attente n'est pas planifié une seconde fois.
+ * Les classements du jour gardés en cache pour l'utilisateur sont évincés après chaque recalcul,
+ * puis {@link TopSummaryRefreshedEvent} est publié pour le préchauffage des réponses.
+ */
+@Component
+@Slf4j
+public class TopSummaryRefresher {
+
+    private final TopSummaryRepository topSummaryRepository;
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService executor;
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    public TopSummaryRefresher(TopSummaryRepository topSummaryRepository,
+                               CacheManager cacheManager,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${analytics.top-summary.refresh-parallelism:4}") int parallelism) {
+        this.topSummaryRepository = topSummaryRepository;
+        this.cacheManager = cacheManager;
+        this.eventPublisher = eventPublisher;
+        this.executor = Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().name("top-summary-", 0).factory());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onListeningHistorySynced(ListeningHistorySyncedEvent event) {
+        submit(event.userId());
+    }
+
+    /**
+     * Les périodes glissantes avancent d'un jour à minuit UTC, même sans nouvelle écoute.
+     */
+    @Scheduled(cron = "0 5 0 * * *", zone = "UTC")
+    public void refreshStaleSummaries() {
+        List<UUID> stale = topSummaryRepository.findUsersWithSummaryBefore(LocalDate.now(ZoneOffset.UTC));
+        if (!stale.isEmpty()) {
+            log.info("🏆 Recalcul des classements de {} utilisateur(s) pour la nouvelle journée.", stale.size());
+            stale.forEach(this::submit);
+        }
+    }
+
+    private void submit(UUID userId) {
+        if (!pending.add(userId)) {
+            return;
+        }
+        executor.execute(() -> {
+            // Retiré avant le calcul : une synchronisation qui valide pendant le recalcul en planifie un nouveau
+            pending.remove(userId);
+            try {
+                LocalDate today = LocalDate.now(ZoneOffset.UTC);
+                topSummaryRepository.refreshForUser(userId, today);
+                evictTopTracks(userId, today);
+                eventPublisher.publishEvent(new TopSummaryRefreshedEvent(userId));
+            } catch (Exception e) {
+                log.error("❌ Échec du recalcul des classements pour l'utilisateur {}: {}", userId, e.getMessage());
+            }
+        });
+    }
+
+    private void evictTopTracks(UUID userId, LocalDate today) {
+        Cache cache = cacheManager.getCache(TopTracksCacheConfig.ANALYTICS_TOP_TRACKS);
+        for (AnalyticsRange range : AnalyticsRange.values()) {
+            cache.evict(TopTracksCacheConfig.analyticsTopKey(userId, range, today));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.dashboard.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Registre en mémoire utilisé tant qu'aucun registre n'est fourni par ailleurs (actuator, export).
+     *
+     * Les métriques (limite de concurrence et hedging Spotify, cache en colonnes, cache conditionnel)
+     * restent locales au processus : ce projet n'embarque ni {@code spring-boot-starter-actuator}
+     * ni registre d'export, rien ne les expose ni ne les envoie. Elles ne servent qu'au débogage
+     * (lecture du registre dans un test ou une session de débogage). Ajouter l'actuator et un registre
+     * (ex: Prometheus) suffit à les publier : ce bean s'efface alors devant le registre fourni.
+     */
+    @Bean
+    @ConditionalOnMissingBean(MeterRegistry.class)
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+}
@@ -0,0 +1,197 @@
+package com.dashboard.backend.config.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache Spring borné en nombre d'entrées (LRU), avec expiration après écriture.
+ *
+ * Avec un délai de rafraîchissement, une entrée plus ancienne que ce délai mais pas encore expirée
+ * est servie telle quelle pendant qu'un seul rechargement part en arrière-plan (uniquement via
+ * {@link #get(Object, Callable)}, c'est-à-dire {@code @Cacheable(sync = true)} ou un appel direct).
+ * Un chargement manquant n'est exécuté qu'une fois par clé, les appels concurrents attendent son résultat.
+ * Les valeurs nulles ne sont pas conservées.
+ */
+@Slf4j
+public class BoundedCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final long expireAfterWriteNanos;
+    private final long refreshAfterWriteNanos;
+    private final Executor refreshExecutor;
+    private final LongSupplier nanoClock;
+    private final Map<Object, Entry> entries;
+    private final Map<Object, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder puts = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+    final LongAdder refreshes = new LongAdder();
+
+    public BoundedCache(String name, int maximumSize, Duration expireAfterWrite, Duration refreshAfterWrite,
+                        Executor refreshExecutor, LongSupplier nanoClock) {
+        super(false);
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Taille maximale invalide pour le cache " + name + " : " + maximumSize);
+        }
+        this.name = name;
+        this.expireAfterWriteNanos = expireAfterWrite.toNanos();
+        this.refreshAfterWriteNanos = refreshAfterWrite == null ? Long.MAX_VALUE : refreshAfterWrite.toNanos();
+        this.refreshExecutor = refreshExecutor;
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                if (size() > maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return entries;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Entry entry = liveEntry(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Entry entry = liveEntry(key);
+        if (entry != null) {
+            hits.increment();
+            if (nanoClock.getAsLong() - entry.writtenAt() >= refreshAfterWriteNanos) {
+                refreshInBackground(key, entry, valueLoader);
+            }
+            return (T) fromStoreValue(entry.value());
+        }
+        misses.increment();
+
+        CompletableFuture<Object> ownLoad = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = loading.putIfAbsent(key, ownLoad);
+        if (inFlight != null) {
+            return (T) await(key, inFlight, valueLoader);
+        }
+        try {
+            T value = valueLoader.call();
+            store(key, value);
+            ownLoad.complete(value);
+            return value;
+        } catch (Exception e) {
+            ownLoad.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            loading.remove(key, ownLoad);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        store(key, value);
+    }
+
+    @Override
+    public synchronized void evict(Object key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private synchronized Entry liveEntry(Object key) {
+        Entry entry = entries.get(key);
+        if (entry != null && nanoClock.getAsLong() - entry.writtenAt() >= expireAfterWriteNanos) {
+            entries.remove(key);
+            evictions.increment();
+            return null;
+        }
+        return entry;
+    }
+
+    private void store(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        Entry entry = new Entry(toStoreValue(value), nanoClock.getAsLong());
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        puts.increment();
+    }
+
+    private void refreshInBackground(Object key, Entry stale, Callable<?> valueLoader) {
+        CompletableFuture<Object> refresh = new CompletableFuture<>();
+        if (loading.putIfAbsent(key, refresh) != null) {
+            return;
+        }
+        refreshes.increment();
+        refreshExecutor.execute(() -> {
+            try {
+                Object value = valueLoader.call();
+                synchronized (this) {
+                    // Une écriture ou une éviction plus récente l'emporte sur le rechargement
+                    if (entries.get(key) == stale) {
+                        store(key, value);
+                    }
+                }
+                refresh.complete(value);
+            } catch (Exception e) {
+                log.warn("Rafraîchissement de l'entrée {} du cache {} échoué, valeur précédente conservée : {}",
+                        key, name, e.getMessage());
+                refresh.complete(fromStoreValue(stale.value()));
+            } finally {
+                loading.remove(key, refresh);
+            }
+        });
+    }
+
+    private Object await(Object key, CompletableFuture<Object> inFlight, Callable<?> valueLoader) {
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (ExecutionException e) {
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        }
+    }
+
+    private record Entry(Object value, long writtenAt) {}
+}
@@ -0,0 +1,76 @@
+package com.dashboard.backend.config.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Gestionnaire de {@link BoundedCache} : chaque cache reçoit sa propre configuration
+ * ({@link CacheSpecProperties}), ou la configuration par défaut s'il n'en a pas.
+ *
+ * Les statistiques de chaque cache sont publiées dans Micrometer sous les noms usuels
+ * ({@code cache.gets}, {@code cache.puts}, {@code cache.evictions}, {@code cache.size}),
+ * avec le tag {@code cache}.
+ * Tient lieu de {@code CaffeineCacheManager} tant que Caffeine n'est pas une dépendance du projet :
+ * mêmes réglages par cache (taille, expiration, rafraîchissement anticipé).
+ */
+public class BoundedCacheManager implements CacheManager {
+
+    private final CacheSpecProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Executor refreshExecutor;
+    private final LongSupplier nanoClock;
+    private final Map<String, BoundedCache> caches = new ConcurrentHashMap<>();
+
+    public BoundedCacheManager(CacheSpecProperties properties, MeterRegistry meterRegistry,
+                               Executor refreshExecutor, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.refreshExecutor = refreshExecutor;
+        this.nanoClock = nanoClock;
+        properties.getSpecs().keySet().forEach(this::getCache);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    private BoundedCache createCache(String name) {
+        CacheSpecProperties.Spec spec = properties.getSpecs().getOrDefault(name, properties.getDefaults());
+        BoundedCache cache = new BoundedCache(name, spec.getMaximumSize(), spec.getExpireAfterWrite(),
+                spec.getRefreshAfterWrite(), refreshExecutor, nanoClock);
+
+        counter("cache.gets", cache, cache.hits, "result", "hit");
+        counter("cache.gets", cache, cache.misses, "result", "miss");
+        counter("cache.puts", cache, cache.puts);
+        counter("cache.evictions", cache, cache.evictions);
+        counter("cache.refreshes", cache, cache.refreshes);
+        Gauge.builder("cache.size", cache, BoundedCache::size)
+                .tag("cache", name)
+                .register(meterRegistry);
+        return cache;
+    }
+
+    private void counter(String meter, BoundedCache cache, LongAdder adder, String... tags) {
+        FunctionCounter.builder(meter, adder, LongAdder::doubleValue)
+                .tag("cache", cache.getName())
+                .tags(tags)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,24 @@
+package com.dashboard.backend.config.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "cache")
+public class CacheSpecProperties {
+
+    private Spec defaults = new Spec();
+    private Map<String, Spec> specs = new HashMap<>();
+
+    @Data
+    public static class Spec {
+        private int maximumSize = 1000;
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+        // Absent : pas de rafraîchissement anticipé, l'entrée expire simplement
+        private Duration refreshAfterWrite;
+    }
+}
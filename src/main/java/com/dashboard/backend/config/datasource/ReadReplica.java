@@ -0,0 +1,21 @@
+package com.dashboard.backend.config.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marque une méthode (ou toutes les méthodes d'une classe) dont les lectures peuvent être servies
+ * par le réplica, si le routage est activé ({@code datasource.replica.enabled}).
+ *
+ * Le premier argument de type {@code User} ou {@code UUID} désigne l'utilisateur concerné : ses lectures
+ * restent sur le primaire tant que le réplica n'a pas rejoué sa dernière synchronisation.
+ * Dans une transaction en écriture, la connexion déjà ouverte sur le primaire est conservée.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadReplica {
+}
@@ -0,0 +1,124 @@
+package com.dashboard.backend.config.datasource;
+
+import com.dashboard.backend.service.event.ListeningHistorySyncedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Suit le retard de réplication en comparant les positions WAL (LSN) du primaire et du réplica.
+ *
+ * Le réplica n'est utilisé que s'il a rattrapé le primaire il y a moins de {@code max-lag}, et,
+ * pour un utilisateur, que s'il a rejoué la position WAL de sa dernière synchronisation :
+ * l'utilisateur qui vient de synchroniser lit ses propres écoutes sur le primaire jusque-là.
+ * Tant qu'aucune mesure n'a abouti (démarrage, réplica injoignable), tout reste sur le primaire.
+ */
+@Component
+@ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String PRIMARY_LSN_SQL = "SELECT (pg_current_wal_lsn() - '0/0'::pg_lsn)::bigint";
+    // Hors réplication (ex: réplica pointant sur le primaire en local), la position courante fait foi
+    private static final String REPLAYED_LSN_SQL =
+            "SELECT (COALESCE(pg_last_wal_replay_lsn(), pg_current_wal_lsn()) - '0/0'::pg_lsn)::bigint";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final Duration maxLag;
+
+    private final ConcurrentMap<UUID, Long> pendingUserLsns = new ConcurrentHashMap<>();
+    private volatile long replayedLsn = -1;
+    private volatile Instant caughtUpAt;
+    private long previousPrimaryLsn = -1;
+    private Instant previousProbeAt;
+
+    public ReplicaLagMonitor(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                             @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                             @Value("${datasource.replica.max-lag:10s}") Duration maxLag,
+                             MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primaryDataSource);
+        this.replica = new JdbcTemplate(replicaDataSource);
+        this.maxLag = maxLag;
+        meterRegistry.gauge("datasource.replica.lag.seconds", this, ReplicaLagMonitor::lagSeconds);
+        meterRegistry.gauge("datasource.replica.pending_users", pendingUserLsns, ConcurrentMap::size);
+    }
+
+    /**
+     * @param userId utilisateur concerné par la lecture, ou null
+     */
+    public boolean isReplicaUsable(UUID userId) {
+        long replayed = replayedLsn;
+        Instant caughtUp = caughtUpAt;
+        if (replayed < 0 || caughtUp == null || Duration.between(caughtUp, Instant.now()).compareTo(maxLag) > 0) {
+            return false;
+        }
+        if (userId == null) {
+            return true;
+        }
+        Long userLsn = pendingUserLsns.get(userId);
+        return userLsn == null || userLsn <= replayed;
+    }
+
+    /**
+     * Retient la position WAL du primaire après la synchronisation d'un utilisateur :
+     * elle couvre le commit qui vient d'avoir lieu.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onListeningHistorySynced(ListeningHistorySyncedEvent event) {
+        try {
+            Long lsn = primary.queryForObject(PRIMARY_LSN_SQL, Long.class);
+            pendingUserLsns.merge(event.userId(), lsn, Math::max);
+        } catch (DataAccessException e) {
+            // Sans position connue, l'utilisateur est renvoyé sur le primaire jusqu'au prochain rattrapage complet
+            pendingUserLsns.put(event.userId(), Long.MAX_VALUE);
+            log.warn("Position WAL après la synchronisation de {} indisponible : {}", event.userId(), e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.lag-check-interval:1s}")
+    public synchronized void probe() {
+        Instant now = Instant.now();
+        try {
+            long primaryLsn = primary.queryForObject(PRIMARY_LSN_SQL, Long.class);
+            long replayed = replica.queryForObject(REPLAYED_LSN_SQL, Long.class);
+
+            if (replayed >= primaryLsn) {
+                // Le réplica est lu après le primaire : il était à jour à l'instant de la mesure
+                caughtUpAt = now;
+                pendingUserLsns.clear();
+            } else if (previousProbeAt != null && replayed >= previousPrimaryLsn) {
+                caughtUpAt = previousProbeAt;
+            }
+            previousPrimaryLsn = primaryLsn;
+            previousProbeAt = now;
+            replayedLsn = replayed;
+            pendingUserLsns.values().removeIf(lsn -> lsn <= replayed);
+        } catch (DataAccessException e) {
+            if (replayedLsn >= 0) {
+                log.warn("⚠️ Réplica injoignable, lectures renvoyées sur le primaire : {}", e.getMessage());
+            }
+            replayedLsn = -1;
+        }
+    }
+
+    private double lagSeconds() {
+        Instant caughtUp = caughtUpAt;
+        return caughtUp == null ? Double.NaN : Duration.between(caughtUp, Instant.now()).toMillis() / 1000.0;
+    }
+}
@@ -0,0 +1,59 @@
+package com.dashboard.backend.config.datasource;
+
+import com.dashboard.backend.User.model.User;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+/**
+ * Ouvre une portée de lecture sur réplica autour des méthodes {@link ReadReplica} et des méthodes
+ * de l'application annotées {@code @Transactional(readOnly = true)}.
+ *
+ * Les transactions en lecture seule implicites des repositories Spring Data ne sont pas concernées
+ * hors d'une telle portée : une lecture juste après une écriture (inscription, connexion) reste sur le primaire.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+public class ReplicaRoutingAspect {
+
+    @Around("@within(com.dashboard.backend.config.datasource.ReadReplica) "
+            + "|| @annotation(com.dashboard.backend.config.datasource.ReadReplica)")
+    public Object routeMarkedReads(ProceedingJoinPoint joinPoint) throws Throwable {
+        return proceedInScope(joinPoint);
+    }
+
+    @Around("within(com.dashboard.backend..*) && @annotation(transactional)")
+    public Object routeReadOnlyTransactions(ProceedingJoinPoint joinPoint, Transactional transactional) throws Throwable {
+        if (!transactional.readOnly()) {
+            return joinPoint.proceed();
+        }
+        return proceedInScope(joinPoint);
+    }
+
+    private Object proceedInScope(ProceedingJoinPoint joinPoint) throws Throwable {
+        ReplicaRoutingContext.Scope previous = ReplicaRoutingContext.enter(findUserId(joinPoint.getArgs()));
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRoutingContext.restore(previous);
+        }
+    }
+
+    private UUID findUserId(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof User user) {
+                return user.getId();
+            }
+            if (arg instanceof UUID userId) {
+                return userId;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,63 @@
+package com.dashboard.backend.config.datasource;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Portée de lecture sur réplica du thread courant, ouverte par {@link ReplicaRoutingAspect}
+ * et consultée par {@link ReplicaRoutingDataSource} à l'ouverture d'une connexion.
+ * Une portée {@link #onPrimary(Supplier) primaire} l'emporte sur les portées réplica imbriquées.
+ */
+public final class ReplicaRoutingContext {
+
+    /**
+     * @param userId      utilisateur dont les écritures récentes doivent être visibles, ou null
+     * @param primaryOnly toutes les lectures restent sur le primaire
+     */
+    public record Scope(UUID userId, boolean primaryOnly) {
+    }
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private ReplicaRoutingContext() {
+    }
+
+    public static Scope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Exécute {@code work} en lisant sur le primaire, y compris dans les méthodes {@link ReadReplica} appelées :
+     * pour un résultat qui doit refléter les dernières écritures validées, quel que soit le retard du réplica.
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        Scope previous = CURRENT.get();
+        CURRENT.set(new Scope(previous == null ? null : previous.userId(), true));
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Ouvre une portée ; un appel imbriqué sans utilisateur conserve celui de la portée englobante,
+     * et une portée imbriquée dans une portée primaire reste sur le primaire.
+     *
+     * @return la portée précédente, à rendre à {@link #restore(Scope)}
+     */
+    static Scope enter(UUID userId) {
+        Scope previous = CURRENT.get();
+        UUID effectiveUserId = userId != null || previous == null ? userId : previous.userId();
+        CURRENT.set(new Scope(effectiveUserId, previous != null && previous.primaryOnly()));
+        return previous;
+    }
+
+    static void restore(Scope previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.dashboard.backend.config.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Choisit le pool (primaire ou réplica) à l'ouverture de chaque connexion physique.
+ *
+ * Enveloppée dans un {@code LazyConnectionDataSourceProxy} : la connexion n'est réellement ouverte
+ * qu'à la première requête, une fois le caractère lecture seule de la transaction connu.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+    private final Counter primaryConnections;
+    private final Counter replicaConnections;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica,
+                                    ReplicaLagMonitor replicaLagMonitor, MeterRegistry meterRegistry) {
+        this.replicaLagMonitor = replicaLagMonitor;
+        this.primaryConnections = meterRegistry.counter("datasource.routing.connections", "target", "primary");
+        this.replicaConnections = meterRegistry.counter("datasource.routing.connections", "target", "replica");
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Target target = resolveTarget();
+        (target == Target.REPLICA ? replicaConnections : primaryConnections).increment();
+        return target;
+    }
+
+    private Target resolveTarget() {
+        ReplicaRoutingContext.Scope scope = ReplicaRoutingContext.current();
+        if (scope == null || scope.primaryOnly()) {
+            return Target.PRIMARY;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Target.PRIMARY;
+        }
+        return replicaLagMonitor.isReplicaUsable(scope.userId()) ? Target.REPLICA : Target.PRIMARY;
+    }
+}
@@ -0,0 +1,11 @@
+package com.dashboard.backend.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class SpotifyRateLimitedException extends RuntimeException {
+    public SpotifyRateLimitedException(String message) {
+        super(message);
+    }
+}
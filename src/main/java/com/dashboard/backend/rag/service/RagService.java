@@ -1,6 +1,7 @@
 package com.dashboard.backend.rag.service;
 
 import com.dashboard.backend.User.model.User;
+import com.dashboard.backend.config.datasource.ReadReplica;
 import com.dashboard.backend.rag.dto.InsightResponse;
 import com.dashboard.backend.rag.dto.TrackInfo;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -37,38 +38,41 @@ public class RagService {
         this.jdbcTemplate = jdbcTemplate;
         this.objectMapper = objectMapper;
         this.dbSchema = """
+                -- Partitionnée par mois sur played_at
                 CREATE TABLE public.listening_history (
+                    id bigint NOT NULL,
                     user_id uuid NOT NULL,
-                    track_id character varying NOT NULL,
+                    track_id integer NOT NULL REFERENCES tracks(id),
                     played_at timestamp with time zone NOT NULL
                 );
                 CREATE TABLE public.tracks (
-                    id character varying NOT NULL PRIMARY KEY,
+                    id integer NOT NULL PRIMARY KEY,
+                    spotify_id character varying NOT NULL UNIQUE,
                     name text NOT NULL,
                     album_id character varying,
-                    duration_ms integer NOT NULL
+                    duration_ms integer NOT NULL,
+                    genres text[] NOT NULL -- union des genres des artistes du morceau, indexée (GIN)
                 );
                 CREATE TABLE public.albums (
                     id character varying NOT NULL PRIMARY KEY,
                     name text NOT NULL
                 );
                 CREATE TABLE public.artists (
-                    id character varying NOT NULL PRIMARY KEY,
-                    name text NOT NULL
+                    id integer NOT NULL PRIMARY KEY,
+                    spotify_id character varying NOT NULL UNIQUE,
+                    name text NOT NULL,
+                    genres text[]
                 );
                 CREATE TABLE public.track_artists (
-                    track_id character varying NOT NULL,
-                    artist_id character varying NOT NULL
-                );
-                CREATE TABLE public.track_genres (
-                    track_id character varying NOT NULL,
-                    genre character varying NOT NULL
+                    track_id integer NOT NULL REFERENCES tracks(id),
+                    artist_id integer NOT NULL REFERENCES artists(id)
                 );
                 """;
     }
 
 
     @SneakyThrows
+    @ReadReplica
     public InsightResponse askQuestion(User user, String question) {
 
         // === ÉTAPE 1 : L'IA GÉNÈRE LE SQL (AVEC UN PROMPT AMÉLIORÉ) ===
@@ -79,7 +83,7 @@ public class RagService {
                 **CHECKLIST IMPÉRATIVE POUR TA REQUÊTE :**
                 - [ ] La requête doit joindre `listening_history` avec `tracks`.
                 - [ ] La requête doit joindre `tracks` avec `track_artists` ET `artists` pour obtenir les noms des artistes.
-                - [ ] La requête doit joindre `tracks` avec `track_genres` pour obtenir les genres.
+                - [ ] Les genres sont dans la colonne `tracks.genres` (text[]) : sélectionne `array_to_string(t.genres, ', ') AS genres` et ajoute-la au `GROUP BY`.
                 - [ ] La requête doit joindre `tracks` avec `albums` pour obtenir le nom de l'album.
                 - [ ] La requête doit TOUJOURS sélectionner les colonnes les plus détaillées possibles.
                 - [ ] La requête doit compter les écoutes avec COUNT(*) AS listen_count.
@@ -88,7 +92,8 @@ public class RagService {
                 
                 -- ✅ NOUVELLE RÈGLE DE FILTRAGE DYNAMIQUE --
                 - [ ] **Analyse la question de l'utilisateur. Si elle contient un nom de genre (comme 'Pop', 'Rock', 'Jazz'), un nom d'artiste, ou une période de temps, ajoute une clause `WHERE` supplémentaire pour filtrer les résultats. 
-                Par exemple, pour "chansons Pop", ajoute : `AND tg.genre ILIKE '%Pop%'`**
+                Pour un genre, filtre directement sur `t.genres` (genres Spotify, en minuscules) : pour "chansons Pop", ajoute `AND t.genres && ARRAY['pop']` (index GIN) ; pour englober les sous-genres ("dance pop", "k-pop"), ajoute `AND EXISTS (SELECT 1 FROM unnest(t.genres) AS g WHERE g ILIKE '%pop%')`. Ne parcours jamais la table `artists` pour construire la liste des genres.**
+                - [ ] Une période de temps s'exprime par des bornes directes sur `played_at` (`played_at >= ... AND played_at < ...`), jamais par une fonction appliquée à la colonne (ex: `date_trunc('month', played_at) = ...`), pour que seules les partitions concernées soient lues.
                 
                 Ta sortie doit être UNIQUEMENT du code SQL brut.
                 
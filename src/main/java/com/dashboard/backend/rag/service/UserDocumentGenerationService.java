@@ -4,6 +4,7 @@ import com.dashboard.backend.User.model.Artist;
 import com.dashboard.backend.User.model.ListeningHistory;
 import com.dashboard.backend.User.model.User;
 import com.dashboard.backend.User.repository.ListeningHistoryRepository;
+import com.dashboard.backend.analytics.service.ListeningHistoryColumnarCache;
 import com.dashboard.backend.thirdparty.openai.service.OpenAiService;
 import com.nimbusds.jose.shaded.gson.Gson;
 import lombok.RequiredArgsConstructor;
@@ -29,6 +30,7 @@ public class UserDocumentGenerationService {
     private final JdbcTemplate jdbc;
     private final OpenAiService openAiService;
     private final ListeningHistoryRepository listeningHistoryRepository;
+    private final ListeningHistoryColumnarCache listeningHistoryColumnarCache;
 
     @Transactional
     public void generateFromListeningHistory(User user) {
@@ -178,9 +180,15 @@ public class UserDocumentGenerationService {
      * Génère les rapports globaux (patterns d'écoute par heure, top tracks all-time)
      */
     private void generateGlobalReports(User user, List<ListeningHistory> history) {
-        // Patterns d'écoute par heure
-        Map<Integer, Long> byHour = history.stream()
-                .collect(Collectors.groupingBy(h -> h.getPlayedAt().atZone(ZoneId.systemDefault()).getHour(), Collectors.counting()));
+        // Patterns d'écoute par heure, calculés sur l'historique en colonnes
+        int[] hourly = listeningHistoryColumnarCache.get(user.getId())
+                .hourlyHistogram(Instant.EPOCH, Instant.MAX, ZoneId.systemDefault());
+        Map<Integer, Long> byHour = new LinkedHashMap<>();
+        for (int hour = 0; hour < hourly.length; hour++) {
+            if (hourly[hour] > 0) {
+                byHour.put(hour, (long) hourly[hour]);
+            }
+        }
         String hourlySummary = summarizeByHour(byHour);
         float[] embedding = openAiService.getEmbedding(hourlySummary);
         Map<String, Object> hourlyMetadata = Map.of(
@@ -208,7 +216,7 @@ public class UserDocumentGenerationService {
         // Analyser les tracks avec leurs détails complets
         Map<String, TrackPlayData> trackPlayData = history.stream()
                 .collect(Collectors.groupingBy(
-                    h -> h.getTrack().getId(),
+                    h -> h.getTrack().getSpotifyId(),
                     Collectors.collectingAndThen(
                         Collectors.toList(),
                         historyList -> {
@@ -218,7 +226,7 @@ public class UserDocumentGenerationService {
                                     .sorted()
                                     .toList();
                             Set<String> genres = first.getTrack().getGenres() != null ?
-                                    first.getTrack().getGenres() : Set.of();
+                                    Set.copyOf(first.getTrack().getGenres()) : Set.of();
                             return new TrackPlayData(
                                     first.getTrack().getName(),
                                     artistNames,
@@ -321,7 +329,7 @@ public class UserDocumentGenerationService {
         // Analyser les tracks avec leurs détails complets
         Map<String, TrackPlayData> trackPlayData = history.stream()
                 .collect(Collectors.groupingBy(
-                    h -> h.getTrack().getId(),
+                    h -> h.getTrack().getSpotifyId(),
                     Collectors.collectingAndThen(
                         Collectors.toList(),
                         historyList -> {
@@ -331,7 +339,7 @@ public class UserDocumentGenerationService {
                                     .sorted()
                                     .toList();
                             Set<String> genres = first.getTrack().getGenres() != null ?
-                                    first.getTrack().getGenres() : Set.of();
+                                    Set.copyOf(first.getTrack().getGenres()) : Set.of();
                             return new TrackPlayData(
                                     first.getTrack().getName(),
                                     artistNames,
@@ -410,7 +418,7 @@ public class UserDocumentGenerationService {
         // Analyser les tracks avec leurs détails complets
         Map<String, TrackPlayData> trackPlayData = history.stream()
                 .collect(Collectors.groupingBy(
-                    h -> h.getTrack().getId(),
+                    h -> h.getTrack().getSpotifyId(),
                     Collectors.collectingAndThen(
                         Collectors.toList(),
                         historyList -> {
@@ -420,7 +428,7 @@ public class UserDocumentGenerationService {
                                     .sorted()
                                     .toList();
                             Set<String> genres = first.getTrack().getGenres() != null ?
-                                    first.getTrack().getGenres() : Set.of();
+                                    Set.copyOf(first.getTrack().getGenres()) : Set.of();
                             return new TrackPlayData(
                                     first.getTrack().getName(),
                                     artistNames,
@@ -468,7 +476,7 @@ public class UserDocumentGenerationService {
         // Compter les écoutes par track avec tous les artistes et genres
         Map<String, TrackPlayData> trackPlayData = history.stream()
                 .collect(Collectors.groupingBy(
-                    h -> h.getTrack().getId(),
+                    h -> h.getTrack().getSpotifyId(),
                     Collectors.collectingAndThen(
                         Collectors.toList(),
                         historyList -> {
@@ -478,7 +486,7 @@ public class UserDocumentGenerationService {
                                     .sorted()
                                     .toList();
                             Set<String> genres = first.getTrack().getGenres() != null ?
-                                    first.getTrack().getGenres() : Set.of();
+                                    Set.copyOf(first.getTrack().getGenres()) : Set.of();
                             return new TrackPlayData(
                                     first.getTrack().getName(),
                                     artistNames,
@@ -541,7 +549,7 @@ public class UserDocumentGenerationService {
         // Même logique que pour le mois mais sur toute la période
         Map<String, TrackPlayData> trackPlayData = history.stream()
                 .collect(Collectors.groupingBy(
-                    h -> h.getTrack().getId(),
+                    h -> h.getTrack().getSpotifyId(),
                     Collectors.collectingAndThen(
                         Collectors.toList(),
                         historyList -> {
@@ -551,7 +559,7 @@ public class UserDocumentGenerationService {
                                     .sorted()
                                     .toList();
                             Set<String> genres = first.getTrack().getGenres() != null ?
-                                    first.getTrack().getGenres() : Set.of();
+                                    Set.copyOf(first.getTrack().getGenres()) : Set.of();
                             return new TrackPlayData(
                                     first.getTrack().getName(),
                                     artistNames,
@@ -605,7 +613,7 @@ public class UserDocumentGenerationService {
         // Top tracks avec détails enrichis (incluant genres, album et durée)
         List<Map<String, Object>> topTracksDetailed = history.stream()
                 .collect(Collectors.groupingBy(
-                    h -> h.getTrack().getId(),
+                    h -> h.getTrack().getSpotifyId(),
                     Collectors.collectingAndThen(
                         Collectors.toList(),
                         historyList -> {
@@ -616,7 +624,7 @@ public class UserDocumentGenerationService {
                                         .map(Artist::getName).toList(),
                                 "playCount", historyList.size(),
                                 "genres", first.getTrack().getGenres() != null ?
-                                        first.getTrack().getGenres() : Set.of(),
+                                        first.getTrack().getGenres() : List.of(),
                                 "albumName", first.getTrack().getAlbum().getName() != null ?
                                         first.getTrack().getAlbum().getName() : "Album inconnu",
                                 "durationMs", first.getTrack().getDurationMs()
@@ -646,7 +654,7 @@ public class UserDocumentGenerationService {
                 "top_artists", top5ArtistNames,
                 "top_genres", topGenres,
                 "track_count", history.size(),
-                "unique_tracks", history.stream().map(h -> h.getTrack().getId()).distinct().count(),
+                "unique_tracks", history.stream().map(h -> h.getTrack().getSpotifyId()).distinct().count(),
                 "top_tracks_detailed", topTracksDetailed
         );
     }
@@ -654,23 +662,23 @@ public class UserDocumentGenerationService {
     private Map<String, Object> buildEnrichedGlobalTracksMetadata(List<ListeningHistory> history) {
         // Statistiques globales enrichies
         Map<String, Long> trackCounts = history.stream()
-                .collect(Collectors.groupingBy(h -> h.getTrack().getId(), Collectors.counting()));
+                .collect(Collectors.groupingBy(h -> h.getTrack().getSpotifyId(), Collectors.counting()));
 
         List<Map<String, Object>> topTracksDetailed = history.stream()
                 .collect(Collectors.groupingBy(
-                    h -> h.getTrack().getId(),
+                    h -> h.getTrack().getSpotifyId(),
                     Collectors.collectingAndThen(
                         Collectors.toList(),
                         historyList -> {
                             ListeningHistory first = historyList.get(0);
                             return Map.of(
-                                "trackId", first.getTrack().getId(),
+                                "trackId", first.getTrack().getSpotifyId(),
                                 "trackName", first.getTrack().getName(),
                                 "artistNames", first.getTrack().getArtists().stream()
                                         .map(Artist::getName).toList(),
                                 "playCount", historyList.size(),
                                 "genres", first.getTrack().getGenres() != null ?
-                                        first.getTrack().getGenres() : Set.of(),
+                                        first.getTrack().getGenres() : List.of(),
                                 "albumName", first.getTrack().getAlbum().getName() != null ?
                                         first.getTrack().getAlbum().getName() : "Album inconnu",
                                 "durationMs", first.getTrack().getDurationMs()
@@ -717,7 +725,7 @@ public class UserDocumentGenerationService {
         // Analyser les données des dernières 24h
         Map<String, TrackPlayData> trackPlayData = last24Hours.stream()
                 .collect(Collectors.groupingBy(
-                    h -> h.getTrack().getId(),
+                    h -> h.getTrack().getSpotifyId(),
                     Collectors.collectingAndThen(
                         Collectors.toList(),
                         historyList -> {
@@ -727,7 +735,7 @@ public class UserDocumentGenerationService {
                                     .sorted()
                                     .toList();
                             Set<String> genres = first.getTrack().getGenres() != null ?
-                                    first.getTrack().getGenres() : Set.of();
+                                    Set.copyOf(first.getTrack().getGenres()) : Set.of();
                             return new TrackPlayData(
                                     first.getTrack().getName(),
                                     artistNames,
@@ -796,7 +804,7 @@ public class UserDocumentGenerationService {
         // Analyser les données de la semaine
         Map<String, TrackPlayData> trackPlayData = lastWeek.stream()
                 .collect(Collectors.groupingBy(
-                    h -> h.getTrack().getId(),
+                    h -> h.getTrack().getSpotifyId(),
                     Collectors.collectingAndThen(
                         Collectors.toList(),
                         historyList -> {
@@ -806,7 +814,7 @@ public class UserDocumentGenerationService {
                                     .sorted()
                                     .toList();
                             Set<String> genres = first.getTrack().getGenres() != null ?
-                                    first.getTrack().getGenres() : Set.of();
+                                    Set.copyOf(first.getTrack().getGenres()) : Set.of();
                             return new TrackPlayData(
                                     first.getTrack().getName(),
                                     artistNames,
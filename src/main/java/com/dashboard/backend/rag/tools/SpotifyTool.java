@@ -1,5 +1,6 @@
 package com.dashboard.backend.rag.tools;
 
+import com.dashboard.backend.config.datasource.ReadReplica;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -25,6 +26,7 @@ public class SpotifyTool {
 
 
 
+    @ReadReplica
     public String executeListeningHistoryQuery(SqlQueryRequest request) {
         String query = request.query();
         System.out.println("✅ Outil d'exécution SQL appelé avec la requête : " + query);
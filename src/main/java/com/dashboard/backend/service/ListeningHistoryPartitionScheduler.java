@@ -0,0 +1,52 @@
+package com.dashboard.backend.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Crée à l'avance les partitions mensuelles de {@code listening_history}.
+ * Sans partition pour le mois en cours, les écoutes tomberaient dans la partition par défaut
+ * et ne bénéficieraient plus de l'élagage des partitions.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ListeningHistoryPartitionScheduler {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${listening-history.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        ensureUpcomingPartitions();
+    }
+
+    // Tous les jours à 03:15 UTC
+    @Scheduled(cron = "0 15 3 * * *", zone = "UTC")
+    public void ensureUpcomingPartitions() {
+        LocalDate month = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1);
+        int created = 0;
+        for (int i = 0; i <= monthsAhead; i++) {
+            Boolean isNew = jdbcTemplate.queryForObject(
+                    "SELECT ensure_listening_history_partition(?)", Boolean.class, Date.valueOf(month.plusMonths(i)));
+            if (Boolean.TRUE.equals(isNew)) {
+                created++;
+            }
+        }
+        if (created > 0) {
+            log.info("🗂️ {} nouvelle(s) partition(s) mensuelle(s) de listening_history créée(s).", created);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.dashboard.backend.service;
+
+import com.dashboard.backend.analytics.repository.ListeningSegmentStore;
+import com.dashboard.backend.analytics.service.ListeningHistoryColumnarCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Rétention de l'historique brut : les écoutes de plus de {@code months} mois ne sont conservées
+ * que dans les agrégats quotidiens (par morceau, par artiste et par heure).
+ *
+ * Chaque mois expiré est recalculé une dernière fois dans les agrégats depuis sa partition, puis la
+ * partition est supprimée, ou détachée si {@code archive} est activé (voir V18). Les éventuelles
+ * écoutes expirées restées dans la partition par défaut sont supprimées par lots.
+ * Les segments sur disque des mois supprimés sont effacés et le cache en colonnes est vidé.
+ */
+@Component
+@ConditionalOnProperty(name = "listening-history.retention.enabled", havingValue = "true")
+@Slf4j
+public class ListeningHistoryRetentionJob {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ListeningSegmentStore listeningSegmentStore;
+    private final ListeningHistoryColumnarCache listeningHistoryColumnarCache;
+    private final int months;
+    private final boolean archive;
+    private final int batchSize;
+
+    public ListeningHistoryRetentionJob(JdbcTemplate jdbcTemplate,
+                                        ListeningSegmentStore listeningSegmentStore,
+                                        ListeningHistoryColumnarCache listeningHistoryColumnarCache,
+                                        @Value("${listening-history.retention.months:24}") int months,
+                                        @Value("${listening-history.retention.archive:false}") boolean archive,
+                                        @Value("${listening-history.retention.batch-size:5000}") int batchSize) {
+        if (months < 1) {
+            throw new IllegalArgumentException("listening-history.retention.months doit être au moins 1 : " + months);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.listeningSegmentStore = listeningSegmentStore;
+        this.listeningHistoryColumnarCache = listeningHistoryColumnarCache;
+        this.months = months;
+        this.archive = archive;
+        this.batchSize = batchSize;
+    }
+
+    // Tous les jours à 03:45 UTC, après la création des partitions à venir
+    @Scheduled(cron = "0 45 3 * * *", zone = "UTC")
+    public void applyRetention() {
+        YearMonth cutoff = YearMonth.now(ZoneOffset.UTC).minusMonths(months);
+
+        int partitionsRemoved = 0;
+        long rowsRemoved = 0;
+        for (YearMonth month : findPartitionMonthsBefore(cutoff)) {
+            // Une transaction par mois : la fonction recalcule les agrégats puis supprime la partition
+            Long compacted = jdbcTemplate.queryForObject("SELECT compact_listening_history_partition(?, ?)",
+                    Long.class, Date.valueOf(month.atDay(1)), archive);
+            if (compacted != null && compacted >= 0) {
+                partitionsRemoved++;
+                rowsRemoved += compacted;
+                log.info("🗜️ Mois {} compacté dans les agrégats : {} écoutes brutes {}.",
+                        month, compacted, archive ? "archivées" : "supprimées");
+            }
+        }
+        rowsRemoved += deleteExpiredDefaultRows(cutoff.atDay(1));
+
+        if (partitionsRemoved == 0 && rowsRemoved == 0) {
+            return;
+        }
+        jdbcTemplate.update("""
+            INSERT INTO listening_history_compactions (compacted_before, partitions_removed, rows_removed)
+            VALUES (?, ?, ?)
+        """, Date.valueOf(cutoff.atDay(1)), partitionsRemoved, rowsRemoved);
+
+        try {
+            int segments = listeningSegmentStore.deleteMonthsBefore(cutoff);
+            log.info("🗑️ {} segment(s) sur disque supprimé(s).", segments);
+        } catch (IOException e) {
+            log.warn("Suppression des segments antérieurs à {} incomplète : {}", cutoff, e.getMessage());
+        }
+        listeningHistoryColumnarCache.evictAll();
+
+        log.info("✅ Rétention appliquée avant {} : {} partition(s), {} écoutes brutes retirées.",
+                cutoff, partitionsRemoved, rowsRemoved);
+    }
+
+    private List<YearMonth> findPartitionMonthsBefore(YearMonth cutoff) {
+        return jdbcTemplate.queryForList("""
+                    SELECT c.relname
+                    FROM pg_inherits i
+                    JOIN pg_class c ON c.oid = i.inhrelid
+                    WHERE i.inhparent = 'listening_history'::regclass
+                      AND c.relname ~ '^listening_history_[0-9]{4}_[0-9]{2}$'
+                    ORDER BY c.relname
+                """, String.class).stream()
+                .map(name -> YearMonth.parse(name.substring("listening_history_".length()), PARTITION_SUFFIX))
+                .filter(month -> month.isBefore(cutoff))
+                .toList();
+    }
+
+    /**
+     * Supprime par lots les écoutes expirées de la partition par défaut (normalement vide).
+     * Elles figurent déjà dans les agrégats, alimentés à l'insertion.
+     */
+    private long deleteExpiredDefaultRows(LocalDate before) {
+        long deleted = 0;
+        int batch;
+        do {
+            batch = jdbcTemplate.update("""
+                DELETE FROM listening_history_default
+                WHERE ctid = ANY(ARRAY(
+                    SELECT ctid FROM listening_history_default
+                    WHERE played_at < CAST(? AS date) AT TIME ZONE 'UTC'
+                    LIMIT ?
+                ))
+            """, Date.valueOf(before), batchSize);
+            deleted += batch;
+        } while (batch == batchSize);
+        return deleted;
+    }
+}
@@ -3,20 +3,12 @@ package com.dashboard.backend.service;
 import com.dashboard.backend.User.model.SpotifyAccount;
 import com.dashboard.backend.User.model.User;
 import com.dashboard.backend.User.repository.SpotifyAccountRepository;
-import com.dashboard.backend.thirdparty.spotify.SpotifyProperties;
-import com.dashboard.backend.thirdparty.spotify.SpotifyTokenResponseDto;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.dashboard.backend.service.event.SpotifyTokensUpdatedEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -29,9 +21,8 @@ import java.util.Optional;
 public class SpotifyAccountService {
 
     private final SpotifyAccountRepository spotifyAccountRepository;
-    private final SpotifyProperties spotifyProperties;
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    private final SpotifyTokenRefreshCoordinator spotifyTokenRefreshCoordinator;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Vérifie si un utilisateur a un compte Spotify lié
@@ -67,7 +58,9 @@ public class SpotifyAccountService {
         account.setTokenExpiry(tokenExpiry);
         account.setLastSync(LocalDateTime.now());
 
-        return spotifyAccountRepository.save(account);
+        SpotifyAccount saved = spotifyAccountRepository.save(account);
+        eventPublisher.publishEvent(new SpotifyTokensUpdatedEvent(saved.getId(), saved.getTokenExpiry()));
+        return saved;
     }
 
     /**
@@ -80,7 +73,9 @@ public class SpotifyAccountService {
         account.setTokenExpiry(tokenExpiry);
         account.setLastSync(LocalDateTime.now());
 
-        return spotifyAccountRepository.save(account);
+        SpotifyAccount saved = spotifyAccountRepository.save(account);
+        eventPublisher.publishEvent(new SpotifyTokensUpdatedEvent(saved.getId(), saved.getTokenExpiry()));
+        return saved;
     }
 
     /**
@@ -118,53 +113,11 @@ public class SpotifyAccountService {
         log.debug("Token Spotify marqué pour révocation (nettoyage local uniquement)");
     }
 
+    /**
+     * Rafraîchit le token d'accès d'un compte. Les appels concurrents pour un même compte
+     * partagent un seul rafraîchissement (voir {@link SpotifyTokenRefreshCoordinator}).
+     */
     public Optional<String> refreshAccessToken(SpotifyAccount account) {
-        log.info("Tentative de rafraîchissement du token pour le compte Spotify ID: {}", account.getId());
-
-        if (account.getRefreshToken() == null || account.getRefreshToken().isEmpty()) {
-            log.error("Aucun refresh token disponible pour le compte Spotify ID: {}. Impossible de rafraîchir.", account.getId());
-            return Optional.empty();
-        }
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-        headers.setBasicAuth(spotifyProperties.getClientId(), spotifyProperties.getClientSecret());
-
-        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
-        form.add("grant_type", "refresh_token");
-        form.add("refresh_token", account.getRefreshToken());
-
-        HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(form, headers);
-
-        try {
-            ResponseEntity<String> response = restTemplate.postForEntity(
-                    "https://accounts.spotify.com/api/token",
-                    request,
-                    String.class
-            );
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                SpotifyTokenResponseDto tokenResponse = objectMapper.readValue(response.getBody(), SpotifyTokenResponseDto.class);
-
-                // Mettre à jour les tokens dans la base de données
-                updateTokens(
-                        account,
-                        tokenResponse.accessToken(),
-                        // Spotify peut parfois retourner un nouveau refresh_token
-                        tokenResponse.refreshToken() != null ? tokenResponse.refreshToken() : account.getRefreshToken(),
-                        Instant.now().plusSeconds(tokenResponse.expiresIn())
-                );
-
-                log.info("Token Spotify rafraîchi avec succès pour le compte ID: {}", account.getId());
-                return Optional.of(tokenResponse.accessToken());
-            } else {
-                log.error("Échec du rafraîchissement du token Spotify. Statut: {}", response.getStatusCode());
-                return Optional.empty();
-            }
-        } catch (Exception e) {
-            log.error("Erreur critique lors du rafraîchissement du token Spotify pour le compte ID: {}. L'utilisateur devra peut-être se reconnecter.", account.getId(), e);
-            // Ici, on pourrait marquer le compte comme invalide si l'erreur persiste (ex: token révoqué)
-            return Optional.empty();
-        }
+        return spotifyTokenRefreshCoordinator.refresh(account);
     }
 }
@@ -2,7 +2,11 @@ package com.dashboard.backend.service;
 
 import com.dashboard.backend.User.model.*;
 import com.dashboard.backend.User.repository.*;
+import com.dashboard.backend.analytics.repository.AnalyticsWatermarkRepository;
+import com.dashboard.backend.analytics.repository.DailyRollupRepository;
+import com.dashboard.backend.analytics.repository.TrackGenreRepository;
 import com.dashboard.backend.rag.service.UserDocumentGenerationService;
+import com.dashboard.backend.service.event.ListeningHistorySyncedEvent;
 import com.dashboard.backend.thirdparty.spotify.SpotifyClient;
 import com.dashboard.backend.thirdparty.spotify.dto.SpotifyRecentlyPlayedDto;
 import com.dashboard.backend.thirdparty.spotify.dto.SpotifyRecentlyPlayedDto.TrackDto;
@@ -10,10 +14,16 @@ import com.dashboard.backend.thirdparty.spotify.dto.SpotifyRecentlyPlayedDto.Alb
 import com.dashboard.backend.thirdparty.spotify.dto.SpotifyRecentlyPlayedDto.ArtistDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -27,7 +37,14 @@ public class SpotifyDataSyncService {
     private final TrackRepository trackRepository;
     private final AlbumRepository albumRepository;
     private final ArtistRepository artistRepository;
+    private final CatalogRepository catalogRepository;
     private final UserDocumentGenerationService userDocumentGenerationService;
+    private final DailyRollupRepository dailyRollupRepository;
+    private final TrackGenreRepository trackGenreRepository;
+    private final AnalyticsWatermarkRepository analyticsWatermarkRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private static final Duration RECENT_PLAYS_WINDOW = Duration.ofDays(31);
 
     @Transactional
     public void syncRecentlyPlayedForUser(User user) {
@@ -43,6 +60,8 @@ public class SpotifyDataSyncService {
 
         // --- ÉTAPE 2: RÉCUPÉRATION COMPLÈTE AVEC PAGINATION ---
         int totalNewEntries = 0;
+        List<DailyRollupRepository.Play> newPlays = new ArrayList<>();
+        Set<Integer> artistsWithNewGenres = new HashSet<>();
         boolean hasMoreData = true;
         Instant currentAfter = lastPlayedAt;
 
@@ -69,7 +88,7 @@ public class SpotifyDataSyncService {
                 }
 
                 // Traiter et sauvegarder l'écoute
-                processAndSaveListeningEntry(user, item);
+                newPlays.add(processAndSaveListeningEntry(user, item, artistsWithNewGenres));
                 batchNewEntries++;
 
                 // Garder trace du timestamp le plus récent
@@ -95,6 +114,26 @@ public class SpotifyDataSyncService {
             }
         }
 
+        // --- ÉTAPE 3: AGRÉGATS QUOTIDIENS ---
+        // Dans la même transaction que les écoutes : on écrit d'abord les entités en attente
+        // (morceaux, artistes) pour que les agrégats puissent les référencer.
+        if (!newPlays.isEmpty()) {
+            listeningHistoryRepository.flush();
+            dailyRollupRepository.recordPlays(newPlays);
+            // Genres des morceaux écoutés et de tous ceux des artistes qui viennent de recevoir leurs genres
+            trackGenreRepository.refreshGenres(
+                    newPlays.stream().map(DailyRollupRepository.Play::trackId).collect(Collectors.toSet()),
+                    artistsWithNewGenres);
+            // Les réponses d'analytics changent d'ETag à la validation, sans attendre le recalcul des classements
+            analyticsWatermarkRepository.touchHistory(user.getId());
+            // Les classements pré-calculés sont recalculés une fois la transaction validée
+            Instant earliestPlayedAt = newPlays.stream()
+                    .map(DailyRollupRepository.Play::playedAt)
+                    .min(Comparator.naturalOrder())
+                    .orElseThrow();
+            eventPublisher.publishEvent(new ListeningHistorySyncedEvent(user.getId(), newPlays.size(), earliestPlayedAt));
+        }
+
         userDocumentGenerationService.generateFromListeningHistory(user);
 
         log.info("✅ Synchronisation terminée pour {}. {} nouvelles écoutes ajoutées au total.",
@@ -105,7 +144,11 @@ public class SpotifyDataSyncService {
      * Récupère le timestamp de la dernière écoute synchronisée pour un utilisateur
      */
     private Instant getLastPlayedTimestamp(User user) {
-        return listeningHistoryRepository.findTopByUserOrderByPlayedAtDesc(user)
+        // On cherche d'abord dans les partitions récentes, ce qui suffit pour un utilisateur actif ;
+        // la recherche non bornée parcourt toutes les partitions mensuelles.
+        Instant recentWindow = Instant.now().minus(RECENT_PLAYS_WINDOW);
+        return listeningHistoryRepository.findTopByUserAndPlayedAtAfterOrderByPlayedAtDesc(user, recentWindow)
+                .or(() -> listeningHistoryRepository.findTopByUserOrderByPlayedAtDesc(user))
                 .map(ListeningHistory::getPlayedAt)
                 .orElse(null);
     }
@@ -113,27 +156,33 @@ public class SpotifyDataSyncService {
     /**
      * Enrichit un artiste existant avec ses genres récupérés depuis l'API Spotify.
      * Cette méthode est appelée pour s'assurer que les genres sont toujours à jour.
+     * @return vrai si l'artiste vient de recevoir ses genres
      */
-    private void enrichArtistWithGenres(Artist artist, User user) {
+    private boolean enrichArtistWithGenres(Artist artist, User user) {
         // Ne récupérer les genres que si l'artiste n'en a pas encore ou si ils sont vides
-        if (artist.getGenres() == null || artist.getGenres().isEmpty()) {
-            log.debug("Récupération des genres pour l'artiste: {} ({})", artist.getName(), artist.getId());
-
-            spotifyClient.getArtistDetails(user, artist.getId())
-                .ifPresent(artistDetails -> {
-                    if (artistDetails.genres() != null && !artistDetails.genres().isEmpty()) {
-                        artist.setGenres(artistDetails.genres());
-                        artistRepository.save(artist);
-                        log.debug("Genres ajoutés pour {}: {}", artist.getName(), artistDetails.genres());
-                    }
-                });
+        if (artist.getGenres() != null && !artist.getGenres().isEmpty()) {
+            return false;
         }
+        log.debug("Récupération des genres pour l'artiste: {} ({})", artist.getName(), artist.getSpotifyId());
+
+        return spotifyClient.getArtistDetails(user, artist.getSpotifyId())
+                .filter(artistDetails -> artistDetails.genres() != null && !artistDetails.genres().isEmpty())
+                .map(artistDetails -> {
+                    artist.setGenres(artistDetails.genres());
+                    artistRepository.save(artist);
+                    log.debug("Genres ajoutés pour {}: {}", artist.getName(), artistDetails.genres());
+                    return true;
+                })
+                .orElse(false);
     }
 
     /**
      * Traite et sauvegarde une entrée d'écoute avec enrichissement des genres
+     * @param artistsWithNewGenres complété avec les artistes dont les genres viennent d'être récupérés
+     * @return l'écoute à reporter dans les agrégats quotidiens
      */
-    private void processAndSaveListeningEntry(User user, SpotifyRecentlyPlayedDto.Item item) {
+    private DailyRollupRepository.Play processAndSaveListeningEntry(User user, SpotifyRecentlyPlayedDto.Item item,
+                                                                    Set<Integer> artistsWithNewGenres) {
         // --- ÉTAPE 2: TRANSFORM & LOAD (Dimensions) ---
 
         // 2a. Gérer tous les artistes du morceau et enrichir avec les genres
@@ -141,7 +190,9 @@ public class SpotifyDataSyncService {
                 .map(artistDto -> {
                     Artist artist = getOrCreateArtist(artistDto);
                     // Enrichir l'artiste avec ses genres
-                    enrichArtistWithGenres(artist, user);
+                    if (enrichArtistWithGenres(artist, user)) {
+                        artistsWithNewGenres.add(artist.getId());
+                    }
                     return artist;
                 })
                 .collect(Collectors.toSet());
@@ -159,22 +210,30 @@ public class SpotifyDataSyncService {
         historyEntry.setPlayedAt(item.playedAt());
 
         listeningHistoryRepository.save(historyEntry);
+
+        return new DailyRollupRepository.Play(
+                user.getId(),
+                item.playedAt(),
+                track.getId(),
+                track.getDurationMs(),
+                track.getArtists().stream().map(Artist::getId).collect(Collectors.toSet()));
     }
 
+    // Les créations passent par CatalogRepository, qui tolère la même création par une synchronisation parallèle ;
+    // l'entité est ensuite relue, qu'elle vienne de cette synchronisation ou d'une autre.
+
     private Artist getOrCreateArtist(ArtistDto dto) {
-        return artistRepository.findById(dto.id())
+        return artistRepository.findBySpotifyId(dto.id())
                 .orElseGet(() -> {
                     log.debug("Création d'un nouvel artiste : {} ({})", dto.name(), dto.id());
-                    Artist newArtist = new Artist();
-                    newArtist.setId(dto.id());
-                    newArtist.setName(dto.name());
 
                     // Ajouter l'URL de l'image si disponible
-                    if (dto.images() != null && !dto.images().isEmpty()) {
-                        newArtist.setImageUrl(dto.images().getFirst().url());
-                    }
+                    String imageUrl = dto.images() != null && !dto.images().isEmpty()
+                            ? dto.images().getFirst().url()
+                            : null;
 
-                    return artistRepository.save(newArtist);
+                    catalogRepository.insertArtistIfAbsent(dto.id(), dto.name(), imageUrl);
+                    return artistRepository.findBySpotifyId(dto.id()).orElseThrow();
                 });
     }
 
@@ -188,51 +247,36 @@ public class SpotifyDataSyncService {
         return albumRepository.findById(dto.id())
                 .orElseGet(() -> {
                     log.debug("Création d'un nouvel album : {} ({})", dto.name(), dto.id());
-                    Album newAlbum = new Album();
-                    newAlbum.setId(dto.id());
-                    newAlbum.setName(dto.name());
-                    // La modification clé est ici : on assigne l'ensemble des artistes.
-                    newAlbum.setArtists(artists);
-                    return albumRepository.save(newAlbum);
+                    // La modification clé est ici : on lie l'ensemble des artistes.
+                    catalogRepository.insertAlbumIfAbsent(dto.id(), dto.name(), artistIds(artists));
+                    return albumRepository.findById(dto.id()).orElseThrow();
                 });
     }
 
     private Track getOrCreateTrack(TrackDto dto, Album album, Set<Artist> artists) {
-        return trackRepository.findById(dto.id())
+        return trackRepository.findBySpotifyId(dto.id())
                 .orElseGet(() -> {
                     log.debug("Création d'un nouveau morceau : {} ({})", dto.name(), dto.id());
-                    Track newTrack = new Track();
-                    newTrack.setId(dto.id());
-                    newTrack.setName(dto.name());
-                    newTrack.setAlbum(album);
-                    // La modification clé est ici : on assigne l'ensemble des artistes, pas un seul.
-                    newTrack.setArtists(artists);
-                    newTrack.setDurationMs(dto.durationMs());
-
-                    // Sauvegarder d'abord le track
-                    Track savedTrack = trackRepository.save(newTrack);
-
-                    // Puis associer automatiquement les genres via les artistes
-                    associateGenresToTrack(savedTrack);
-
-                    return savedTrack;
+                    // La modification clé est ici : on lie l'ensemble des artistes, pas un seul.
+                    boolean created = catalogRepository.insertTrackIfAbsent(
+                            dto.id(), dto.name(), album.getId(), dto.durationMs(), artistIds(artists));
+                    Track track = trackRepository.findBySpotifyId(dto.id()).orElseThrow();
+
+                    // Genres visibles dans la suite de la transaction ; la colonne tracks.genres
+                    // est écrite par TrackGenreRepository à la fin de la synchronisation
+                    if (created) {
+                        track.setGenres(artists.stream()
+                                .filter(artist -> artist.getGenres() != null)
+                                .flatMap(artist -> artist.getGenres().stream())
+                                .distinct()
+                                .sorted()
+                                .toList());
+                    }
+                    return track;
                 });
     }
 
-    /**
-     * Associe automatiquement les genres d'un track basés sur ses artistes.
-     * Les genres sont récupérés depuis tous les artistes associés au track.
-     */
-    private void associateGenresToTrack(Track track) {
-        Set<String> allGenres = track.getArtists().stream()
-                .filter(artist -> artist.getGenres() != null)
-                .flatMap(artist -> artist.getGenres().stream())
-                .collect(Collectors.toSet());
-
-        if (!allGenres.isEmpty()) {
-            track.setGenres(allGenres);
-            trackRepository.save(track);
-            log.debug("Genres associés au track '{}': {}", track.getName(), allGenres);
-        }
+    private static Set<Integer> artistIds(Set<Artist> artists) {
+        return artists.stream().map(Artist::getId).collect(Collectors.toSet());
     }
 }
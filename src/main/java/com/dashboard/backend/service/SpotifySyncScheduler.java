@@ -2,12 +2,16 @@ package com.dashboard.backend.service;
 
 import com.dashboard.backend.User.model.User;
 import com.dashboard.backend.User.repository.UserRepository;
+import com.dashboard.backend.thirdparty.spotify.SpotifyProperties;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Gère les tâches planifiées liées à la synchronisation des données Spotify.
@@ -21,6 +25,7 @@ public class SpotifySyncScheduler {
 
     private final UserRepository userRepository;
     private final SpotifyDataSyncService spotifyDataSyncService;
+    private final SpotifyProperties spotifyProperties;
 
     /**
      * Tâche planifiée pour synchroniser l'historique d'écoute "recently-played" de Spotify.
@@ -46,23 +51,30 @@ public class SpotifySyncScheduler {
 
         log.info("ℹ️ [SCHEDULER] {} utilisateur(s) à synchroniser.", usersToSync.size());
 
-        int successCount = 0;
-        int failureCount = 0;
+        AtomicInteger successCount = new AtomicInteger();
+        AtomicInteger failureCount = new AtomicInteger();
 
-        // 2. Pour chaque utilisateur, lancer la synchronisation.
-        for (User user : usersToSync) {
-            try {
-                // Déléguer la logique complexe au service dédié.
-                spotifyDataSyncService.syncRecentlyPlayedForUser(user);
-                successCount++;
-            } catch (Exception e) {
-                // CRUCIAL : Capter les exceptions pour un utilisateur spécifique
-                // afin que la tâche ne s'arrête pas pour tous les autres.
-                log.error("❌ [SCHEDULER] Échec de la synchronisation pour l'utilisateur {}: {}", user.getEmail(), e.getMessage());
-                failureCount++;
+        // 2. Synchroniser les utilisateurs en parallèle sur des threads virtuels.
+        //    Le nombre d'utilisateurs simultanés est plafonné ; le débit réel vers Spotify
+        //    est ensuite réglé par la limite de concurrence adaptative du client.
+        int parallelism = spotifyProperties.getSync().getMaxConcurrentUsers();
+        try (ExecutorService executor = Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().name("spotify-sync-", 0).factory())) {
+            for (User user : usersToSync) {
+                executor.execute(() -> {
+                    try {
+                        // Déléguer la logique complexe au service dédié.
+                        spotifyDataSyncService.syncRecentlyPlayedForUser(user);
+                        successCount.incrementAndGet();
+                    } catch (Exception e) {
+                        // CRUCIAL : Capter les exceptions pour un utilisateur spécifique
+                        // afin que la tâche ne s'arrête pas pour tous les autres.
+                        log.error("❌ [SCHEDULER] Échec de la synchronisation pour l'utilisateur {}: {}", user.getEmail(), e.getMessage());
+                        failureCount.incrementAndGet();
+                    }
+                });
             }
         }
 
-        log.info("✅ [SCHEDULER] Tâche de synchronisation terminée. Succès: {}, Échecs: {}.", successCount, failureCount);
+        log.info("✅ [SCHEDULER] Tâche de synchronisation terminée. Succès: {}, Échecs: {}.", successCount.get(), failureCount.get());
     }
 }
@@ -0,0 +1,221 @@
+package com.dashboard.backend.service;
+
+import com.dashboard.backend.User.model.SpotifyAccount;
+import com.dashboard.backend.User.repository.SpotifyAccountRepository;
+import com.dashboard.backend.service.event.SpotifyTokensUpdatedEvent;
+import com.dashboard.backend.thirdparty.spotify.SpotifyProperties;
+import com.dashboard.backend.thirdparty.spotify.SpotifyTokenResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Point d'entrée unique pour le rafraîchissement des tokens Spotify.
+ *
+ * - Dans un même nœud, un seul rafraîchissement est en vol par compte : les appelants
+ *   concurrents attendent le même {@link CompletableFuture}.
+ * - Entre plusieurs nœuds, la ligne {@code spotify_accounts} est verrouillée
+ *   ({@code SELECT ... FOR UPDATE}) le temps du rafraîchissement. Un nœud qui obtient le verrou
+ *   après un autre constate que le token a déjà changé et réutilise le nouveau sans appeler Spotify.
+ */
+@Component
+@Slf4j
+public class SpotifyTokenRefreshCoordinator {
+
+    private static final String SPOTIFY_TOKEN_URL = "https://accounts.spotify.com/api/token";
+    private static final Duration WAIT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final SpotifyAccountRepository spotifyAccountRepository;
+    private final SpotifyProperties spotifyProperties;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate requiresNewTransaction;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ConcurrentHashMap<UUID, CompletableFuture<Optional<RefreshedTokens>>> inFlight = new ConcurrentHashMap<>();
+
+    public SpotifyTokenRefreshCoordinator(SpotifyAccountRepository spotifyAccountRepository,
+                                          SpotifyProperties spotifyProperties,
+                                          RestTemplate restTemplate,
+                                          ObjectMapper objectMapper,
+                                          PlatformTransactionManager transactionManager,
+                                          ApplicationEventPublisher eventPublisher) {
+        this.spotifyAccountRepository = spotifyAccountRepository;
+        this.spotifyProperties = spotifyProperties;
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        // Transaction courte et indépendante de celle de l'appelant : le verrou de ligne
+        // est relâché et les nouveaux tokens sont visibles dès la fin du rafraîchissement.
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Rafraîchit le token du compte, ou attend le rafraîchissement déjà en cours pour ce compte.
+     * L'instance passée en paramètre reflète ensuite les nouveaux tokens, pour que l'appelant
+     * ne relise pas un état périmé depuis son contexte de persistance.
+     */
+    public Optional<String> refresh(SpotifyAccount account) {
+        if (account.getRefreshToken() == null || account.getRefreshToken().isEmpty()) {
+            log.error("Aucun refresh token disponible pour le compte Spotify ID: {}. Impossible de rafraîchir.", account.getId());
+            return Optional.empty();
+        }
+
+        CompletableFuture<Optional<RefreshedTokens>> own = new CompletableFuture<>();
+        CompletableFuture<Optional<RefreshedTokens>> existing = inFlight.putIfAbsent(account.getId(), own);
+
+        Optional<RefreshedTokens> result;
+        if (existing == null) {
+            try {
+                Optional<RefreshedTokens> refreshed = refreshUnderLock(account.getId(), account.getAccessToken());
+                own.complete(refreshed);
+                refreshed.ifPresent(tokens ->
+                        eventPublisher.publishEvent(new SpotifyTokensUpdatedEvent(account.getId(), tokens.tokenExpiry())));
+            } catch (Exception e) {
+                log.error("Erreur critique lors du rafraîchissement du token Spotify pour le compte ID: {}. L'utilisateur devra peut-être se reconnecter.", account.getId(), e);
+                own.complete(Optional.empty());
+            } finally {
+                inFlight.remove(account.getId(), own);
+            }
+            result = own.join();
+        } else {
+            log.debug("Rafraîchissement déjà en cours pour le compte Spotify ID: {}, attente du résultat", account.getId());
+            result = await(account.getId(), existing);
+        }
+
+        result.ifPresent(tokens -> syncCallerInstance(account, tokens));
+        return result.map(RefreshedTokens::accessToken);
+    }
+
+    /**
+     * Une instance gérée par la transaction de l'appelant est relue depuis la base plutôt que modifiée :
+     * la rendre "dirty" provoquerait un UPDATE dans cette transaction, qui garderait alors
+     * le verrou de ligne jusqu'à son commit.
+     */
+    private void syncCallerInstance(SpotifyAccount account, RefreshedTokens tokens) {
+        if (entityManager.contains(account)) {
+            entityManager.refresh(account);
+        } else {
+            tokens.applyTo(account);
+        }
+    }
+
+    private Optional<RefreshedTokens> await(UUID accountId, CompletableFuture<Optional<RefreshedTokens>> future) {
+        try {
+            return future.get(WAIT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Délai dépassé en attendant le rafraîchissement du token pour le compte Spotify ID: {}", accountId);
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Optional<RefreshedTokens> refreshUnderLock(UUID accountId, String observedAccessToken) {
+        return requiresNewTransaction.execute(status -> {
+            Optional<SpotifyAccount> lockedOpt = spotifyAccountRepository.findByIdForUpdate(accountId);
+            if (lockedOpt.isEmpty()) {
+                log.warn("Compte Spotify ID: {} introuvable, rafraîchissement annulé", accountId);
+                return Optional.empty();
+            }
+
+            SpotifyAccount locked = lockedOpt.get();
+
+            // Un autre nœud a rafraîchi le token pendant qu'on attendait le verrou
+            if (!Objects.equals(locked.getAccessToken(), observedAccessToken)
+                    && locked.getTokenExpiry() != null
+                    && locked.getTokenExpiry().isAfter(Instant.now())) {
+                log.info("Token Spotify déjà rafraîchi par une autre instance pour le compte ID: {}", accountId);
+                return Optional.of(RefreshedTokens.from(locked));
+            }
+
+            log.info("Tentative de rafraîchissement du token pour le compte Spotify ID: {}", accountId);
+            Optional<SpotifyTokenResponseDto> tokenResponse = requestNewTokens(locked.getRefreshToken());
+            if (tokenResponse.isEmpty()) {
+                return Optional.empty();
+            }
+
+            RefreshedTokens tokens = new RefreshedTokens(
+                    tokenResponse.get().accessToken(),
+                    // Spotify peut parfois retourner un nouveau refresh_token
+                    tokenResponse.get().refreshToken() != null ? tokenResponse.get().refreshToken() : locked.getRefreshToken(),
+                    Instant.now().plusSeconds(tokenResponse.get().expiresIn())
+            );
+            tokens.applyTo(locked);
+            spotifyAccountRepository.save(locked);
+
+            log.info("Token Spotify rafraîchi avec succès pour le compte ID: {}", accountId);
+            return Optional.of(tokens);
+        });
+    }
+
+    private Optional<SpotifyTokenResponseDto> requestNewTokens(String refreshToken) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+        headers.setBasicAuth(spotifyProperties.getClientId(), spotifyProperties.getClientSecret());
+
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("grant_type", "refresh_token");
+        form.add("refresh_token", refreshToken);
+
+        try {
+            ResponseEntity<String> response = restTemplate.postForEntity(SPOTIFY_TOKEN_URL, new HttpEntity<>(form, headers), String.class);
+
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                return Optional.of(objectMapper.readValue(response.getBody(), SpotifyTokenResponseDto.class));
+            }
+            log.error("Échec du rafraîchissement du token Spotify. Statut: {}", response.getStatusCode());
+            return Optional.empty();
+        } catch (Exception e) {
+            // Ici, on pourrait marquer le compte comme invalide si l'erreur persiste (ex: token révoqué)
+            log.error("Erreur lors de l'appel de rafraîchissement du token Spotify", e);
+            return Optional.empty();
+        }
+    }
+
+    private record RefreshedTokens(String accessToken, String refreshToken, Instant tokenExpiry) {
+
+        static RefreshedTokens from(SpotifyAccount account) {
+            return new RefreshedTokens(account.getAccessToken(), account.getRefreshToken(), account.getTokenExpiry());
+        }
+
+        void applyTo(SpotifyAccount account) {
+            account.setAccessToken(accessToken);
+            account.setRefreshToken(refreshToken);
+            account.setTokenExpiry(tokenExpiry);
+            account.setLastSync(LocalDateTime.now());
+        }
+    }
+}
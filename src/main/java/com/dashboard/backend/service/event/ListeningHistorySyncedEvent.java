@@ -0,0 +1,14 @@
+package com.dashboard.backend.service.event;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Publié par la synchronisation quand de nouvelles écoutes ont été insérées pour un utilisateur,
+ * pour recalculer ce qui en dépend une fois la transaction validée.
+ *
+ * @param earliestPlayedAt la plus ancienne des écoutes insérées : une écoute peut être antérieure
+ *                         à des écoutes déjà connues (pages qui se chevauchent, rattrapage)
+ */
+public record ListeningHistorySyncedEvent(UUID userId, int newPlays, Instant earliestPlayedAt) {
+}
@@ -0,0 +1,11 @@
+package com.dashboard.backend.service.event;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Publié quand les tokens d'un compte Spotify changent (liaison ou rafraîchissement),
+ * pour que le rafraîchissement suivant soit planifié sur la nouvelle échéance.
+ */
+public record SpotifyTokensUpdatedEvent(UUID spotifyAccountId, Instant tokenExpiry) {
+}
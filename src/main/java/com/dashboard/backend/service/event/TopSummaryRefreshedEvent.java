@@ -0,0 +1,10 @@
+package com.dashboard.backend.service.event;
+
+import java.util.UUID;
+
+/**
+ * Publié une fois les classements pré-calculés d'un utilisateur recalculés et validés :
+ * les réponses d'analytics qui en dépendent peuvent être recalculées.
+ */
+public record TopSummaryRefreshedEvent(UUID userId) {
+}
@@ -0,0 +1,31 @@
+package com.dashboard.backend.thirdparty.spotify;
+
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Caches des données Spotify (profil, top artistes, top morceaux), servis par le gestionnaire
+ * de caches borné de l'application ; taille et expiration selon {@code cache.specs[<nom>]}.
+ *
+ * Un classement est toujours mis en cache dans sa taille maximale ({@link #FULL_PAGE_SIZE}) sous une clé
+ * qui ignore la limite demandée : toutes les limites plus petites sont servies par la même entrée.
+ */
+public final class SpotifyCacheConfig {
+
+    public static final String SPOTIFY_PROFILE = "spotifyProfile";
+    public static final String SPOTIFY_TOP_ARTISTS = "spotifyTopArtists";
+    public static final String SPOTIFY_TOP_TRACKS = "spotifyTopTracks";
+
+    // Taille maximale d'une page de classement chez Spotify
+    public static final int FULL_PAGE_SIZE = 50;
+
+    private SpotifyCacheConfig() {
+    }
+
+    /**
+     * Clé d'un classement Spotify : utilisateur et période normalisée, sans la limite.
+     */
+    public static String spotifyTopKey(UUID userId, String timeRange) {
+        return userId + ":" + timeRange.trim().toLowerCase(Locale.ROOT);
+    }
+}
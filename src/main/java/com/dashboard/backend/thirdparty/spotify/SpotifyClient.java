@@ -15,11 +15,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
@@ -32,7 +31,6 @@ import java.util.Optional;
 @Slf4j
 public class SpotifyClient {
 
-    private static final String SPOTIFY_TOKEN_URL = "https://accounts.spotify.com/api/token";
     private static final String SPOTIFY_PROFILE_URL = "https://api.spotify.com/v1/me";
     private static final String SPOTIFY_TOP_ARTISTS_URL = "https://api.spotify.com/v1/me/top/artists";
 
@@ -43,10 +41,12 @@ public class SpotifyClient {
     private static final int TOKEN_REFRESH_BUFFER_SECONDS = 60;
 
     private final UserRepository userRepository;
-    private final SpotifyProperties spotifyProperties;
     private final SpotifyAccountService spotifyAccountService;
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final SpotifyRequestHedger spotifyRequestHedger;
+    private final SpotifyConditionalCache spotifyConditionalCache;
+    private final SpotifyConcurrencyLimiter spotifyConcurrencyLimiter;
 
     public Optional<String> getAccessToken(User user) {
         log.debug("Récupération du token d'accès pour l'utilisateur: {}", user.getEmail());
@@ -83,82 +83,6 @@ public class SpotifyClient {
         return expired;
     }
 
-    private Optional<String> refreshToken(SpotifyAccount spotifyAccount) {
-        if (spotifyAccount.getRefreshToken() == null || spotifyAccount.getRefreshToken().isEmpty()) {
-            log.error("Aucun refresh token disponible pour le compte Spotify ID: {}", spotifyAccount.getId());
-            return Optional.empty();
-        }
-
-        try {
-            HttpHeaders headers = createTokenRequestHeaders();
-            MultiValueMap<String, String> form = createRefreshTokenForm(spotifyAccount.getRefreshToken());
-            HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(form, headers);
-
-            log.debug("Envoi de la requête de rafraîchissement du token à Spotify");
-            ResponseEntity<String> response = restTemplate.postForEntity(SPOTIFY_TOKEN_URL, request, String.class);
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                return handleTokenRefreshResponse(response.getBody(), spotifyAccount);
-            } else {
-                log.error("Échec du rafraîchissement du token Spotify. Status: {}", response.getStatusCode());
-                return Optional.empty();
-            }
-
-        } catch (RestClientException e) {
-            log.error("Erreur réseau lors du rafraîchissement du token Spotify", e);
-            return Optional.empty();
-        } catch (Exception e) {
-            log.error("Erreur inattendue lors du rafraîchissement du token Spotify", e);
-            return Optional.empty();
-        }
-    }
-
-    private Optional<String> handleTokenRefreshResponse(String responseBody, SpotifyAccount spotifyAccount) {
-        try {
-            SpotifyTokenResponseDto tokenResponse = objectMapper.readValue(responseBody, SpotifyTokenResponseDto.class);
-
-            Instant newExpiry = Instant.now().plusSeconds(tokenResponse.expiresIn());
-            String newRefreshToken = tokenResponse.refreshToken() != null ?
-                    tokenResponse.refreshToken() : spotifyAccount.getRefreshToken();
-
-            // Utiliser le service pour mettre à jour les tokens
-            spotifyAccountService.updateTokens(
-                    spotifyAccount,
-                    tokenResponse.accessToken(),
-                    newRefreshToken,
-                    newExpiry
-            );
-
-            log.info("Token Spotify rafraîchi avec succès pour le compte ID: {}", spotifyAccount.getId());
-            return Optional.of(tokenResponse.accessToken());
-
-        } catch (Exception e) {
-            log.error("Erreur lors du parsing de la réponse de rafraîchissement du token", e);
-            return Optional.empty();
-        }
-    }
-
-    /**
-     * Crée les headers pour la requête de rafraîchissement du token
-     */
-    private HttpHeaders createTokenRequestHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-        headers.setBasicAuth(spotifyProperties.getClientId(), spotifyProperties.getClientSecret());
-        return headers;
-    }
-
-    /**
-     * Crée le formulaire pour la requête de rafraîchissement du token
-     */
-    private MultiValueMap<String, String> createRefreshTokenForm(String refreshToken) {
-        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
-        form.add("grant_type", "refresh_token");
-        form.add("refresh_token", refreshToken);
-        return form;
-    }
-
-
     public Optional<SpotifyProfileDto> getCurrentProfile(User user) {
         log.debug("Récupération du profil Spotify pour l'utilisateur: {}", user.getEmail());
 
@@ -168,33 +92,7 @@ public class SpotifyClient {
             return Optional.empty();
         }
 
-        try {
-            HttpHeaders headers = createApiRequestHeaders(tokenOpt.get());
-            HttpEntity<Void> request = new HttpEntity<>(headers);
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    SPOTIFY_PROFILE_URL,
-                    HttpMethod.GET,
-                    request,
-                    String.class
-            );
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                SpotifyProfileDto profile = objectMapper.readValue(response.getBody(), SpotifyProfileDto.class);
-                log.debug("Profil Spotify récupéré avec succès pour l'utilisateur: {}", user.getEmail());
-                return Optional.of(profile);
-            } else {
-                log.error("Échec de la récupération du profil Spotify. Status: {}", response.getStatusCode());
-                return Optional.empty();
-            }
-
-        } catch (RestClientException e) {
-            log.error("Erreur réseau lors de la récupération du profil Spotify pour l'utilisateur: {}", user.getEmail(), e);
-            return Optional.empty();
-        } catch (Exception e) {
-            log.error("Erreur lors de la récupération du profil Spotify pour l'utilisateur: {}", user.getEmail(), e);
-            return Optional.empty();
-        }
+        return makeHedgedSpotifyApiCall(user, "profile", SPOTIFY_PROFILE_URL, tokenOpt.get(), SpotifyProfileDto.class);
     }
 
     public Optional<SpotifyTopArtistsDto> getTopArtists(User user, String timeRange, int limit) {
@@ -207,7 +105,9 @@ public class SpotifyClient {
             return Optional.empty();
         }
 
-        return makeSpotifyApiCall(
+        return makeHedgedSpotifyApiCall(
+                user,
+                "top-artists",
                 buildTopArtistsUrl(timeRange, limit),
                 tokenOpt.get(),
                 SpotifyTopArtistsDto.class
@@ -224,7 +124,9 @@ public class SpotifyClient {
             return Optional.empty();
         }
 
-        return makeSpotifyApiCall(
+        return makeHedgedSpotifyApiCall(
+                user,
+                "top-tracks",
                 buildTopTracksUrl(timeRange, limit),
                 tokenOpt.get(),
                 SpotifyTopTracksDto.class
@@ -244,17 +146,48 @@ public class SpotifyClient {
                 "&limit=" + limit;
     }
 
-    private <T> Optional<T> makeSpotifyApiCall(String url, String accessToken, Class<T> responseType) {
+    private <T> Optional<T> makeSpotifyApiCall(String endpoint, String url, String accessToken, Class<T> responseType) {
         try {
-            HttpHeaders headers = createApiRequestHeaders(accessToken);
-            HttpEntity<Void> request = new HttpEntity<>(headers);
+            ResponseEntity<String> response = fetch(endpoint, url, accessToken, null);
+
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                T result = objectMapper.readValue(response.getBody(), responseType);
+                return Optional.of(result);
+            } else {
+                log.error("Échec de l'appel API Spotify. Status: {}", response.getStatusCode());
+                return Optional.empty();
+            }
 
-            ResponseEntity<String> response = restTemplate.exchange(
-                    url, HttpMethod.GET, request, String.class
-            );
+        } catch (Exception e) {
+            log.error("Erreur lors de l'appel API Spotify: {}", url, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Appel GET pour les lectures idempotentes exposées directement à l'utilisateur :
+     * requête de secours si la réponse tarde, et requête conditionnelle ({@code If-None-Match})
+     * qui réutilise le DTO déjà désérialisé sur un 304.
+     */
+    private <T> Optional<T> makeHedgedSpotifyApiCall(User user, String hedgedEndpoint, String url, String accessToken, Class<T> responseType) {
+        try {
+            Optional<SpotifyConditionalCache.Entry> cached = spotifyConditionalCache.get(user.getId(), url);
+            String etag = cached.map(SpotifyConditionalCache.Entry::etag).orElse(null);
+
+            ResponseEntity<String> response = spotifyRequestHedger.execute(hedgedEndpoint, () -> exchange(url, accessToken, etag));
+
+            if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && cached.isPresent()
+                    && responseType.isInstance(cached.get().body())) {
+                log.debug("Réponse Spotify inchangée (304) pour {}", url);
+                spotifyConditionalCache.recordNotModified(cached.get());
+                return Optional.of(responseType.cast(cached.get().body()));
+            }
 
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
                 T result = objectMapper.readValue(response.getBody(), responseType);
+                spotifyConditionalCache.recordModified();
+                spotifyConditionalCache.put(user.getId(), url, response.getHeaders().getETag(), result,
+                        bodyLength(response));
                 return Optional.of(result);
             } else {
                 log.error("Échec de l'appel API Spotify. Status: {}", response.getStatusCode());
@@ -267,7 +200,51 @@ public class SpotifyClient {
         }
     }
 
+    /**
+     * Taille du corps en octets, pour {@code bytes_avoided} : {@code Content-Length} s'il est fourni,
+     * sinon comptée sur la chaîne sans la recopier. Sans ETag, la réponse n'est pas mise en cache.
+     */
+    private static int bodyLength(ResponseEntity<String> response) {
+        if (response.getHeaders().getETag() == null) {
+            return 0;
+        }
+        long contentLength = response.getHeaders().getContentLength();
+        if (contentLength >= 0) {
+            return (int) Math.min(contentLength, Integer.MAX_VALUE);
+        }
+        String body = response.getBody();
+        int bytes = 0;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < body.length() && Character.isLowSurrogate(body.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Tous les appels GET vers l'API passent par la limite de concurrence adaptative
+     * (directement, ou par {@link SpotifyRequestHedger} pour chaque tentative).
+     */
+    private ResponseEntity<String> fetch(String endpoint, String url, String accessToken, String etag) throws Exception {
+        return spotifyConcurrencyLimiter.execute(endpoint, () -> exchange(url, accessToken, etag));
+    }
 
+    private ResponseEntity<String> exchange(String url, String accessToken, String etag) {
+        HttpHeaders headers = createApiRequestHeaders(accessToken);
+        if (etag != null) {
+            headers.setIfNoneMatch(etag);
+        }
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
 
     /**
      * Crée les headers pour les requêtes API Spotify
@@ -294,6 +271,7 @@ public class SpotifyClient {
     public void revokeSpotifyAccess(User user) {
         log.info("Révocation de l'accès Spotify pour l'utilisateur: {}", user.getEmail());
         spotifyAccountService.unlinkSpotifyAccount(user);
+        spotifyConditionalCache.evictUser(user.getId());
     }
 
     public Optional<SpotifyRecentlyPlayedDto> getRecentlyPlayed(User user) {
@@ -320,7 +298,7 @@ public class SpotifyClient {
         }
 
         // 3. Faire l'appel API en utilisant la méthode générique
-        return makeSpotifyApiCall(urlBuilder.toString(), tokenOpt.get(), SpotifyRecentlyPlayedDto.class);
+        return makeSpotifyApiCall("recently-played", urlBuilder.toString(), tokenOpt.get(), SpotifyRecentlyPlayedDto.class);
     }
 
     /**
@@ -336,16 +314,7 @@ public class SpotifyClient {
         }
 
         try {
-            HttpHeaders headers = createApiRequestHeaders(tokenOpt.get());
-            HttpEntity<Void> request = new HttpEntity<>(headers);
-
-            String url = SPOTIFY_ARTIST_URL + artistId;
-            ResponseEntity<String> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    request,
-                    String.class
-            );
+            ResponseEntity<String> response = fetch("artist", SPOTIFY_ARTIST_URL + artistId, tokenOpt.get(), null);
 
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
                 SpotifyArtistDto artist = objectMapper.readValue(response.getBody(), SpotifyArtistDto.class);
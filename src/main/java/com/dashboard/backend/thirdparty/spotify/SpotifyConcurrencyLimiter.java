@@ -0,0 +1,206 @@
+package com.dashboard.backend.thirdparty.spotify;
+
+import com.dashboard.backend.exception.SpotifyRateLimitedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limite adaptative (AIMD) du nombre d'appels simultanés vers l'API Spotify.
+ *
+ * - Augmentation additive : tant que la latence reste proche de la latence de référence
+ *   et que la limite est réellement utilisée, la limite gagne environ 1 par "fenêtre" de {@code limit} réponses.
+ * - Diminution multiplicative : un 429, un 5xx, une erreur réseau ou un pic de latence
+ *   multiplie la limite par {@code backoffRatio} (au plus une fois par {@code decreaseCooldown}).
+ *
+ * Un pic de latence est détecté quand la moyenne mobile récente dépasse {@code latencyTolerance} fois
+ * la latence de référence. Cette dernière est un minimum glissant : elle suit immédiatement une latence
+ * plus basse et remonte lentement, pour s'adapter à un changement durable du temps de réponse de Spotify.
+ * Latence de référence et moyenne mobile sont suivies par endpoint (les endpoints n'ont pas le même temps
+ * de réponse), la limite reste commune à tous les appels.
+ */
+@Component
+@Slf4j
+public class SpotifyConcurrencyLimiter {
+
+    private static final double BASELINE_DRIFT = 0.01;
+    private static final double SMOOTHING = 0.2;
+
+    private final SpotifyProperties.Concurrency config;
+    private final Counter rejected;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    private final Map<String, Latency> latencies = new HashMap<>();
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+
+    public SpotifyConcurrencyLimiter(SpotifyProperties spotifyProperties, MeterRegistry meterRegistry) {
+        this.config = spotifyProperties.getConcurrency();
+        this.limit = config.getInitialLimit();
+        this.rejected = meterRegistry.counter("spotify.limiter.rejected");
+        meterRegistry.gauge("spotify.limiter.limit", this, SpotifyConcurrencyLimiter::getLimit);
+        meterRegistry.gauge("spotify.limiter.in_flight", this, SpotifyConcurrencyLimiter::getInFlight);
+    }
+
+    /**
+     * Exécute {@code call} dès qu'un emplacement est disponible, puis ajuste la limite
+     * selon la latence et l'issue de l'appel.
+     *
+     * @param endpoint nom de l'endpoint appelé, qui porte sa propre latence de référence
+     */
+    public <T> T execute(String endpoint, Callable<T> call) throws Exception {
+        int inFlightAtStart = acquire();
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            release();
+            onSample(endpoint, System.nanoTime() - start, inFlightAtStart);
+            return result;
+        } catch (Exception e) {
+            release();
+            if (isOverloadSignal(e)) {
+                onDrop();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return vrai s'il reste de la marge sous la limite courante (utilisé pour décider d'un hedge)
+     */
+    public boolean hasSpareCapacity() {
+        lock.lock();
+        try {
+            return inFlight < (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int acquire() throws InterruptedException {
+        long remaining = config.getAcquireTimeout().toNanos();
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    rejected.increment();
+                    throw new SpotifyRateLimitedException(
+                            "Limite de requêtes simultanées vers Spotify atteinte (" + (int) limit + ")");
+                }
+                remaining = permitReleased.awaitNanos(remaining);
+            }
+            return ++inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            permitReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onSample(String endpoint, long latencyNanos, int inFlightAtStart) {
+        lock.lock();
+        try {
+            Latency latency = latencies.computeIfAbsent(endpoint, k -> new Latency());
+            if (latency.baselineNanos == 0 || latencyNanos < latency.baselineNanos) {
+                latency.baselineNanos = latencyNanos;
+            } else {
+                latency.baselineNanos += (long) ((latencyNanos - latency.baselineNanos) * BASELINE_DRIFT);
+            }
+
+            // Moyenne mobile courte : une réponse lente isolée ne suffit pas à réduire la limite
+            latency.smoothedNanos = latency.smoothedNanos == 0 ? latencyNanos
+                    : latency.smoothedNanos + (long) ((latencyNanos - latency.smoothedNanos) * SMOOTHING);
+
+            if (latency.smoothedNanos > latency.baselineNanos * config.getLatencyTolerance()) {
+                decrease("pic de latence");
+                return;
+            }
+
+            // On n'augmente que si la limite est réellement sollicitée
+            if (inFlightAtStart * 2 >= limit) {
+                limit = Math.min(config.getMaxLimit(), limit + 1.0 / limit);
+                permitReleased.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onDrop() {
+        lock.lock();
+        try {
+            decrease("surcharge signalée par Spotify");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease(String reason) {
+        long now = System.nanoTime();
+        if (lastDecreaseNanos != 0 && now - lastDecreaseNanos < config.getDecreaseCooldown().toNanos()) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        double previous = limit;
+        limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+        log.debug("Limite de concurrence Spotify réduite de {} à {} ({})",
+                String.format("%.1f", previous), String.format("%.1f", limit), reason);
+    }
+
+    private static boolean isOverloadSignal(Exception e) {
+        // Une tentative annulée (hedge perdant) n'est pas un signal de surcharge
+        if (Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        if (e instanceof HttpStatusCodeException statusException) {
+            return statusException.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()
+                    || statusException.getStatusCode().is5xxServerError();
+        }
+        return e instanceof ResourceAccessException;
+    }
+
+    // Protégé par le verrou du limiteur
+    private static final class Latency {
+        private long baselineNanos;
+        private long smoothedNanos;
+    }
+}
@@ -0,0 +1,72 @@
+package com.dashboard.backend.thirdparty.spotify;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Dernière réponse connue par utilisateur et par URL, avec son ETag.
+ *
+ * {@link SpotifyClient} renvoie l'ETag dans {@code If-None-Match} ; sur un 304, le DTO déjà
+ * désérialisé est réutilisé sans retélécharger ni reparser le corps. Les entrées sont bornées
+ * en nombre et évincées dans l'ordre d'accès (LRU).
+ */
+@Component
+public class SpotifyConditionalCache {
+
+    private final Map<Key, Entry> entries;
+    private final Counter notModified;
+    private final Counter modified;
+    private final Counter bytesAvoided;
+
+    public SpotifyConditionalCache(SpotifyProperties spotifyProperties, MeterRegistry meterRegistry) {
+        int maxEntries = spotifyProperties.getConditionalCache().getMaxEntries();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.notModified = meterRegistry.counter("spotify.conditional.responses", "status", "not_modified");
+        this.modified = meterRegistry.counter("spotify.conditional.responses", "status", "modified");
+        this.bytesAvoided = meterRegistry.counter("spotify.conditional.bytes_avoided");
+    }
+
+    public synchronized Optional<Entry> get(UUID userId, String url) {
+        return Optional.ofNullable(entries.get(new Key(userId, url)));
+    }
+
+    /**
+     * @param bodyLength taille du corps reçu en octets ({@code Content-Length} ou UTF-8), comptée dans
+     *                   {@code bytes_avoided} à chaque 304
+     */
+    public synchronized void put(UUID userId, String url, String etag, Object body, int bodyLength) {
+        if (etag == null || etag.isBlank()) {
+            entries.remove(new Key(userId, url));
+            return;
+        }
+        entries.put(new Key(userId, url), new Entry(etag, body, bodyLength));
+    }
+
+    public synchronized void evictUser(UUID userId) {
+        entries.keySet().removeIf(key -> key.userId().equals(userId));
+    }
+
+    void recordNotModified(Entry entry) {
+        notModified.increment();
+        bytesAvoided.increment(entry.bodyLength());
+    }
+
+    void recordModified() {
+        modified.increment();
+    }
+
+    private record Key(UUID userId, String url) {}
+
+    public record Entry(String etag, Object body, int bodyLength) {}
+}
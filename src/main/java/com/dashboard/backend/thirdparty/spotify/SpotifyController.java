@@ -51,8 +51,9 @@ public class SpotifyController {
             throw new IllegalArgumentException("Paramètre timeRange invalide. Valeurs autorisées: short_term, medium_term, long_term");
         }
 
-        if (limit < 1 || limit > 50) {
-            throw new IllegalArgumentException("Paramètre limit invalide. Doit être entre 1 et 50");
+        // Les classements sont servis depuis une page en cache de FULL_PAGE_SIZE éléments au plus
+        if (limit < 1 || limit > SpotifyCacheConfig.FULL_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
         }
 
         Optional<SpotifyTopArtistsDto> topArtistsOpt = spotifyService.getTopArtistsFromRequest(request, timeRange, limit);
@@ -84,6 +85,10 @@ public class SpotifyController {
             @RequestParam(defaultValue = "medium_term") String timeRange,
             @RequestParam(defaultValue = "20") int limit) {
 
+        if (limit < 1 || limit > SpotifyCacheConfig.FULL_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+
         // MÊME PATTERN que top-artists - délégation pure
         Optional<SpotifyTopTracksDto> topTracksOpt = spotifyService.getTopTracksFromRequest(request, timeRange, limit);
         return ResponseEntity.ok(topTracksOpt.orElseThrow(() ->
@@ -7,11 +7,21 @@ import com.dashboard.backend.thirdparty.spotify.dto.SpotifyTopArtistsDto;
 import com.dashboard.backend.thirdparty.spotify.dto.SpotifyTopTracksDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
 
+import static com.dashboard.backend.thirdparty.spotify.SpotifyCacheConfig.FULL_PAGE_SIZE;
+
+/**
+ * Données Spotify mises en cache (voir {@link SpotifyCacheConfig}).
+ *
+ * Les classements sont récupérés une seule fois en page complète par utilisateur et par période,
+ * puis tronqués à la limite demandée (1 à {@link SpotifyCacheConfig#FULL_PAGE_SIZE}).
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -19,24 +29,35 @@ public class SpotifyDataService {
 
     private final SpotifyClient spotifyClient;
     private final SpotifyAccountService spotifyAccountService;
+    private final CacheManager cacheManager;
 
-    @Cacheable(value = "spotifyProfile", key = "#user.id.toString()")
+    @Cacheable(value = SpotifyCacheConfig.SPOTIFY_PROFILE, key = "#user.id.toString()", sync = true)
     public Optional<SpotifyProfileDto> getCurrentProfile(User user) {
         log.debug("CACHE MISS: Récupération du profil Spotify pour l'utilisateur: {}", user.getEmail());
         return spotifyClient.getCurrentProfile(user);
     }
 
-    @Cacheable(value = "spotifyTopArtists", key = "#user.id.toString() + '-' + #timeRange + '-' + #limit")
     public Optional<SpotifyTopArtistsDto> getTopArtists(User user, String timeRange, int limit) {
-        log.debug("CACHE MISS: Récupération des top artistes pour l'utilisateur: {}", user.getEmail());
-        if (!spotifyAccountService.hasSpotifyLinked(user)) { return Optional.empty(); }
-        return spotifyClient.getTopArtists(user, timeRange, limit);
+        SpotifyTopArtistsDto page = cache(SpotifyCacheConfig.SPOTIFY_TOP_ARTISTS)
+                .get(SpotifyCacheConfig.spotifyTopKey(user.getId(), timeRange), () -> {
+                    log.debug("CACHE MISS: Récupération des top artistes pour l'utilisateur: {}", user.getEmail());
+                    if (!spotifyAccountService.hasSpotifyLinked(user)) { return null; }
+                    return spotifyClient.getTopArtists(user, timeRange, FULL_PAGE_SIZE).orElse(null);
+                });
+        return Optional.ofNullable(page).map(p -> p.withLimit(limit));
     }
 
-    @Cacheable(value = "spotifyTopTracks", key = "#user.id.toString() + '-' + #timeRange + '-' + #limit")
     public Optional<SpotifyTopTracksDto> getTopTracks(User user, String timeRange, int limit) {
-        log.debug("CACHE MISS: Récupération des top tracks pour l'utilisateur: {}", user.getEmail());
-        if (!spotifyAccountService.hasSpotifyLinked(user)) { return Optional.empty(); }
-        return spotifyClient.getTopTracks(user, timeRange, limit);
+        SpotifyTopTracksDto page = cache(SpotifyCacheConfig.SPOTIFY_TOP_TRACKS)
+                .get(SpotifyCacheConfig.spotifyTopKey(user.getId(), timeRange), () -> {
+                    log.debug("CACHE MISS: Récupération des top tracks pour l'utilisateur: {}", user.getEmail());
+                    if (!spotifyAccountService.hasSpotifyLinked(user)) { return null; }
+                    return spotifyClient.getTopTracks(user, timeRange, FULL_PAGE_SIZE).orElse(null);
+                });
+        return Optional.ofNullable(page).map(p -> p.withLimit(limit));
+    }
+
+    private Cache cache(String name) {
+        return cacheManager.getCache(name);
     }
-}
\ No newline at end of file
+}
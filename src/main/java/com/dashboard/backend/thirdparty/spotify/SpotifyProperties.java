@@ -3,10 +3,88 @@ package com.dashboard.backend.thirdparty.spotify;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+
 @ConfigurationProperties(prefix = "spotify")
 @Data
 public class SpotifyProperties {
     private String clientId;
     private String clientSecret;
     private String redirectUri;
+    private TokenRefresh tokenRefresh = new TokenRefresh();
+    private Hedging hedging = new Hedging();
+    private ConditionalCache conditionalCache = new ConditionalCache();
+    private Concurrency concurrency = new Concurrency();
+    private Sync sync = new Sync();
+
+    /**
+     * Planification du rafraîchissement des tokens (voir {@link SpotifyTokenScheduler}).
+     */
+    @Data
+    public static class TokenRefresh {
+        // Délai avant l'expiration du token auquel le rafraîchissement est déclenché
+        private Duration margin = Duration.ofMinutes(5);
+        // Nombre maximum de rafraîchissements exécutés en parallèle
+        private int parallelism = 4;
+        // Délai avant une nouvelle tentative après un échec, doublé à chaque échec
+        private Duration retryDelay = Duration.ofMinutes(1);
+        private Duration maxRetryDelay = Duration.ofMinutes(30);
+    }
+
+    /**
+     * Requêtes de secours pour les lectures sensibles à la latence (voir {@link SpotifyRequestHedger}).
+     */
+    @Data
+    public static class Hedging {
+        // Désactivé par défaut : chaque requête de secours est une lecture de plus chez Spotify
+        private boolean enabled = false;
+        // Percentile de latence observée au-delà duquel une seconde tentative est envoyée
+        private double percentile = 0.95;
+        // Nombre de latences conservées par endpoint pour estimer le percentile
+        private int window = 200;
+        // Nombre minimum de mesures avant de se fier au percentile observé
+        private int minSamples = 20;
+        // Délai utilisé tant que l'endpoint n'a pas assez de mesures
+        private Duration initialDelay = Duration.ofMillis(500);
+        // Délai minimum, pour ne pas doubler des requêtes déjà rapides
+        private Duration minDelay = Duration.ofMillis(50);
+        // Part maximale de requêtes supplémentaires (0.1 = au plus une requête de secours pour 10 requêtes)
+        private double budgetRatio = 0.1;
+    }
+
+    /**
+     * Cache des réponses conditionnelles (voir {@link SpotifyConditionalCache}).
+     */
+    @Data
+    public static class ConditionalCache {
+        // Nombre maximum de réponses conservées, tous utilisateurs confondus
+        private int maxEntries = 1000;
+    }
+
+    /**
+     * Limite adaptative des appels simultanés (voir {@link SpotifyConcurrencyLimiter}).
+     */
+    @Data
+    public static class Concurrency {
+        private int initialLimit = 8;
+        private int minLimit = 1;
+        private int maxLimit = 64;
+        // Facteur appliqué à la limite sur un 429, un 5xx, une erreur réseau ou un pic de latence
+        private double backoffRatio = 0.5;
+        // Latence récente au-delà de laquelle on considère un pic (multiple de la latence de référence)
+        private double latencyTolerance = 2.0;
+        // Délai minimum entre deux réductions, pour qu'une rafale d'erreurs ne compte qu'une fois
+        private Duration decreaseCooldown = Duration.ofSeconds(1);
+        // Attente maximale d'un emplacement avant d'abandonner l'appel
+        private Duration acquireTimeout = Duration.ofSeconds(10);
+    }
+
+    /**
+     * Synchronisation périodique de l'historique d'écoute.
+     */
+    @Data
+    public static class Sync {
+        // Nombre d'utilisateurs synchronisés en parallèle ; le débit réel est réglé par la limite adaptative
+        private int maxConcurrentUsers = 8;
+    }
 }
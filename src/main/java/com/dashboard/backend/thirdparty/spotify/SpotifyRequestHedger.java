@@ -0,0 +1,197 @@
+package com.dashboard.backend.thirdparty.spotify;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envoie une seconde tentative pour une requête GET idempotente quand la première
+ * n'a pas répondu au bout du p95 observé pour cet endpoint. La première réponse l'emporte,
+ * l'autre tentative est annulée.
+ *
+ * Les tentatives s'exécutent sur des threads virtuels : l'annulation interrompt le thread,
+ * ce qui ferme la socket bloquée en lecture. Un budget (seau à jetons alimenté à chaque requête)
+ * plafonne la charge supplémentaire envoyée à Spotify.
+ * Chaque tentative passe par {@link SpotifyConcurrencyLimiter} ; le percentile ne mesure que l'appel
+ * lui-même, une fois l'emplacement obtenu, sans l'attente dans la file de la limite.
+ */
+@Component
+@Slf4j
+public class SpotifyRequestHedger {
+
+    private static final double MAX_BUDGET_TOKENS = 10.0;
+
+    private final SpotifyProperties.Hedging config;
+    private final MeterRegistry meterRegistry;
+    private final SpotifyConcurrencyLimiter spotifyConcurrencyLimiter;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("spotify-hedge-", 0).factory());
+
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private double budgetTokens = 1.0;
+
+    public SpotifyRequestHedger(SpotifyProperties spotifyProperties, MeterRegistry meterRegistry,
+                                SpotifyConcurrencyLimiter spotifyConcurrencyLimiter) {
+        this.config = spotifyProperties.getHedging();
+        this.meterRegistry = meterRegistry;
+        this.spotifyConcurrencyLimiter = spotifyConcurrencyLimiter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Exécute {@code attempt} sous la limite de concurrence, en le doublant si la réponse tarde.
+     * L'appel doit être idempotent : il peut être exécuté deux fois.
+     */
+    public <T> T execute(String endpoint, Callable<T> attempt) throws Exception {
+        if (!config.isEnabled()) {
+            return spotifyConcurrencyLimiter.execute(endpoint, attempt);
+        }
+
+        counter("spotify.hedge.requests", endpoint).increment();
+        depositBudget();
+
+        ExecutorCompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        Future<T> primary = completion.submit(timed(endpoint, attempt));
+
+        Duration delay = hedgeDelay(endpoint);
+        Future<T> first = completion.poll(delay.toNanos(), TimeUnit.NANOSECONDS);
+        if (first != null) {
+            return await(first);
+        }
+
+        // Doubler une requête quand la limite de concurrence est saturée ne ferait qu'aggraver la file
+        if (!spotifyConcurrencyLimiter.hasSpareCapacity()) {
+            counter("spotify.hedge.skipped_saturated", endpoint).increment();
+            return await(primary);
+        }
+
+        if (!withdrawBudget()) {
+            counter("spotify.hedge.budget_exhausted", endpoint).increment();
+            return await(primary);
+        }
+
+        log.debug("Pas de réponse de {} après {} ms, envoi d'une requête de secours", endpoint, delay.toMillis());
+        counter("spotify.hedge.sent", endpoint).increment();
+        Future<T> hedge = completion.submit(timed(endpoint, attempt));
+
+        try {
+            Future<T> winner = completion.take();
+            Future<T> loser = winner == primary ? hedge : primary;
+            try {
+                T result = winner.get();
+                loser.cancel(true);
+                if (winner == hedge) {
+                    counter("spotify.hedge.wins", endpoint).increment();
+                }
+                return result;
+            } catch (ExecutionException e) {
+                // La première tentative terminée a échoué : on se rabat sur l'autre
+                T result = await(loser);
+                if (loser == hedge) {
+                    counter("spotify.hedge.wins", endpoint).increment();
+                }
+                return result;
+            }
+        } catch (InterruptedException e) {
+            primary.cancel(true);
+            hedge.cancel(true);
+            throw e;
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private <T> Callable<T> timed(String endpoint, Callable<T> attempt) {
+        return () -> spotifyConcurrencyLimiter.execute(endpoint, () -> {
+            long start = System.nanoTime();
+            T result = attempt.call();
+            latencies.computeIfAbsent(endpoint, k -> new LatencyWindow(config.getWindow()))
+                    .record(System.nanoTime() - start);
+            return result;
+        });
+    }
+
+    private Duration hedgeDelay(String endpoint) {
+        LatencyWindow window = latencies.get(endpoint);
+        if (window == null) {
+            return config.getInitialDelay();
+        }
+        long percentile = window.percentile(config.getPercentile(), config.getMinSamples());
+        if (percentile < 0) {
+            return config.getInitialDelay();
+        }
+        return Duration.ofNanos(Math.max(percentile, config.getMinDelay().toNanos()));
+    }
+
+    private synchronized void depositBudget() {
+        budgetTokens = Math.min(MAX_BUDGET_TOKENS, budgetTokens + config.getBudgetRatio());
+    }
+
+    private synchronized boolean withdrawBudget() {
+        if (budgetTokens < 1.0) {
+            return false;
+        }
+        budgetTokens -= 1.0;
+        return true;
+    }
+
+    private Counter counter(String name, String endpoint) {
+        return meterRegistry.counter(name, "endpoint", endpoint);
+    }
+
+    /**
+     * Dernières latences d'un endpoint (tampon circulaire).
+     */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        /**
+         * @return le percentile demandé en nanosecondes, ou -1 s'il n'y a pas assez de mesures
+         */
+        synchronized long percentile(double percentile, int minSamples) {
+            if (size < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * size) - 1;
+            return sorted[Math.max(0, Math.min(index, size - 1))];
+        }
+    }
+}
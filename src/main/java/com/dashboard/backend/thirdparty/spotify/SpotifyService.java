@@ -129,7 +129,7 @@ public class SpotifyService {
             return false;
         }
 
-        spotifyAccountService.unlinkSpotifyAccount(user);
+        spotifyClient.revokeSpotifyAccess(user);
         log.info("Compte Spotify dissocié avec succès pour l'utilisateur: {}", email);
         return true;
     }
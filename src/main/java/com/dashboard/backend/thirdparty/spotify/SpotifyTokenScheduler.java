@@ -3,48 +3,193 @@ package com.dashboard.backend.thirdparty.spotify;
 import com.dashboard.backend.User.model.SpotifyAccount;
 import com.dashboard.backend.User.repository.SpotifyAccountRepository;
 import com.dashboard.backend.service.SpotifyAccountService;
-import lombok.RequiredArgsConstructor;
+import com.dashboard.backend.service.event.SpotifyTokensUpdatedEvent;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Rafraîchit chaque token Spotify peu avant son expiration.
+ *
+ * Chaque compte a une échéance armée dans une {@link DelayQueue} à {@code tokenExpiry - margin}.
+ * Un thread de dispatch consomme les échéances arrivées à terme et les confie à un pool borné,
+ * si bien que la charge de rafraîchissement suit les expirations au lieu d'arriver par vagues.
+ * L'échéance est réarmée après chaque rafraîchissement, et avec un délai croissant en cas d'échec.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class SpotifyTokenScheduler {
 
     private final SpotifyAccountRepository spotifyAccountRepository;
     private final SpotifyAccountService spotifyAccountService;
+    private final SpotifyProperties.TokenRefresh config;
 
-    // Exécute toutes les 30 minutes (1800000 millisecondes)
-    @Scheduled(fixedRate = 1800000)
-    public void refreshExpiringSpotifyTokens() {
-        log.info("▶️ Démarrage de la tâche de rafraîchissement des tokens Spotify...");
+    private final DelayQueue<RefreshDeadline> deadlines = new DelayQueue<>();
+    // Échéance courante par compte : une échéance sortie de la file qui n'est plus la courante est ignorée
+    private final ConcurrentHashMap<UUID, RefreshDeadline> armed = new ConcurrentHashMap<>();
 
-        // On cherche les tokens qui vont expirer dans les 15 prochaines minutes (900 secondes)
-        Instant expiryThreshold = Instant.now().plusSeconds(900);
-        List<SpotifyAccount> accountsToRefresh = spotifyAccountRepository.findByTokenExpiryBefore(expiryThreshold);
+    private ExecutorService refreshExecutor;
+    private Thread dispatcher;
 
-        if (accountsToRefresh.isEmpty()) {
-            log.info("✅ Aucun token Spotify à rafraîchir.");
-            return;
+    public SpotifyTokenScheduler(SpotifyAccountRepository spotifyAccountRepository,
+                                 SpotifyAccountService spotifyAccountService,
+                                 SpotifyProperties spotifyProperties) {
+        this.spotifyAccountRepository = spotifyAccountRepository;
+        this.spotifyAccountService = spotifyAccountService;
+        this.config = spotifyProperties.getTokenRefresh();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        refreshExecutor = Executors.newFixedThreadPool(config.getParallelism(),
+                Thread.ofPlatform().name("spotify-token-refresh-", 0).daemon(true).factory());
+        dispatcher = Thread.ofPlatform().name("spotify-token-dispatcher").daemon(true).start(this::dispatchLoop);
+
+        int count = armAccounts(spotifyAccountRepository.findAll());
+        log.info("▶️ Planificateur de rafraîchissement des tokens Spotify démarré ({} comptes armés).", count);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    @EventListener
+    public void onTokensUpdated(SpotifyTokensUpdatedEvent event) {
+        arm(event.spotifyAccountId(), event.tokenExpiry(), 0);
+    }
+
+    /**
+     * Filet de sécurité : réarme les comptes inconnus de ce nœud (liés sur une autre instance)
+     * ou dont l'expiration a changé sans passer par ce nœud.
+     */
+    @Scheduled(initialDelay = 1800000, fixedDelay = 1800000)
+    public void reconcile() {
+        int count = armAccounts(spotifyAccountRepository.findAll());
+        if (count > 0) {
+            log.info("🔁 {} compte(s) Spotify réarmé(s) lors de la réconciliation des échéances.", count);
+        }
+    }
+
+    private int armAccounts(List<SpotifyAccount> accounts) {
+        int count = 0;
+        for (SpotifyAccount account : accounts) {
+            if (account.getRefreshToken() == null || account.getRefreshToken().isEmpty()) {
+                continue;
+            }
+            RefreshDeadline current = armed.get(account.getId());
+            if (current == null || (current.attempt() == 0 && !Objects.equals(current.tokenExpiry(), account.getTokenExpiry()))) {
+                arm(account.getId(), account.getTokenExpiry(), 0);
+                count++;
+            }
         }
+        return count;
+    }
 
-        log.info("Found {} comptes Spotify avec des tokens expirant bientôt.", accountsToRefresh.size());
+    private void arm(UUID accountId, Instant tokenExpiry, int attempt) {
+        Instant fireAt = tokenExpiry == null ? Instant.now() : tokenExpiry.minus(config.getMargin());
+        arm(new RefreshDeadline(accountId, tokenExpiry, fireAt, attempt));
+    }
+
+    private void arm(RefreshDeadline deadline) {
+        armed.put(deadline.accountId(), deadline);
+        deadlines.put(deadline);
+        log.debug("Rafraîchissement du compte Spotify ID: {} planifié pour {}", deadline.accountId(), deadline.fireAt());
+    }
 
-        int successCount = 0;
-        for (SpotifyAccount account : accountsToRefresh) {
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
             try {
-                // On utilise la méthode centralisée
-                spotifyAccountService.refreshAccessToken(account);
-                successCount++;
+                RefreshDeadline deadline = deadlines.take();
+                if (armed.get(deadline.accountId()) == deadline) {
+                    refreshExecutor.execute(() -> refresh(deadline));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             } catch (Exception e) {
-                log.error("❌ Échec du rafraîchissement programmé pour le compte Spotify ID: {}", account.getId(), e);
+                log.error("❌ Erreur dans la boucle de dispatch des rafraîchissements de tokens", e);
+            }
+        }
+    }
+
+    private void refresh(RefreshDeadline deadline) {
+        UUID accountId = deadline.accountId();
+        try {
+            Optional<SpotifyAccount> accountOpt = spotifyAccountRepository.findById(accountId);
+            if (accountOpt.isEmpty() || accountOpt.get().getRefreshToken() == null) {
+                log.debug("Compte Spotify ID: {} dissocié, échéance abandonnée", accountId);
+                armed.remove(accountId, deadline);
+                return;
+            }
+
+            SpotifyAccount account = accountOpt.get();
+
+            // Déjà rafraîchi entre-temps (à la demande ou par une autre instance) : on se cale sur la nouvelle échéance
+            Instant expiry = account.getTokenExpiry();
+            if (expiry != null && expiry.minus(config.getMargin()).isAfter(Instant.now())) {
+                arm(accountId, expiry, 0);
+                return;
+            }
+
+            // En cas de succès, l'échéance suivante est armée par SpotifyTokensUpdatedEvent
+            if (spotifyAccountService.refreshAccessToken(account).isPresent()) {
+                return;
+            }
+
+            retryLater(deadline);
+        } catch (Exception e) {
+            log.error("❌ Échec du rafraîchissement programmé pour le compte Spotify ID: {}", accountId, e);
+            retryLater(deadline);
+        }
+    }
+
+    private void retryLater(RefreshDeadline deadline) {
+        int attempt = deadline.attempt() + 1;
+        long factor = 1L << Math.min(attempt - 1, 10);
+        Duration delay = config.getRetryDelay().multipliedBy(factor);
+        if (delay.compareTo(config.getMaxRetryDelay()) > 0) {
+            delay = config.getMaxRetryDelay();
+        }
+        log.warn("Nouvelle tentative de rafraîchissement pour le compte Spotify ID: {} dans {} (tentative {})",
+                deadline.accountId(), delay, attempt);
+        arm(new RefreshDeadline(deadline.accountId(), deadline.tokenExpiry(), Instant.now().plus(delay), attempt));
+    }
+
+    private record RefreshDeadline(UUID accountId, Instant tokenExpiry, Instant fireAt, int attempt) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Duration.between(Instant.now(), fireAt));
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            // Deux appels à getDelay liraient l'horloge à deux instants différents
+            if (other instanceof RefreshDeadline deadline) {
+                return fireAt.compareTo(deadline.fireAt());
             }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
         }
-        log.info("✅ Tâche de rafraîchissement terminée. {}/{} tokens rafraîchis.", successCount, accountsToRefresh.size());
     }
-}
\ No newline at end of file
+}
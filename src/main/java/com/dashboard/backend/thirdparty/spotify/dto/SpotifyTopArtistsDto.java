@@ -14,6 +14,18 @@ public record SpotifyTopArtistsDto(
         int total
 ) {
 
+    /**
+     * Les {@code limit} premiers éléments de la page, pour servir une limite plus petite
+     * à partir d'une page déjà récupérée. Le champ {@code limit} donne le nombre d'éléments renvoyés.
+     */
+    public SpotifyTopArtistsDto withLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limite invalide : " + limit);
+        }
+        List<SpotifyArtistDto> kept = limit >= items.size() ? items : List.copyOf(items.subList(0, limit));
+        return new SpotifyTopArtistsDto(href, kept, kept.size(), next, offset, previous, total);
+    }
+
     public TopArtistDto getTopArtistDto() {
         return new TopArtistDto() {
             @Override
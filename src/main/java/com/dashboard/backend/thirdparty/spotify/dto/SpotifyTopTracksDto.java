@@ -10,4 +10,17 @@ public record SpotifyTopTracksDto(
         int offset,
         String previous,
         int total
-) {}
\ No newline at end of file
+) {
+
+    /**
+     * Les {@code limit} premiers éléments de la page, pour servir une limite plus petite
+     * à partir d'une page déjà récupérée. Le champ {@code limit} donne le nombre d'éléments renvoyés.
+     */
+    public SpotifyTopTracksDto withLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limite invalide : " + limit);
+        }
+        List<SpotifyTrackDto> kept = limit >= items.size() ? items : List.copyOf(items.subList(0, limit));
+        return new SpotifyTopTracksDto(href, kept, kept.size(), next, offset, previous, total);
+    }
+}
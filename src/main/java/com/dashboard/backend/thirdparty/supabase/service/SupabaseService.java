@@ -1,5 +1,6 @@
 package com.dashboard.backend.thirdparty.supabase.service;
 
+import com.dashboard.backend.config.datasource.ReadReplica;
 import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
@@ -17,6 +18,7 @@ public class SupabaseService {
 
     private final JdbcTemplate jdbc;
 
+    @ReadReplica
     public List<String> queryRelevantDocuments(UUID userId, float[] embedding) {
         String sql = """
     SELECT content
@@ -0,0 +1,43 @@
+-- =================================================================
+-- V13: Agrégats quotidiens des écoutes par utilisateur
+-- =================================================================
+-- Les classements (top morceaux / top artistes) lisent ces tables au lieu de
+-- parcourir listening_history : le coût dépend du nombre d'éléments distincts
+-- sur la période, plus du nombre total d'écoutes.
+-- Le jour est calculé en UTC. ms_played est estimé à partir de la durée du morceau,
+-- l'API "recently-played" ne renvoyant pas la durée réellement écoutée.
+
+CREATE TABLE IF NOT EXISTS user_track_daily (
+    user_id   UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    day       DATE NOT NULL,
+    track_id  VARCHAR(255) NOT NULL REFERENCES tracks(id) ON DELETE CASCADE,
+    plays     INT NOT NULL,
+    ms_played BIGINT NOT NULL,
+    PRIMARY KEY (user_id, day, track_id)
+);
+
+CREATE TABLE IF NOT EXISTS user_artist_daily (
+    user_id   UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    day       DATE NOT NULL,
+    artist_id VARCHAR(255) NOT NULL REFERENCES artists(id) ON DELETE CASCADE,
+    plays     INT NOT NULL,
+    ms_played BIGINT NOT NULL,
+    PRIMARY KEY (user_id, day, artist_id)
+);
+
+-- Initialisation à partir de l'historique existant
+INSERT INTO user_track_daily (user_id, day, track_id, plays, ms_played)
+SELECT lh.user_id,
+       (lh.played_at AT TIME ZONE 'UTC')::date,
+       lh.track_id,
+       COUNT(*),
+       SUM(t.duration_ms)
+FROM listening_history lh
+JOIN tracks t ON t.id = lh.track_id
+GROUP BY lh.user_id, (lh.played_at AT TIME ZONE 'UTC')::date, lh.track_id;
+
+INSERT INTO user_artist_daily (user_id, day, artist_id, plays, ms_played)
+SELECT utd.user_id, utd.day, ta.artist_id, SUM(utd.plays), SUM(utd.ms_played)
+FROM user_track_daily utd
+JOIN track_artists ta ON ta.track_id = utd.track_id
+GROUP BY utd.user_id, utd.day, ta.artist_id;
@@ -0,0 +1,80 @@
+-- =================================================================
+-- V14: Partitionnement mensuel de listening_history sur played_at
+-- =================================================================
+-- Les requêtes bornées dans le temps ne lisent plus que les partitions des mois concernés,
+-- et la purge d'un mois complet devient un DROP/DETACH de partition au lieu d'un DELETE massif.
+-- Les partitions sont mensuelles, bornées en UTC, nommées listening_history_AAAA_MM.
+-- Une partition par défaut reçoit les écoutes hors des partitions existantes ; elle doit
+-- rester vide en temps normal (le planificateur crée les partitions à l'avance).
+
+-- 1. Mettre l'ancienne table de côté (les noms d'index/contraintes sont globaux au schéma)
+ALTER TABLE listening_history RENAME TO listening_history_legacy;
+ALTER TABLE listening_history_legacy RENAME CONSTRAINT listening_history_pkey TO listening_history_legacy_pkey;
+
+-- 2. Nouvelle table partitionnée. La clé de partition doit faire partie de la clé primaire.
+CREATE TABLE listening_history (
+    id        UUID NOT NULL DEFAULT gen_random_uuid(),
+    user_id   UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    track_id  VARCHAR(255) NOT NULL REFERENCES tracks(id) ON DELETE CASCADE,
+    played_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id, played_at)
+) PARTITION BY RANGE (played_at);
+
+CREATE TABLE listening_history_default PARTITION OF listening_history DEFAULT;
+
+-- 3. Création idempotente de la partition d'un mois.
+--    Les éventuelles lignes du mois présentes dans la partition par défaut y sont déplacées,
+--    sans quoi l'attachement échouerait.
+CREATE OR REPLACE FUNCTION ensure_listening_history_partition(p_month DATE)
+RETURNS BOOLEAN
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    v_start DATE := date_trunc('month', p_month)::date;
+    v_from  TIMESTAMPTZ := v_start::timestamp AT TIME ZONE 'UTC';
+    v_to    TIMESTAMPTZ := (v_start + INTERVAL '1 month')::timestamp AT TIME ZONE 'UTC';
+    v_name  TEXT := 'listening_history_' || to_char(v_start, 'YYYY_MM');
+BEGIN
+    IF to_regclass(v_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE listening_history INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', v_name);
+    EXECUTE format('INSERT INTO %I SELECT * FROM listening_history_default WHERE played_at >= %L AND played_at < %L',
+                   v_name, v_from, v_to);
+    EXECUTE format('DELETE FROM listening_history_default WHERE played_at >= %L AND played_at < %L', v_from, v_to);
+    EXECUTE format('ALTER TABLE listening_history ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   v_name, v_from, v_to);
+    RETURN TRUE;
+END;
+$$;
+
+-- 4. Partitions pour tout l'historique existant et les trois prochains mois
+DO $$
+DECLARE
+    v_month DATE;
+    v_last  DATE := date_trunc('month', now() AT TIME ZONE 'UTC' + INTERVAL '3 months')::date;
+BEGIN
+    SELECT COALESCE(date_trunc('month', MIN(played_at) AT TIME ZONE 'UTC')::date,
+                    date_trunc('month', now() AT TIME ZONE 'UTC')::date)
+    INTO v_month
+    FROM listening_history_legacy;
+
+    WHILE v_month <= v_last LOOP
+        PERFORM ensure_listening_history_partition(v_month);
+        v_month := (v_month + INTERVAL '1 month')::date;
+    END LOOP;
+END;
+$$;
+
+-- 5. Copie des données puis suppression de l'ancienne table
+INSERT INTO listening_history (id, user_id, track_id, played_at)
+SELECT id, user_id, track_id, played_at
+FROM listening_history_legacy;
+
+DROP TABLE listening_history_legacy;
+
+-- 6. Index (créés sur chaque partition). L'index unique (user_id, played_at) sert aussi
+--    aux recherches par utilisateur, l'index user_id seul n'est donc pas recréé.
+CREATE UNIQUE INDEX IF NOT EXISTS idx_unique_listening_event ON listening_history (user_id, played_at);
+CREATE INDEX IF NOT EXISTS idx_listening_history_played_at ON listening_history (played_at);
@@ -0,0 +1,29 @@
+-- =================================================================
+-- V15: Index couvrants pour les requêtes d'analyse
+-- =================================================================
+
+-- listening_history : l'index unique (user_id, played_at) inclut désormais track_id,
+-- ce qui permet des parcours d'index seuls pour "les écoutes d'un utilisateur sur une période".
+CREATE UNIQUE INDEX IF NOT EXISTS idx_unique_listening_event_cover
+    ON listening_history (user_id, played_at) INCLUDE (track_id);
+DROP INDEX IF EXISTS idx_unique_listening_event;
+ALTER INDEX idx_unique_listening_event_cover RENAME TO idx_unique_listening_event;
+
+-- listening_history : BRIN sur played_at pour les parcours globaux par période.
+-- Les écoutes arrivent à peu près dans l'ordre chronologique, un BRIN suffit et coûte
+-- quelques pages au lieu d'un B-tree complet sur chaque partition.
+CREATE INDEX IF NOT EXISTS idx_listening_history_played_at_brin
+    ON listening_history USING BRIN (played_at);
+DROP INDEX IF EXISTS idx_listening_history_played_at;
+
+-- track_artists : la clé primaire (track_id, artist_id) couvre le sens morceau -> artistes.
+-- Le sens inverse (artiste -> morceaux) n'avait qu'un index sur artist_id seul.
+CREATE INDEX IF NOT EXISTS idx_track_artists_artist_track
+    ON track_artists (artist_id, track_id);
+DROP INDEX IF EXISTS idx_track_artists_artist_id;
+
+-- Agrégats quotidiens : parcours d'index seuls pour les classements sur une période
+CREATE INDEX IF NOT EXISTS idx_user_track_daily_cover
+    ON user_track_daily (user_id, day) INCLUDE (track_id, plays, ms_played);
+CREATE INDEX IF NOT EXISTS idx_user_artist_daily_cover
+    ON user_artist_daily (user_id, day) INCLUDE (artist_id, plays, ms_played);
@@ -0,0 +1,160 @@
+-- =================================================================
+-- V16: Clés de substitution entières pour tracks / artists
+-- =================================================================
+-- Les identifiants Spotify (VARCHAR de 22 caractères) restent la clé naturelle, unique,
+-- dans la colonne spotify_id. Les tables de faits, de jointure et d'agrégats référencent
+-- désormais un INTEGER : lignes et index plus compacts, jointures moins coûteuses.
+-- listening_history passe d'un UUID aléatoire à un BIGINT issu d'une séquence, croissant
+-- dans le temps : les insertions se font en fin d'index au lieu de se disperser dans le B-tree.
+
+-- -----------------------------------------------------------------
+-- 1. Nouvelles clés sur artists et tracks. La colonne id existante (ID Spotify) est renommée :
+--    les clés étrangères qui la référencent suivent le renommage.
+-- -----------------------------------------------------------------
+ALTER TABLE artists RENAME COLUMN id TO spotify_id;
+ALTER TABLE artists ADD COLUMN id INTEGER GENERATED BY DEFAULT AS IDENTITY;
+
+ALTER TABLE tracks RENAME COLUMN id TO spotify_id;
+ALTER TABLE tracks ADD COLUMN id INTEGER GENERATED BY DEFAULT AS IDENTITY;
+
+-- -----------------------------------------------------------------
+-- 2. Tables de jointure et d'agrégats : colonne entière calculée par jointure sur l'ID Spotify,
+--    puis suppression de l'ancienne colonne (et de sa clé étrangère).
+-- -----------------------------------------------------------------
+ALTER TABLE track_artists ADD COLUMN track_ref INTEGER, ADD COLUMN artist_ref INTEGER;
+UPDATE track_artists ta SET track_ref = t.id FROM tracks t WHERE t.spotify_id = ta.track_id;
+UPDATE track_artists ta SET artist_ref = a.id FROM artists a WHERE a.spotify_id = ta.artist_id;
+ALTER TABLE track_artists DROP COLUMN track_id, DROP COLUMN artist_id;
+ALTER TABLE track_artists RENAME COLUMN track_ref TO track_id;
+ALTER TABLE track_artists RENAME COLUMN artist_ref TO artist_id;
+
+ALTER TABLE album_artists ADD COLUMN artist_ref INTEGER;
+UPDATE album_artists aa SET artist_ref = a.id FROM artists a WHERE a.spotify_id = aa.artist_id;
+ALTER TABLE album_artists DROP COLUMN artist_id;
+ALTER TABLE album_artists RENAME COLUMN artist_ref TO artist_id;
+
+ALTER TABLE track_genres ADD COLUMN track_ref INTEGER;
+UPDATE track_genres tg SET track_ref = t.id FROM tracks t WHERE t.spotify_id = tg.track_id;
+ALTER TABLE track_genres DROP COLUMN track_id;
+ALTER TABLE track_genres RENAME COLUMN track_ref TO track_id;
+
+ALTER TABLE user_track_daily ADD COLUMN track_ref INTEGER;
+UPDATE user_track_daily d SET track_ref = t.id FROM tracks t WHERE t.spotify_id = d.track_id;
+ALTER TABLE user_track_daily DROP COLUMN track_id;
+ALTER TABLE user_track_daily RENAME COLUMN track_ref TO track_id;
+
+ALTER TABLE user_artist_daily ADD COLUMN artist_ref INTEGER;
+UPDATE user_artist_daily d SET artist_ref = a.id FROM artists a WHERE a.spotify_id = d.artist_id;
+ALTER TABLE user_artist_daily DROP COLUMN artist_id;
+ALTER TABLE user_artist_daily RENAME COLUMN artist_ref TO artist_id;
+
+-- -----------------------------------------------------------------
+-- 3. listening_history : copie ordonnée par played_at dans une table temporaire,
+--    puis reconstruction de la table partitionnée avec les nouvelles clés.
+-- -----------------------------------------------------------------
+CREATE TEMP TABLE listening_history_copy AS
+SELECT ROW_NUMBER() OVER (ORDER BY lh.played_at, lh.id) AS id,
+       lh.user_id,
+       t.id AS track_id,
+       lh.played_at
+FROM listening_history lh
+JOIN tracks t ON t.spotify_id = lh.track_id;
+
+DROP TABLE listening_history CASCADE;
+
+-- -----------------------------------------------------------------
+-- 4. Bascule des clés primaires de tracks / artists (plus aucune clé étrangère ne les référence)
+-- -----------------------------------------------------------------
+ALTER TABLE tracks DROP CONSTRAINT tracks_pkey;
+ALTER TABLE tracks ADD PRIMARY KEY (id);
+ALTER TABLE tracks ALTER COLUMN spotify_id SET NOT NULL;
+ALTER TABLE tracks ADD CONSTRAINT uk_tracks_spotify_id UNIQUE (spotify_id);
+
+ALTER TABLE artists DROP CONSTRAINT artists_pkey;
+ALTER TABLE artists ADD PRIMARY KEY (id);
+ALTER TABLE artists ALTER COLUMN spotify_id SET NOT NULL;
+ALTER TABLE artists ADD CONSTRAINT uk_artists_spotify_id UNIQUE (spotify_id);
+
+-- -----------------------------------------------------------------
+-- 5. Contraintes des tables de jointure et d'agrégats
+-- -----------------------------------------------------------------
+ALTER TABLE track_artists
+    ALTER COLUMN track_id SET NOT NULL,
+    ALTER COLUMN artist_id SET NOT NULL,
+    ADD PRIMARY KEY (track_id, artist_id),
+    ADD CONSTRAINT fk_track_artists_track FOREIGN KEY (track_id) REFERENCES tracks(id) ON DELETE CASCADE,
+    ADD CONSTRAINT fk_track_artists_artist FOREIGN KEY (artist_id) REFERENCES artists(id) ON DELETE CASCADE;
+CREATE INDEX idx_track_artists_artist_track ON track_artists (artist_id, track_id);
+
+ALTER TABLE album_artists
+    ALTER COLUMN artist_id SET NOT NULL,
+    ADD PRIMARY KEY (album_id, artist_id),
+    ADD CONSTRAINT fk_album_artists_artist FOREIGN KEY (artist_id) REFERENCES artists(id) ON DELETE CASCADE;
+CREATE INDEX idx_album_artists_artist_id ON album_artists (artist_id);
+
+ALTER TABLE track_genres
+    ALTER COLUMN track_id SET NOT NULL,
+    ADD CONSTRAINT pk_track_genres PRIMARY KEY (track_id, genre),
+    ADD CONSTRAINT fk_track_genres_track_id FOREIGN KEY (track_id) REFERENCES tracks(id) ON DELETE CASCADE;
+
+ALTER TABLE user_track_daily
+    ALTER COLUMN track_id SET NOT NULL,
+    ADD PRIMARY KEY (user_id, day, track_id),
+    ADD CONSTRAINT fk_user_track_daily_track FOREIGN KEY (track_id) REFERENCES tracks(id) ON DELETE CASCADE;
+CREATE INDEX idx_user_track_daily_cover ON user_track_daily (user_id, day) INCLUDE (track_id, plays, ms_played);
+
+ALTER TABLE user_artist_daily
+    ALTER COLUMN artist_id SET NOT NULL,
+    ADD PRIMARY KEY (user_id, day, artist_id),
+    ADD CONSTRAINT fk_user_artist_daily_artist FOREIGN KEY (artist_id) REFERENCES artists(id) ON DELETE CASCADE;
+CREATE INDEX idx_user_artist_daily_cover ON user_artist_daily (user_id, day) INCLUDE (artist_id, plays, ms_played);
+
+-- -----------------------------------------------------------------
+-- 6. Nouvelle listening_history. La séquence avance par pas de 50 : Hibernate réserve
+--    50 identifiants par appel (allocationSize = 50 sur l'entité), la valeur de la séquence
+--    étant la borne haute du bloc. Pas de DEFAULT nextval sur la colonne : un nextval direct
+--    renverrait un identifiant appartenant à un bloc déjà réservé par Hibernate.
+-- -----------------------------------------------------------------
+CREATE SEQUENCE listening_history_id_seq AS BIGINT INCREMENT BY 50;
+
+CREATE TABLE listening_history (
+    id        BIGINT NOT NULL,
+    user_id   UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    track_id  INTEGER NOT NULL REFERENCES tracks(id) ON DELETE CASCADE,
+    played_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id, played_at)
+) PARTITION BY RANGE (played_at);
+
+ALTER SEQUENCE listening_history_id_seq OWNED BY listening_history.id;
+
+CREATE TABLE listening_history_default PARTITION OF listening_history DEFAULT;
+
+DO $$
+DECLARE
+    v_month DATE;
+    v_last  DATE := date_trunc('month', now() AT TIME ZONE 'UTC' + INTERVAL '3 months')::date;
+BEGIN
+    SELECT COALESCE(date_trunc('month', MIN(played_at) AT TIME ZONE 'UTC')::date,
+                    date_trunc('month', now() AT TIME ZONE 'UTC')::date)
+    INTO v_month
+    FROM listening_history_copy;
+
+    WHILE v_month <= v_last LOOP
+        PERFORM ensure_listening_history_partition(v_month);
+        v_month := (v_month + INTERVAL '1 month')::date;
+    END LOOP;
+END;
+$$;
+
+INSERT INTO listening_history (id, user_id, track_id, played_at)
+SELECT id, user_id, track_id, played_at
+FROM listening_history_copy
+ORDER BY id;
+
+-- Prochain bloc Hibernate : [MAX(id) + 1, MAX(id) + 50]
+SELECT setval('listening_history_id_seq', COALESCE((SELECT MAX(id) FROM listening_history_copy), 0) + 50, false);
+
+DROP TABLE listening_history_copy;
+
+CREATE UNIQUE INDEX idx_unique_listening_event ON listening_history (user_id, played_at) INCLUDE (track_id);
+CREATE INDEX idx_listening_history_played_at_brin ON listening_history USING BRIN (played_at);
@@ -0,0 +1,62 @@
+-- =================================================================
+-- V17: Classements pré-calculés par utilisateur et par période
+-- =================================================================
+-- Les 50 premiers artistes / morceaux de chaque utilisateur pour les périodes
+-- LAST_30_DAYS, LAST_180_DAYS et ALL_TIME. Une requête du tableau de bord devient
+-- un parcours de clé primaire (user_id, range_key, rank).
+-- Les lignes d'un utilisateur sont recalculées après chaque synchronisation qui a inséré
+-- des écoutes. computed_on est le jour UTC du calcul : les périodes glissantes ne sont
+-- valables que ce jour-là, au-delà on relit les agrégats quotidiens.
+
+CREATE TABLE IF NOT EXISTS user_top_artists (
+    user_id     UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    range_key   VARCHAR(16) NOT NULL,
+    rank        SMALLINT NOT NULL,
+    artist_id   INTEGER NOT NULL REFERENCES artists(id) ON DELETE CASCADE,
+    play_count  BIGINT NOT NULL,
+    computed_on DATE NOT NULL,
+    PRIMARY KEY (user_id, range_key, rank)
+);
+
+CREATE TABLE IF NOT EXISTS user_top_tracks (
+    user_id     UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    range_key   VARCHAR(16) NOT NULL,
+    rank        SMALLINT NOT NULL,
+    track_id    INTEGER NOT NULL REFERENCES tracks(id) ON DELETE CASCADE,
+    play_count  BIGINT NOT NULL,
+    computed_on DATE NOT NULL,
+    PRIMARY KEY (user_id, range_key, rank)
+);
+
+-- Initialisation à partir des agrégats quotidiens
+WITH ranges (range_key, start_day) AS (
+    VALUES ('LAST_30_DAYS', (now() AT TIME ZONE 'UTC')::date - 30),
+           ('LAST_180_DAYS', (now() AT TIME ZONE 'UTC')::date - 180),
+           ('ALL_TIME', DATE '1970-01-01')
+), totals AS (
+    SELECT d.user_id, r.range_key, d.artist_id, SUM(d.plays) AS play_count,
+           ROW_NUMBER() OVER (PARTITION BY d.user_id, r.range_key ORDER BY SUM(d.plays) DESC, d.artist_id) AS rank
+    FROM user_artist_daily d
+    JOIN ranges r ON d.day >= r.start_day
+    GROUP BY d.user_id, r.range_key, d.artist_id
+)
+INSERT INTO user_top_artists (user_id, range_key, rank, artist_id, play_count, computed_on)
+SELECT user_id, range_key, rank, artist_id, play_count, (now() AT TIME ZONE 'UTC')::date
+FROM totals
+WHERE rank <= 50;
+
+WITH ranges (range_key, start_day) AS (
+    VALUES ('LAST_30_DAYS', (now() AT TIME ZONE 'UTC')::date - 30),
+           ('LAST_180_DAYS', (now() AT TIME ZONE 'UTC')::date - 180),
+           ('ALL_TIME', DATE '1970-01-01')
+), totals AS (
+    SELECT d.user_id, r.range_key, d.track_id, SUM(d.plays) AS play_count,
+           ROW_NUMBER() OVER (PARTITION BY d.user_id, r.range_key ORDER BY SUM(d.plays) DESC, d.track_id) AS rank
+    FROM user_track_daily d
+    JOIN ranges r ON d.day >= r.start_day
+    GROUP BY d.user_id, r.range_key, d.track_id
+)
+INSERT INTO user_top_tracks (user_id, range_key, rank, track_id, play_count, computed_on)
+SELECT user_id, range_key, rank, track_id, play_count, (now() AT TIME ZONE 'UTC')::date
+FROM totals
+WHERE rank <= 50;
@@ -0,0 +1,94 @@
+-- =================================================================
+-- V18: Rétention de l'historique brut et compactage dans les agrégats
+-- =================================================================
+-- Au-delà de N mois, les écoutes brutes ne servent plus qu'à travers des agrégats.
+-- Les agrégats quotidiens par morceau et par artiste existent déjà (V13) ; il manquait
+-- la répartition horaire, seule information encore perdue à la suppression des écoutes.
+-- Un mois expiré est recalculé une dernière fois dans les agrégats à partir de sa partition,
+-- puis la partition est supprimée (ou détachée pour archivage) : pas de DELETE massif,
+-- pas de VACUUM à la clé.
+
+-- 1. Écoutes par utilisateur, jour et heure (UTC)
+CREATE TABLE IF NOT EXISTS user_hour_daily (
+    user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    day     DATE NOT NULL,
+    hour    SMALLINT NOT NULL CHECK (hour BETWEEN 0 AND 23),
+    plays   INT NOT NULL,
+    PRIMARY KEY (user_id, day, hour)
+);
+
+INSERT INTO user_hour_daily (user_id, day, hour, plays)
+SELECT user_id,
+       (played_at AT TIME ZONE 'UTC')::date,
+       EXTRACT(HOUR FROM played_at AT TIME ZONE 'UTC')::smallint,
+       COUNT(*)
+FROM listening_history
+GROUP BY 1, 2, 3;
+
+-- 2. Journal des passes de rétention. Les écoutes antérieures au plus grand compacted_before
+--    n'existent plus qu'en agrégats : une reconstruction des agrégats doit s'arrêter à cette date.
+CREATE TABLE IF NOT EXISTS listening_history_compactions (
+    id                 BIGSERIAL PRIMARY KEY,
+    compacted_before   DATE NOT NULL,
+    partitions_removed INT NOT NULL,
+    rows_removed       BIGINT NOT NULL,
+    run_at             TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+-- 3. Compactage d'un mois : agrégats recalculés depuis la partition, puis partition supprimée
+--    ou détachée (p_archive). Renvoie le nombre d'écoutes compactées, -1 si la partition n'existe pas.
+CREATE OR REPLACE FUNCTION compact_listening_history_partition(p_month DATE, p_archive BOOLEAN)
+RETURNS BIGINT
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    v_start DATE := date_trunc('month', p_month)::date;
+    v_end   DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::date;
+    v_name  TEXT := 'listening_history_' || to_char(v_start, 'YYYY_MM');
+    v_rows  BIGINT;
+BEGIN
+    IF to_regclass(v_name) IS NULL THEN
+        RETURN -1;
+    END IF;
+
+    -- Plus aucune écriture sur le mois pendant le recalcul
+    EXECUTE format('LOCK TABLE %I IN SHARE MODE', v_name);
+
+    DELETE FROM user_track_daily WHERE day >= v_start AND day < v_end;
+    DELETE FROM user_artist_daily WHERE day >= v_start AND day < v_end;
+    DELETE FROM user_hour_daily WHERE day >= v_start AND day < v_end;
+
+    EXECUTE format($sql$
+        INSERT INTO user_track_daily (user_id, day, track_id, plays, ms_played)
+        SELECT lh.user_id, (lh.played_at AT TIME ZONE 'UTC')::date, lh.track_id, COUNT(*), SUM(t.duration_ms)
+        FROM %I lh
+        JOIN tracks t ON t.id = lh.track_id
+        GROUP BY 1, 2, 3
+    $sql$, v_name);
+
+    INSERT INTO user_artist_daily (user_id, day, artist_id, plays, ms_played)
+    SELECT utd.user_id, utd.day, ta.artist_id, SUM(utd.plays), SUM(utd.ms_played)
+    FROM user_track_daily utd
+    JOIN track_artists ta ON ta.track_id = utd.track_id
+    WHERE utd.day >= v_start AND utd.day < v_end
+    GROUP BY 1, 2, 3;
+
+    EXECUTE format($sql$
+        INSERT INTO user_hour_daily (user_id, day, hour, plays)
+        SELECT user_id, (played_at AT TIME ZONE 'UTC')::date, EXTRACT(HOUR FROM played_at AT TIME ZONE 'UTC')::smallint, COUNT(*)
+        FROM %I
+        GROUP BY 1, 2, 3
+    $sql$, v_name);
+
+    EXECUTE format('SELECT COUNT(*) FROM %I', v_name) INTO v_rows;
+
+    IF p_archive THEN
+        EXECUTE format('ALTER TABLE listening_history DETACH PARTITION %I', v_name);
+        EXECUTE format('ALTER TABLE %I RENAME TO %I', v_name, v_name || '_archived');
+    ELSE
+        EXECUTE format('DROP TABLE %I', v_name);
+    END IF;
+
+    RETURN v_rows;
+END;
+$$;
@@ -0,0 +1,25 @@
+-- =================================================================
+-- V19: Genres des morceaux dénormalisés dans tracks.genres
+-- =================================================================
+-- Les genres d'un morceau sont l'union des genres de ses artistes (artists.genres).
+-- La table track_genres, remplie une seule fois à la création du morceau, divergeait
+-- dès qu'un artiste recevait ses genres plus tard, et chaque filtre par genre coûtait
+-- une jointure supplémentaire. tracks.genres est recalculé par l'application, en une
+-- requête ensembliste, à chaque synchronisation qui crée des morceaux ou des genres d'artistes.
+-- L'index GIN sert les filtres par genre (genres && ARRAY[...], genres @> ARRAY[...]).
+
+ALTER TABLE tracks ADD COLUMN IF NOT EXISTS genres TEXT[] NOT NULL DEFAULT '{}';
+
+UPDATE tracks t
+SET genres = ARRAY(
+    SELECT DISTINCT g
+    FROM track_artists ta
+    JOIN artists a ON a.id = ta.artist_id
+    CROSS JOIN LATERAL unnest(a.genres) AS g
+    WHERE ta.track_id = t.id
+    ORDER BY g
+);
+
+CREATE INDEX IF NOT EXISTS idx_tracks_genres ON tracks USING GIN (genres);
+
+DROP TABLE IF EXISTS track_genres;
@@ -0,0 +1,44 @@
+-- =================================================================
+-- V20: Générations des instantanés cached_top_artists
+-- =================================================================
+-- Un rafraîchissement écrivait DELETE + 50 INSERT sur les mêmes clés : 50 tuples morts à chaque fois.
+-- Désormais les lignes d'un rafraîchissement forment une nouvelle génération, insérée en une requête,
+-- puis le pointeur (user_id, time_range) -> génération est basculé dans la même transaction.
+-- Les lecteurs passent toujours par le pointeur, en une seule requête : ils voient une génération
+-- complète. Les générations qui ne sont plus pointées sont supprimées par lots, périodiquement.
+
+CREATE SEQUENCE IF NOT EXISTS cached_top_artists_generation_seq;
+
+ALTER TABLE cached_top_artists ADD COLUMN IF NOT EXISTS generation BIGINT;
+ALTER TABLE cached_top_artists ALTER COLUMN id SET DEFAULT gen_random_uuid();
+
+-- Une génération par instantané existant
+WITH generations AS (
+    SELECT user_id, time_range, nextval('cached_top_artists_generation_seq') AS generation
+    FROM cached_top_artists
+    GROUP BY user_id, time_range
+)
+UPDATE cached_top_artists a
+SET generation = g.generation
+FROM generations g
+WHERE a.user_id = g.user_id
+  AND a.time_range = g.time_range;
+
+ALTER TABLE cached_top_artists ALTER COLUMN generation SET NOT NULL;
+
+CREATE TABLE IF NOT EXISTS cached_top_artists_current (
+    user_id    UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    time_range VARCHAR(50) NOT NULL,
+    generation BIGINT NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL,
+    PRIMARY KEY (user_id, time_range)
+);
+
+INSERT INTO cached_top_artists_current (user_id, time_range, generation, updated_at)
+SELECT user_id, time_range, MIN(generation), MAX(last_updated_at)
+FROM cached_top_artists
+GROUP BY user_id, time_range
+ON CONFLICT DO NOTHING;
+
+CREATE INDEX IF NOT EXISTS idx_cached_top_artists_generation
+    ON cached_top_artists (generation, artist_rank);
@@ -0,0 +1,17 @@
+-- =================================================================
+-- V21: Horodatage des dernières écoutes synchronisées par utilisateur
+-- =================================================================
+-- Les réponses d'analytics ne changent que lorsque de nouvelles écoutes sont synchronisées
+-- (ou qu'un instantané de top artistes est republié, voir cached_top_artists_current.updated_at).
+-- Cet horodatage, écrit dans la transaction de synchronisation, sert de base aux ETag /
+-- Last-Modified des endpoints d'analytics.
+
+CREATE TABLE IF NOT EXISTS user_analytics_watermarks (
+    user_id           UUID PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    history_synced_at TIMESTAMPTZ NOT NULL
+);
+
+INSERT INTO user_analytics_watermarks (user_id, history_synced_at)
+SELECT id, now()
+FROM users
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,95 @@
+-- =================================================================
+-- V22: Durée d'écoute dans les agrégats horaires
+-- =================================================================
+-- user_hour_daily ne comptait que les écoutes ; la carte jour x heure affiche aussi les minutes.
+-- Comme pour user_track_daily, ms_played est estimé à partir de la durée des morceaux.
+-- Les jours déjà compactés n'ont plus d'écoutes brutes : leur durée est estimée à partir
+-- de la durée moyenne d'une écoute ce jour-là (user_track_daily).
+
+ALTER TABLE user_hour_daily ADD COLUMN IF NOT EXISTS ms_played BIGINT NOT NULL DEFAULT 0;
+
+UPDATE user_hour_daily h
+SET ms_played = r.ms_played
+FROM (
+    SELECT lh.user_id,
+           (lh.played_at AT TIME ZONE 'UTC')::date AS day,
+           EXTRACT(HOUR FROM lh.played_at AT TIME ZONE 'UTC')::smallint AS hour,
+           SUM(t.duration_ms) AS ms_played
+    FROM listening_history lh
+    JOIN tracks t ON t.id = lh.track_id
+    GROUP BY 1, 2, 3
+) r
+WHERE h.user_id = r.user_id
+  AND h.day = r.day
+  AND h.hour = r.hour;
+
+UPDATE user_hour_daily h
+SET ms_played = h.plays * d.avg_ms
+FROM (
+    SELECT user_id, day, SUM(ms_played) / NULLIF(SUM(plays), 0) AS avg_ms
+    FROM user_track_daily
+    GROUP BY user_id, day
+) d
+WHERE h.ms_played = 0
+  AND h.user_id = d.user_id
+  AND h.day = d.day
+  AND d.avg_ms IS NOT NULL;
+
+-- Compactage d'un mois (V18) : les agrégats horaires reçoivent aussi la durée
+CREATE OR REPLACE FUNCTION compact_listening_history_partition(p_month DATE, p_archive BOOLEAN)
+RETURNS BIGINT
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    v_start DATE := date_trunc('month', p_month)::date;
+    v_end   DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::date;
+    v_name  TEXT := 'listening_history_' || to_char(v_start, 'YYYY_MM');
+    v_rows  BIGINT;
+BEGIN
+    IF to_regclass(v_name) IS NULL THEN
+        RETURN -1;
+    END IF;
+
+    -- Plus aucune écriture sur le mois pendant le recalcul
+    EXECUTE format('LOCK TABLE %I IN SHARE MODE', v_name);
+
+    DELETE FROM user_track_daily WHERE day >= v_start AND day < v_end;
+    DELETE FROM user_artist_daily WHERE day >= v_start AND day < v_end;
+    DELETE FROM user_hour_daily WHERE day >= v_start AND day < v_end;
+
+    EXECUTE format($sql$
+        INSERT INTO user_track_daily (user_id, day, track_id, plays, ms_played)
+        SELECT lh.user_id, (lh.played_at AT TIME ZONE 'UTC')::date, lh.track_id, COUNT(*), SUM(t.duration_ms)
+        FROM %I lh
+        JOIN tracks t ON t.id = lh.track_id
+        GROUP BY 1, 2, 3
+    $sql$, v_name);
+
+    INSERT INTO user_artist_daily (user_id, day, artist_id, plays, ms_played)
+    SELECT utd.user_id, utd.day, ta.artist_id, SUM(utd.plays), SUM(utd.ms_played)
+    FROM user_track_daily utd
+    JOIN track_artists ta ON ta.track_id = utd.track_id
+    WHERE utd.day >= v_start AND utd.day < v_end
+    GROUP BY 1, 2, 3;
+
+    EXECUTE format($sql$
+        INSERT INTO user_hour_daily (user_id, day, hour, plays, ms_played)
+        SELECT lh.user_id, (lh.played_at AT TIME ZONE 'UTC')::date, EXTRACT(HOUR FROM lh.played_at AT TIME ZONE 'UTC')::smallint,
+               COUNT(*), SUM(t.duration_ms)
+        FROM %I lh
+        JOIN tracks t ON t.id = lh.track_id
+        GROUP BY 1, 2, 3
+    $sql$, v_name);
+
+    EXECUTE format('SELECT COUNT(*) FROM %I', v_name) INTO v_rows;
+
+    IF p_archive THEN
+        EXECUTE format('ALTER TABLE listening_history DETACH PARTITION %I', v_name);
+        EXECUTE format('ALTER TABLE %I RENAME TO %I', v_name, v_name || '_archived');
+    ELSE
+        EXECUTE format('DROP TABLE %I', v_name);
+    END IF;
+
+    RETURN v_rows;
+END;
+$$;
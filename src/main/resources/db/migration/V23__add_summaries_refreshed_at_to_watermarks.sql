@@ -0,0 +1,10 @@
+-- =================================================================
+-- V23: Horodatage distinct pour le recalcul des classements
+-- =================================================================
+-- history_synced_at est désormais écrit dans la transaction de synchronisation elle-même :
+-- écoutes, agrégats quotidiens et genres changent d'ETag dès leur validation, même si le
+-- recalcul des classements qui suit échoue ou tarde. Ce recalcul avance sa propre colonne,
+-- et le watermark d'un utilisateur est le plus récent des deux (voir AnalyticsWatermarkRepository).
+
+ALTER TABLE user_analytics_watermarks
+    ADD COLUMN IF NOT EXISTS summaries_refreshed_at TIMESTAMPTZ;
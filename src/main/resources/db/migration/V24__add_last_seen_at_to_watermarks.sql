@@ -0,0 +1,12 @@
+-- =================================================================
+-- V24: Dernière visite des analytics par utilisateur
+-- =================================================================
+-- Le préchauffage des réponses d'analytics ne concerne que les utilisateurs venus récemment.
+-- Cette date est partagée par toutes les instances et survit aux redémarrages.
+-- Elle est enregistrée au plus une fois par heure et par instance (voir AnalyticsCacheWarmer).
+-- Un utilisateur peut consulter ses analytics avant sa première synchronisation :
+-- sa ligne existe alors sans history_synced_at.
+
+ALTER TABLE user_analytics_watermarks
+    ADD COLUMN IF NOT EXISTS last_seen_at TIMESTAMPTZ,
+    ALTER COLUMN history_synced_at DROP NOT NULL;
@@ -0,0 +1,104 @@
+package com.dashboard.backend.analytics.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ListeningColumnsTest {
+
+    private static final Instant DAY = Instant.parse("2025-03-29T00:00:00Z");
+
+    private ListeningColumns.Builder builder;
+
+    @BeforeEach
+    void setUp() {
+        builder = new ListeningColumns.Builder();
+        builder.addTrack(10, new int[]{100}, new String[]{"rock"});
+        builder.addTrack(20, new int[]{100, 200}, new String[]{"rock", "pop"});
+        builder.addTrack(30, new int[]{300}, new String[0]);
+    }
+
+    @Test
+    void ranksTracksArtistsAndGenresOverARange() {
+        play(0, 10);
+        play(1, 20);
+        play(2, 20);
+        play(3, 30);
+        play(4, 20);
+        ListeningColumns columns = builder.build();
+
+        assertThat(columns.topTracks(DAY, DAY.plusSeconds(86_400), 2))
+                .containsExactly(new ListeningColumns.Ranked(20, 3), new ListeningColumns.Ranked(10, 1));
+        assertThat(columns.topArtists(DAY, DAY.plusSeconds(86_400), 10))
+                .containsExactly(new ListeningColumns.Ranked(100, 4), new ListeningColumns.Ranked(200, 3),
+                        new ListeningColumns.Ranked(300, 1));
+        assertThat(columns.topGenres(DAY, DAY.plusSeconds(86_400), 10))
+                .containsExactly(new ListeningColumns.RankedGenre("rock", 4), new ListeningColumns.RankedGenre("pop", 3));
+
+        // Deux premières heures seulement : égalité départagée par ordre d'apparition
+        assertThat(columns.topTracks(DAY, DAY.plusSeconds(7_200), 10))
+                .containsExactly(new ListeningColumns.Ranked(10, 1), new ListeningColumns.Ranked(20, 1));
+    }
+
+    @Test
+    void countsUseHalfOpenRanges() {
+        play(0, 10);
+        play(1, 10);
+        play(2, 10);
+        ListeningColumns columns = builder.build();
+
+        assertThat(columns.countBetween(DAY, DAY.plusSeconds(7_200))).isEqualTo(2);
+        assertThat(columns.countBetween(DAY.plusSeconds(3_600), DAY.plusSeconds(3_601))).isEqualTo(1);
+        assertThat(columns.countBetween(Instant.EPOCH, Instant.MAX)).isEqualTo(3);
+    }
+
+    @Test
+    void hourlyHistogramFollowsDaylightSavingChanges() {
+        // Passage à l'heure d'été à Paris le 30 mars 2025 à 01:00 UTC
+        play(24, 10);   // 00:00 UTC le 30 -> 01:00 à Paris (UTC+1)
+        play(26, 10);   // 02:00 UTC le 30 -> 04:00 à Paris (UTC+2)
+        ListeningColumns columns = builder.build();
+
+        int[] paris = columns.hourlyHistogram(Instant.EPOCH, Instant.MAX, ZoneId.of("Europe/Paris"));
+        assertThat(paris[1]).isEqualTo(1);
+        assertThat(paris[4]).isEqualTo(1);
+
+        int[] utc = columns.hourlyHistogram(Instant.EPOCH, Instant.MAX, ZoneOffset.UTC);
+        assertThat(utc[0]).isEqualTo(1);
+        assertThat(utc[2]).isEqualTo(1);
+    }
+
+    @Test
+    void snapshotIsNotAffectedByLaterAppends() {
+        play(0, 10);
+        ListeningColumns before = builder.build();
+
+        for (int hour = 1; hour < 200; hour++) {
+            builder.addTrack(1_000 + hour, new int[]{1_000 + hour}, new String[]{"genre-" + hour});
+            play(hour, 1_000 + hour);
+        }
+        ListeningColumns after = builder.build();
+
+        assertThat(before.size()).isEqualTo(1);
+        assertThat(before.topArtists(Instant.EPOCH, Instant.MAX, 10)).containsExactly(new ListeningColumns.Ranked(100, 1));
+        assertThat(after.size()).isEqualTo(200);
+    }
+
+    @Test
+    void playsMustBeAppendedInChronologicalOrder() {
+        play(2, 10);
+
+        assertThatThrownBy(() -> play(1, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> builder.addPlay(DAY.plusSeconds(7_200), 99)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void play(int hour, int trackId) {
+        builder.addPlay(DAY.plusSeconds(hour * 3_600L), trackId);
+    }
+}
@@ -0,0 +1,179 @@
+package com.dashboard.backend.analytics.repository;
+
+import com.dashboard.backend.testsupport.DotenvInitializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Vérifie le plan d'exécution de chaque requête native de {@link AnalyticsRepository}, ainsi que
+ * des écritures exécutées à chaque synchronisation : agrégats quotidiens ({@link DailyRollupRepository})
+ * et classements pré-calculés ({@link TopSummaryRepository}).
+ *
+ * Les parcours séquentiels sont désactivés le temps du test : un "Seq Scan" dans le plan signifie
+ * qu'aucun index ne peut servir la requête. Un tri n'est accepté que s'il porte sur des valeurs
+ * agrégées (classement top-N, y compris par fonction de fenêtre) ou s'il alimente directement une
+ * agrégation ; tout autre tri (ex: tri des écoutes brutes sur played_at) est une régression.
+ */
+@SpringBootTest
+@ContextConfiguration(initializers = DotenvInitializer.class)
+class AnalyticsQueryPlanTest {
+
+    private static final Pattern AGGREGATE_EXPRESSION = Pattern.compile("\\b(sum|count|avg|min|max)\\(", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @TestFactory
+    Stream<DynamicTest> analyticsQueriesUseIndexesAndAvoidRawSorts() {
+        return Arrays.stream(AnalyticsRepository.class.getDeclaredMethods())
+                .filter(method -> method.isAnnotationPresent(Query.class) && method.getAnnotation(Query.class).nativeQuery())
+                .sorted(Comparator.comparing(Method::getName))
+                .map(method -> DynamicTest.dynamicTest(method.getName(), () -> assertPlan(method)));
+    }
+
+    @TestFactory
+    Stream<DynamicTest> rollupAndSummaryWritesUseIndexes() {
+        UUID userId = UUID.randomUUID();
+        Date today = Date.valueOf(LocalDate.now());
+        int size = TopSummaryRepository.SUMMARY_SIZE;
+        return Stream.of(
+                writePlanTest("UPSERT_TRACK_DAILY", DailyRollupRepository.UPSERT_TRACK_DAILY, userId, today, 10, 180000L),
+                writePlanTest("UPSERT_ARTIST_DAILY", DailyRollupRepository.UPSERT_ARTIST_DAILY, userId, today, 10, 180000L),
+                writePlanTest("UPSERT_HOUR_DAILY", DailyRollupRepository.UPSERT_HOUR_DAILY, userId, today, (short) 10, 180000L),
+                writePlanTest("REFRESH_ARTISTS", TopSummaryRepository.REFRESH_ARTISTS, today, today, userId, userId, today, size),
+                writePlanTest("REFRESH_TRACKS", TopSummaryRepository.REFRESH_TRACKS, today, today, userId, userId, today, size));
+    }
+
+    private DynamicTest writePlanTest(String name, String sql, Object... args) {
+        // EXPLAIN sans ANALYZE : l'écriture n'est pas exécutée
+        return DynamicTest.dynamicTest(name, () -> assertPlan(name,
+                () -> jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class, args)));
+    }
+
+    private void assertPlan(Method method) throws Exception {
+        String sql = method.getAnnotation(Query.class).value();
+        MapSqlParameterSource parameters = sampleParameters(method);
+
+        assertPlan(method.getName(), () -> new NamedParameterJdbcTemplate(jdbcTemplate)
+                .queryForObject("EXPLAIN (FORMAT JSON) " + sql, parameters, String.class));
+    }
+
+    private void assertPlan(String name, Supplier<String> explain) throws Exception {
+        String planJson = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            String plan = explain.get();
+            status.setRollbackOnly();
+            return plan;
+        });
+
+        JsonNode root = objectMapper.readTree(planJson).get(0).get("Plan");
+        List<String> violations = new ArrayList<>();
+        collectViolations(root, null, violations);
+
+        assertThat(violations)
+                .as("Plan de %s :%n%s", name, root.toPrettyString())
+                .isEmpty();
+    }
+
+    private void collectViolations(JsonNode node, JsonNode parent, List<String> violations) {
+        String nodeType = node.path("Node Type").asText();
+
+        if ("Seq Scan".equals(nodeType)) {
+            violations.add("Seq Scan sur " + node.path("Relation Name").asText());
+        }
+
+        if (("Sort".equals(nodeType) || "Incremental Sort".equals(nodeType)) && !isAllowedSort(node, parent)) {
+            violations.add("Tri non couvert par un index : " + node.path("Sort Key"));
+        }
+
+        for (JsonNode child : node.path("Plans")) {
+            collectViolations(child, node, violations);
+        }
+    }
+
+    private boolean isAllowedSort(JsonNode sort, JsonNode parent) {
+        if (parent != null && "Aggregate".equals(parent.path("Node Type").asText())) {
+            return true;
+        }
+        // Classement par fonction de fenêtre : tri par partition puis par valeur agrégée
+        if (parent != null && "WindowAgg".equals(parent.path("Node Type").asText())) {
+            for (JsonNode key : sort.path("Sort Key")) {
+                if (AGGREGATE_EXPRESSION.matcher(key.asText()).find()) {
+                    return true;
+                }
+            }
+        }
+        for (JsonNode key : sort.path("Sort Key")) {
+            if (!AGGREGATE_EXPRESSION.matcher(key.asText()).find()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MapSqlParameterSource sampleParameters(Method method) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        for (Parameter parameter : method.getParameters()) {
+            Param param = parameter.getAnnotation(Param.class);
+            assertThat(param).as("@Param manquant sur %s.%s", method.getName(), parameter.getName()).isNotNull();
+            parameters.addValue(param.value(), sampleValue(parameter.getType()));
+        }
+        return parameters;
+    }
+
+    private Object sampleValue(Class<?> type) {
+        if (type == UUID.class) {
+            return UUID.randomUUID();
+        }
+        if (type == LocalDate.class) {
+            return LocalDate.now().minusDays(30);
+        }
+        if (type == Instant.class) {
+            return Instant.now().minus(30, ChronoUnit.DAYS);
+        }
+        if (type == int.class || type == Integer.class) {
+            return 10;
+        }
+        if (type == long.class || type == Long.class) {
+            return 10L;
+        }
+        if (type == String.class) {
+            return "sample";
+        }
+        throw new IllegalArgumentException("Type de paramètre non géré : " + type);
+    }
+}
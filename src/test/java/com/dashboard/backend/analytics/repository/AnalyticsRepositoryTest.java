@@ -0,0 +1,75 @@
+package com.dashboard.backend.analytics.repository;
+
+import com.dashboard.backend.analytics.dto.TopGenreDto;
+import com.dashboard.backend.testsupport.DotenvInitializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Exécute les requêtes natives de {@link AnalyticsRepository} sur un jeu de données minimal,
+ * pour vérifier que leurs colonnes se projettent sur les DTO (types SQL compris).
+ * Chaque test s'exécute dans une transaction annulée.
+ */
+@SpringBootTest
+@ContextConfiguration(initializers = DotenvInitializer.class)
+class AnalyticsRepositoryTest {
+
+    @Autowired
+    private AnalyticsRepository analyticsRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void findTopGenresByPlayCountSumsPlaysPerGenre() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        List<TopGenreDto> genres = transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            UUID userId = jdbcTemplate.queryForObject(
+                    "INSERT INTO users (email, password_hash) VALUES (?, 'hash') RETURNING id",
+                    UUID.class, UUID.randomUUID() + "@test.local");
+            Integer popRock = insertTrack(new String[]{"pop", "rock"});
+            Integer pop = insertTrack(new String[]{"pop"});
+            insertDailyPlays(userId, popRock, today, 3);
+            insertDailyPlays(userId, popRock, today.minusDays(1), 2);
+            insertDailyPlays(userId, pop, today, 4);
+
+            return analyticsRepository.findTopGenresByPlayCount(userId, today.minusDays(7), today, 10);
+        });
+
+        assertThat(genres)
+                .extracting(TopGenreDto::getGenre, TopGenreDto::getPlayCount)
+                .containsExactly(
+                        tuple("pop", 9L),
+                        tuple("rock", 5L));
+    }
+
+    private Integer insertTrack(String[] genres) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO tracks (spotify_id, name, duration_ms, genres) VALUES (?, 'Track', 180000, ?) RETURNING id",
+                Integer.class, UUID.randomUUID().toString(), genres);
+    }
+
+    private void insertDailyPlays(UUID userId, Integer trackId, LocalDate day, int plays) {
+        jdbcTemplate.update(
+                "INSERT INTO user_track_daily (user_id, track_id, day, plays, ms_played) VALUES (?, ?, ?, ?, ?)",
+                userId, trackId, Date.valueOf(day), plays, plays * 180000L);
+    }
+}
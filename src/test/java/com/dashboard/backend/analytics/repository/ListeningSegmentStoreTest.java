@@ -0,0 +1,114 @@
+package com.dashboard.backend.analytics.repository;
+
+import com.dashboard.backend.analytics.model.ListeningColumns;
+import com.dashboard.backend.analytics.model.ListeningSegment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ListeningSegmentStoreTest {
+
+    private static final UUID USER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final YearMonth MONTH = YearMonth.of(2025, 3);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void segmentRoundTripRebuildsTheSameColumns() throws IOException {
+        ListeningSegmentStore store = new ListeningSegmentStore(true, directory);
+        Instant first = Instant.parse("2025-03-01T10:15:30.123456Z");
+        ListeningSegment segment = new ListeningSegment(
+                new long[]{micros(first), micros(first.plusSeconds(60)), micros(first.plusSeconds(120))},
+                new int[]{7, 8, 7},
+                new int[]{7, 8},
+                new int[][]{{70}, {70, 80}},
+                new String[][]{{"électro"}, {}});
+
+        store.write(USER, MONTH, segment);
+        ListeningColumns.Builder builder = new ListeningColumns.Builder();
+        assertThat(store.appendTo(USER, MONTH, builder)).isTrue();
+
+        ListeningColumns columns = builder.build();
+        assertThat(columns.size()).isEqualTo(3);
+        assertThat(columns.topTracks(Instant.EPOCH, Instant.MAX, 10))
+                .containsExactly(new ListeningColumns.Ranked(7, 2), new ListeningColumns.Ranked(8, 1));
+        assertThat(columns.topArtists(Instant.EPOCH, Instant.MAX, 10))
+                .containsExactly(new ListeningColumns.Ranked(70, 3), new ListeningColumns.Ranked(80, 1));
+        assertThat(columns.topGenres(Instant.EPOCH, Instant.MAX, 10))
+                .containsExactly(new ListeningColumns.RankedGenre("électro", 2));
+        // La date de la dernière écoute est exacte : la suite est relue en base à partir de celle-ci
+        assertThat(builder.lastPlayedAt()).isEqualTo(first.plusSeconds(120));
+    }
+
+    @Test
+    void missingSegmentIsReportedAndTruncatedSegmentIsRejected() throws IOException {
+        ListeningSegmentStore store = new ListeningSegmentStore(true, directory);
+        ListeningColumns.Builder builder = new ListeningColumns.Builder();
+        assertThat(store.appendTo(USER, MONTH, builder)).isFalse();
+
+        store.write(USER, MONTH, new ListeningSegment(new long[]{1_000_000L}, new int[]{1}, new int[]{1},
+                new int[][]{{1}}, new String[][]{{}}));
+        Path file = directory.resolve(USER.toString()).resolve("2025-03.lhs");
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+
+        assertThatThrownBy(() -> store.appendTo(USER, MONTH, builder)).isInstanceOf(IOException.class);
+        assertThat(builder.build().size()).isZero();
+    }
+
+    @Test
+    void monthIsSealedOneDayAfterItEnds() {
+        ListeningSegmentStore store = new ListeningSegmentStore(true, directory);
+
+        assertThat(store.firstUnsealedMonth(Instant.parse("2025-04-01T12:00:00Z"))).isEqualTo(MONTH);
+        assertThat(store.firstUnsealedMonth(Instant.parse("2025-04-02T00:00:01Z"))).isEqualTo(MONTH.plusMonths(1));
+    }
+
+    @Test
+    void retentionDeletesOnlyMonthsBeforeTheCutoff() throws IOException {
+        ListeningSegmentStore store = new ListeningSegmentStore(true, directory);
+        ListeningSegment segment = new ListeningSegment(new long[]{1_000_000L}, new int[]{1}, new int[]{1},
+                new int[][]{{1}}, new String[][]{{}});
+        UUID other = UUID.fromString("00000000-0000-0000-0000-000000000002");
+        store.write(USER, MONTH.minusMonths(1), segment);
+        store.write(USER, MONTH, segment);
+        store.write(other, MONTH.minusMonths(2), segment);
+
+        assertThat(store.deleteMonthsBefore(MONTH)).isEqualTo(2);
+        assertThat(store.appendTo(USER, MONTH, new ListeningColumns.Builder())).isTrue();
+        assertThat(store.appendTo(USER, MONTH.minusMonths(1), new ListeningColumns.Builder())).isFalse();
+    }
+
+    @Test
+    void syncInvalidationDeletesTheUserMonthsFromTheGivenMonth() throws IOException {
+        ListeningSegmentStore store = new ListeningSegmentStore(true, directory);
+        ListeningSegment segment = new ListeningSegment(new long[]{1_000_000L}, new int[]{1}, new int[]{1},
+                new int[][]{{1}}, new String[][]{{}});
+        UUID other = UUID.fromString("00000000-0000-0000-0000-000000000002");
+        store.write(USER, MONTH.minusMonths(1), segment);
+        store.write(USER, MONTH, segment);
+        store.write(USER, MONTH.plusMonths(1), segment);
+        store.write(other, MONTH, segment);
+
+        assertThat(store.deleteMonthsFrom(USER, MONTH)).isEqualTo(2);
+        assertThat(store.appendTo(USER, MONTH.minusMonths(1), new ListeningColumns.Builder())).isTrue();
+        assertThat(store.appendTo(USER, MONTH, new ListeningColumns.Builder())).isFalse();
+        assertThat(store.appendTo(other, MONTH, new ListeningColumns.Builder())).isTrue();
+    }
+
+    private static long micros(Instant instant) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+}
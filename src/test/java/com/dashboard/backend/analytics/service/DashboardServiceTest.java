@@ -0,0 +1,61 @@
+package com.dashboard.backend.analytics.service;
+
+import com.dashboard.backend.User.model.User;
+import com.dashboard.backend.analytics.dto.DashboardDto;
+import com.dashboard.backend.analytics.dto.TopTrackDto;
+import com.dashboard.backend.analytics.model.DashboardWidget;
+import com.dashboard.backend.service.SpotifyAccountService;
+import com.dashboard.backend.thirdparty.spotify.SpotifyDataService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DashboardServiceTest {
+
+    private final AnalyticsService analyticsService = mock(AnalyticsService.class);
+    private final SpotifyDataService spotifyDataService = mock(SpotifyDataService.class);
+    private final SpotifyAccountService spotifyAccountService = mock(SpotifyAccountService.class);
+    private final DashboardService dashboardService = new DashboardService(
+            analyticsService, spotifyDataService, spotifyAccountService, mock(AnalyticsCacheWarmer.class),
+            Duration.ofMillis(200));
+    private final User user = new User();
+
+    @AfterEach
+    void tearDown() {
+        dashboardService.stop();
+    }
+
+    @Test
+    void slowWidgetTimesOutWithoutHidingTheOthers() {
+        when(spotifyAccountService.getSpotifyAccount(any())).thenReturn(Optional.empty());
+        when(analyticsService.calculateTopArtistsFromHistory(any(), anyString(), anyInt())).thenReturn(List.of());
+        when(analyticsService.getTopTracksForUser(any(), anyString(), anyInt())).thenAnswer(invocation -> {
+            Thread.sleep(5_000);
+            return List.<TopTrackDto>of();
+        });
+
+        DashboardDto dashboard = dashboardService.getDashboard(user,
+                List.of(DashboardWidget.TOP_ARTISTS, DashboardWidget.TOP_TRACKS,
+                        DashboardWidget.SPOTIFY_PROFILE, DashboardWidget.SPOTIFY_STATUS),
+                "medium_term", 10);
+
+        assertThat(dashboard.getWidgets()).containsOnlyKeys("top-artists", "spotify-status");
+        assertThat(dashboard.getErrors())
+                .containsEntry("top-tracks", "timeout")
+                .containsEntry("spotify-profile", "spotify_not_linked");
+        verify(spotifyDataService, never()).getCurrentProfile(any());
+        verify(spotifyAccountService, never()).hasSpotifyLinked(any());
+    }
+}
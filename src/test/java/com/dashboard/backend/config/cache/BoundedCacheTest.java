@@ -0,0 +1,71 @@
+package com.dashboard.backend.config.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<Runnable> refreshTasks = new ArrayList<>();
+
+    private BoundedCache cache(int maximumSize, Duration refreshAfterWrite) {
+        return new BoundedCache("test", maximumSize, Duration.ofMinutes(10), refreshAfterWrite,
+                refreshTasks::add, clock::get);
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedBeyondMaximumSize() {
+        BoundedCache cache = cache(2, null);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.evictions.sum()).isEqualTo(1);
+    }
+
+    @Test
+    void entriesExpireAfterWrite() {
+        BoundedCache cache = cache(10, null);
+        cache.put("a", 1);
+
+        clock.addAndGet(Duration.ofMinutes(10).toNanos());
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void staleEntryIsServedWhileASingleRefreshRunsInBackground() {
+        BoundedCache cache = cache(10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get("a", loads::incrementAndGet)).isEqualTo(1);
+        clock.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        assertThat(cache.get("a", loads::incrementAndGet)).isEqualTo(1);
+        assertThat(cache.get("a", loads::incrementAndGet)).isEqualTo(1);
+        assertThat(refreshTasks).hasSize(1);
+
+        refreshTasks.getFirst().run();
+        assertThat(cache.get("a", loads::incrementAndGet)).isEqualTo(2);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void nullValuesAreNotStored() {
+        BoundedCache cache = cache(10, null);
+
+        assertThat(cache.get("a", () -> (Integer) null)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,107 @@
+package com.dashboard.backend.config.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+    private static final UUID USER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+    private final ReplicaLagMonitor replicaLagMonitor = mock(ReplicaLagMonitor.class);
+    private ReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        DataSource primary = mock(DataSource.class);
+        DataSource replica = mock(DataSource.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        routing = new ReplicaRoutingDataSource(primary, replica, replicaLagMonitor, new SimpleMeterRegistry());
+        routing.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRoutingContext.restore(null);
+        TransactionSynchronizationManager.clear();
+    }
+
+    @Test
+    void readsOutsideAReplicaScopeStayOnThePrimary() throws SQLException {
+        when(replicaLagMonitor.isReplicaUsable(any())).thenReturn(true);
+
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void scopedReadsGoToTheReplicaUnlessTheUserHasPendingWrites() throws SQLException {
+        ReplicaRoutingContext.enter(USER);
+
+        when(replicaLagMonitor.isReplicaUsable(USER)).thenReturn(true);
+        assertThat(routing.getConnection()).isSameAs(replicaConnection);
+
+        when(replicaLagMonitor.isReplicaUsable(USER)).thenReturn(false);
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void nestedScopeWithoutUserKeepsTheEnclosingUser() throws SQLException {
+        when(replicaLagMonitor.isReplicaUsable(USER)).thenReturn(false);
+        when(replicaLagMonitor.isReplicaUsable(null)).thenReturn(true);
+
+        ReplicaRoutingContext.Scope outer = ReplicaRoutingContext.enter(USER);
+        ReplicaRoutingContext.Scope previous = ReplicaRoutingContext.enter(null);
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+
+        ReplicaRoutingContext.restore(previous);
+        assertThat(ReplicaRoutingContext.current().userId()).isEqualTo(USER);
+        ReplicaRoutingContext.restore(outer);
+        assertThat(ReplicaRoutingContext.current()).isNull();
+    }
+
+    @Test
+    void primaryScopeWinsOverNestedReplicaScopes() throws SQLException {
+        when(replicaLagMonitor.isReplicaUsable(any())).thenReturn(true);
+
+        Connection connection = ReplicaRoutingContext.onPrimary(() -> {
+            ReplicaRoutingContext.Scope previous = ReplicaRoutingContext.enter(USER);
+            try {
+                return routing.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                ReplicaRoutingContext.restore(previous);
+            }
+        });
+
+        assertThat(connection).isSameAs(primaryConnection);
+        assertThat(ReplicaRoutingContext.current()).isNull();
+    }
+
+    @Test
+    void readWriteTransactionsStayOnThePrimaryEvenInsideAScope() throws SQLException {
+        when(replicaLagMonitor.isReplicaUsable(any())).thenReturn(true);
+        ReplicaRoutingContext.enter(USER);
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(routing.getConnection()).isSameAs(replicaConnection);
+    }
+}
@@ -0,0 +1,94 @@
+package com.dashboard.backend.thirdparty.spotify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SpotifyConcurrencyLimiterTest {
+
+    private static final String ENDPOINT = "artist";
+    private static final long BASELINE = Duration.ofMillis(100).toNanos();
+
+    private SpotifyConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        SpotifyProperties properties = new SpotifyProperties();
+        properties.getConcurrency().setInitialLimit(8);
+        properties.getConcurrency().setDecreaseCooldown(Duration.ZERO);
+        limiter = new SpotifyConcurrencyLimiter(properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void limitGrowsWhileLatencyStaysFlatAndLimitIsUsed() {
+        for (int i = 0; i < 40; i++) {
+            limiter.onSample(ENDPOINT, BASELINE, 8);
+        }
+
+        assertThat(limiter.getLimit()).isGreaterThan(11.0);
+    }
+
+    @Test
+    void limitDoesNotGrowWhenMostlyIdle() {
+        for (int i = 0; i < 40; i++) {
+            limiter.onSample(ENDPOINT, BASELINE, 1);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(8.0);
+    }
+
+    @Test
+    void limitIsHalvedOnLatencySpike() {
+        limiter.onSample(ENDPOINT, BASELINE, 1);
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(ENDPOINT, BASELINE * 5, 1);
+        }
+
+        assertThat(limiter.getLimit()).isLessThan(4.0);
+    }
+
+    @Test
+    void slowEndpointDoesNotLookLikeALatencySpikeOfAFastOne() {
+        for (int i = 0; i < 40; i++) {
+            limiter.onSample(ENDPOINT, BASELINE, 8);
+            limiter.onSample("recently-played", BASELINE * 5, 8);
+        }
+
+        assertThat(limiter.getLimit()).isGreaterThan(8.0);
+    }
+
+    @Test
+    void tooManyRequestsCutsTheLimit() {
+        assertThatThrownBy(() -> limiter.execute(ENDPOINT, () -> {
+            throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS);
+        })).isInstanceOf(HttpClientErrorException.class);
+
+        assertThat(limiter.getLimit()).isEqualTo(4.0);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void clientErrorsOtherThan429DoNotCutTheLimit() {
+        assertThatThrownBy(() -> limiter.execute(ENDPOINT, () -> {
+            throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+        })).isInstanceOf(HttpClientErrorException.class);
+
+        assertThat(limiter.getLimit()).isEqualTo(8.0);
+    }
+
+    @Test
+    void limitNeverDropsBelowMinimum() {
+        for (int i = 0; i < 20; i++) {
+            limiter.onDrop();
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(1.0);
+    }
+}